@@ -0,0 +1,51 @@
+package com.tiansuo.file.manage.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 存储任务线程池配置
+ * 批量初始化、批量合并等需要并发访问MinIO的操作共用该线程池，限制对MinIO的并发数；
+ * 大文件下载的范围读取使用单独的线程池，不与存储任务争用线程
+ *
+ * @author zhangb
+ * @since 2025/01/15
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Bean("storageTaskExecutor")
+    public ThreadPoolTaskExecutor storageTaskExecutor() {
+        MinioPlusProperties.Batch batch = properties.getBatch();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batch.getThreads());
+        executor.setMaxPoolSize(batch.getThreads());
+        executor.setQueueCapacity(batch.getQueueCapacity());
+        executor.setThreadNamePrefix("storage-task-");
+        // 队列已满时由调用线程执行，对提交方形成背压
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("rangeFetchExecutor")
+    public ThreadPoolTaskExecutor rangeFetchExecutor() {
+        MinioPlusProperties.ParallelFetch parallelFetch = properties.getParallelFetch();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelFetch.getThreads());
+        executor.setMaxPoolSize(parallelFetch.getThreads());
+        executor.setQueueCapacity(parallelFetch.getQueueCapacity());
+        executor.setThreadNamePrefix("range-fetch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+}
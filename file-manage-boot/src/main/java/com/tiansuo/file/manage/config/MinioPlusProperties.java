@@ -7,6 +7,10 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * MinioPlus配置类
  *
@@ -62,6 +66,56 @@ public class MinioPlusProperties {
      */
     private Thumbnail thumbnail = new Thumbnail();
 
+    /**
+     * 服务端代理上传配置
+     */
+    private Proxy proxy = new Proxy();
+
+    /**
+     * 批量操作配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 自动合并配置
+     */
+    private AutoComplete autoComplete = new AutoComplete();
+
+    /**
+     * 并发控制配置
+     */
+    private Lock lock = new Lock();
+
+    /**
+     * 上传参数建议配置
+     */
+    private Tuning tuning = new Tuning();
+
+    /**
+     * 小文件合并存储配置
+     */
+    private Pack pack = new Pack();
+
+    /**
+     * 上传会话配置
+     */
+    private Session session = new Session();
+
+    /**
+     * 压缩存储配置
+     */
+    private Compress compress = new Compress();
+
+    /**
+     * 文件校验配置
+     */
+    private Verify verify = new Verify();
+
+    /**
+     * 并行读取配置
+     */
+    private ParallelFetch parallelFetch = new ParallelFetch();
+
     @NoArgsConstructor
     @AllArgsConstructor
     @Getter
@@ -75,14 +129,48 @@ public class MinioPlusProperties {
 
         /**
          * 分块大小，配置单位为byte，默认为5242880(5MB)
+         * 作为最小分块大小使用，实际分块大小按文件大小自适应计算，且为该值的整数倍
          */
         //private int size = 5242880;
         private int size = 5120;
 
+        /**
+         * 单个文件最大分块数量，默认为10000（S3协议上限）
+         */
+        private int maxCount = 10000;
+
+        /**
+         * 最大分块大小，配置单位为byte，默认为1073741824(1GB)
+         */
+        private int maxSize = 1073741824;
+
+        /**
+         * 目标上传吞吐量，配置单位为byte/秒，默认为0表示不按吞吐量调整分块大小
+         */
+        private long targetThroughput = 0;
+
+        /**
+         * 按目标吞吐量计算时单个分块期望的上传耗时，单位为秒，默认为5秒
+         */
+        private int targetPartSeconds = 5;
+
         /**
          * 分块上传时建议并发数，默认为3
+         * 没有客户端网络的观测数据时作为初始化结果中的建议并发数
          */
         private int iis = 3;
+
+        /**
+         * 分块上传链接单次下发数量（窗口大小），默认为0
+         * 0表示初始化时一次性下发全部分块上传链接，大于0时只下发首批链接，其余链接通过游标按需获取
+         */
+        private int urlWindow = 0;
+
+        /**
+         * 抽样摘要每段抽样长度，配置单位为byte，默认为65536(64KB)
+         * 文件按头、中、尾各取一段计算抽样md5，文件长度不超过三段时取整个文件
+         */
+        private int sampleSize = 65536;
     }
 
     @NoArgsConstructor
@@ -107,4 +195,322 @@ public class MinioPlusProperties {
 
     }
 
-}
\ No newline at end of file
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Proxy {
+
+        /**
+         * 与MinIO之间保持的最大空闲连接数，默认为64
+         * 代理上传时每个分块占用一个连接，并发分块较多时应适当调大
+         */
+        private int maxIdleConnections = 64;
+
+        /**
+         * 转发请求体时使用的缓冲区大小，配置单位为byte，默认为8192(8KB)
+         */
+        private int bufferSize = 8192;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Batch {
+
+        /**
+         * 批量操作访问MinIO的并发线程数，默认为16
+         */
+        private int threads = 16;
+
+        /**
+         * 线程池队列长度，默认为1000，队列已满时由调用线程执行
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 单次批量操作的最大文件数量，默认为10000
+         */
+        private int maxSize = 10000;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class AutoComplete {
+
+        /**
+         * 是否开启自动合并，默认为true
+         */
+        private boolean enable = true;
+
+        /**
+         * 定时检查间隔，单位为毫秒，默认为60000
+         */
+        private long interval = 60000;
+
+        /**
+         * 每次检查的上传任务数量，默认为100
+         */
+        private int batchSize = 100;
+
+        /**
+         * 创建后经过多久开始检查，单位为秒，默认为60，给前端留出调用合并接口的时间
+         */
+        private int idleSeconds = 60;
+
+        /**
+         * 只检查该时长内创建的上传任务，单位为小时，默认为24
+         */
+        private int maxAgeHours = 24;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Lock {
+
+        /**
+         * 是否使用数据库命名锁在多个节点之间互斥，默认为true，单节点部署时可关闭
+         */
+        private boolean distributed = true;
+
+        /**
+         * 等待锁的时间，单位为秒，默认为10
+         */
+        private int timeout = 10;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Tuning {
+
+        /**
+         * 是否按客户端网络的上传速度调整并发数和分块大小，默认为true
+         */
+        private boolean enable = true;
+
+        /**
+         * 最小建议并发数，默认为1
+         */
+        private int minConcurrency = 1;
+
+        /**
+         * 最大建议并发数，默认为16
+         */
+        private int maxConcurrency = 16;
+
+        /**
+         * 吞吐量移动平均的权重，默认为0.3
+         */
+        private double alpha = 0.3;
+
+        /**
+         * 吞吐量低于移动平均的该比例时并发数减半，默认为0.7
+         */
+        private double backoffRatio = 0.7;
+
+        /**
+         * 最多保存统计的客户端网络数量，默认为10000
+         */
+        private int maxNetworks = 10000;
+
+        /**
+         * 客户端网络的统计保留时长，单位为小时，默认为24
+         */
+        private int statsExpiryHours = 24;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Pack {
+
+        /**
+         * 是否将小文件合并写入容器对象，默认为false
+         */
+        private boolean enable = false;
+
+        /**
+         * 小于该长度的文件合并存储，配置单位为byte，默认为262144(256KB)
+         */
+        private int threshold = 262144;
+
+        /**
+         * 单个容器对象的目标长度，配置单位为byte，默认为8388608(8MB)
+         */
+        private int containerSize = 8388608;
+
+        /**
+         * 等待更多文件写入同一容器的最长时间，单位为毫秒，默认为50
+         */
+        private long lingerMillis = 50;
+
+        /**
+         * 参与合并存储的桶，默认为document和other，图片需要生成缩略图，不参与合并
+         */
+        private List<String> buckets = new ArrayList<>(Arrays.asList("document", "other"));
+
+        /**
+         * 容器中有效数据占比低于该值时重新整理，默认为0.5
+         */
+        private double compactRatio = 0.5;
+
+        /**
+         * 容器整理任务的执行间隔，单位为毫秒，默认为600000(10分钟)
+         */
+        private long compactInterval = 600000;
+
+        /**
+         * 每次整理的最大容器数量，默认为20
+         */
+        private int compactBatchSize = 20;
+
+        /**
+         * 合并存储和压缩存储文件的下载地址，这些文件无法直接使用预签名地址，由服务端读取后返回
+         */
+        private String downloadPath = "/storage/download/stream";
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Session {
+
+        /**
+         * 上传会话缓存时长，单位为秒，默认为30，其他节点变更的元数据最迟在该时长后可见
+         */
+        private int ttlSeconds = 30;
+
+        /**
+         * 最多缓存的上传会话数量，默认为100000
+         */
+        private int maxSize = 100000;
+
+        /**
+         * 上传进度写入数据库的间隔，单位为毫秒，默认为1000
+         */
+        private long flushInterval = 1000;
+
+        /**
+         * 每批写入的上传进度数量，默认为500
+         */
+        private int flushBatchSize = 500;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Compress {
+
+        /**
+         * 是否压缩存储服务端上传的文件，默认为false
+         * 前端直传MinIO的分片上传不经过服务端，不压缩
+         */
+        private boolean enable = false;
+
+        /**
+         * 参与压缩的桶，默认为document和other
+         */
+        private List<String> buckets = new ArrayList<>(Arrays.asList("document", "other"));
+
+        /**
+         * 参与压缩的文件后缀，docx、xlsx、pdf等格式本身已压缩，默认不参与
+         */
+        private List<String> suffixes = new ArrayList<>(Arrays.asList("txt", "rtf", "doc", "xls", "ppt", "csv", "log", "xml", "json", "html", "md"));
+
+        /**
+         * 小于该长度的文件不压缩，配置单位为byte，默认为1024，长度未知的文件参与压缩
+         */
+        private long minSize = 1024;
+
+        /**
+         * 压缩级别，1-9，默认为6
+         */
+        private int level = 6;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class Verify {
+
+        /**
+         * 是否开启后台校验，默认为false
+         * 开启后按实际内容校验已完成文件的md5，不一致的文件不再参与秒传
+         */
+        private boolean enable = false;
+
+        /**
+         * 定时校验间隔，单位为毫秒，默认为60000
+         */
+        private long interval = 60000;
+
+        /**
+         * 每次校验的元数据数量，默认为50
+         */
+        private int batchSize = 50;
+
+        /**
+         * 读取速度上限，配置单位为byte/s，默认为4194304(4MB/s)，避免与前台上传下载争用带宽
+         */
+        private long bytesPerSecond = 4194304;
+
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @Setter
+    public static class ParallelFetch {
+
+        /**
+         * 服务端下载大文件时是否按范围并行读取MinIO对象，默认为true
+         */
+        private boolean enable = true;
+
+        /**
+         * 超过该长度时并行读取，配置单位为byte，默认为67108864(64MB)
+         */
+        private long threshold = 67108864;
+
+        /**
+         * 每个范围的长度，配置单位为byte，默认为8388608(8MB)
+         */
+        private int chunkSize = 8388608;
+
+        /**
+         * 单次下载同时读取的范围数量，默认为4，读取完成等待写出的范围也计入，内存占用不超过该数量乘以范围长度
+         */
+        private int concurrency = 4;
+
+        /**
+         * 读取范围内容的专用线程数，所有下载共用，默认为16
+         */
+        private int threads = 16;
+
+        /**
+         * 读取线程池队列长度，默认为256，队列已满时由调用线程执行
+         */
+        private int queueCapacity = 256;
+
+    }
+
+}
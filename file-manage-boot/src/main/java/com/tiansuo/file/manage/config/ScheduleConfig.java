@@ -0,0 +1,15 @@
+package com.tiansuo.file.manage.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ *
+ * @author zhangb
+ * @since 2025/01/24
+ */
+@Configuration
+@EnableScheduling
+public class ScheduleConfig {
+}
@@ -3,4 +3,25 @@ package com.tiansuo.file.manage.constant;
 public class CommonConstant {
 
     public static final String BUCKET_NAME = "ts_bucket";
+
+    /**
+     * 临时对象路径前缀，上传中尚未确定最终位置的对象存放在该前缀下
+     * 建议在MinIO中为该前缀配置过期删除规则，清理异常中断遗留的临时对象
+     */
+    public static final String TEMP_PATH = "tmp";
+
+    /**
+     * 小文件容器对象路径前缀，容器对象名称为该前缀加容器主键
+     */
+    public static final String PACK_PATH = "pack";
+
+    /**
+     * S3协议允许的最小分片5MB，除最后一个分片外小于该长度时合并失败
+     */
+    public static final long MIN_MULTIPART_SIZE = 5L * 1024 * 1024;
+
+    /**
+     * 压缩存储的内容编码，对象按zlib格式压缩，与HTTP的deflate编码一致
+     */
+    public static final String CONTENT_ENCODING_DEFLATE = "deflate";
 }
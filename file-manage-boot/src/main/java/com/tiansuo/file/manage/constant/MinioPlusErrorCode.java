@@ -26,6 +26,13 @@ public enum MinioPlusErrorCode {
     FILE_CREATE_FAILED(1009,"文件创建失败"),
     FILE_MD5_CHECK_FAILED(1010,"fileMd5不能为空"),
     FILE_BIND_BUSINESS_FAILED(1011,"文件绑定业务失败,文件不存在"),
+    FILE_PART_SIZE_CHECK_FAILED(1012,"分块序号或分块大小与上传任务不一致"),
+    FILE_SAMPLE_MD5_CHECK_FAILED(1013,"sampleMd5和fileSize不能为空"),
+    FILE_CANDIDATE_MD5_CHECK_FAILED(1014,"存在疑似重复的文件,fileMd5不能为空"),
+    APPEND_SESSION_NOT_FOUND(1015,"追加上传会话不存在或已结束"),
+    APPEND_OFFSET_CHECK_FAILED(1016,"追加位置与已接收长度不一致"),
+    BATCH_SIZE_CHECK_FAILED(1017,"批量操作的文件数量超出上限"),
+    UPLOAD_TASK_CHECK_FAILED(1018,"上传任务编号与文件不一致,请重新初始化"),
 
 
     /**
@@ -41,7 +48,11 @@ public enum MinioPlusErrorCode {
     CREATE_PREVIEW_URL_FAILED(2008, "获取预对象预览URL失败"),
     WRITE_FAILED(2009, "文件写入失败"),
     READ_FAILED(2010, "文件读取失败"),
-    DELETE_FAILED(2011, "删除失败");
+    DELETE_FAILED(2011, "删除失败"),
+    UPLOAD_PART_FAILED(2012, "分片上传失败"),
+    COPY_FAILED(2013, "文件复制失败"),
+    ABORT_MULTIPART_FAILED(2014, "取消分片上传失败"),
+    LOCK_FAILED(2015, "相同文件正在处理中,请稍后重试");
 
     /**
      * 错误编码
@@ -1,19 +1,32 @@
 package com.tiansuo.file.manage.controller;
 
 import cn.hutool.core.io.IoUtil;
-import com.sun.xml.internal.bind.v2.TODO;
 import com.tiansuo.file.manage.constant.MinioPlusErrorCode;
 import com.tiansuo.file.manage.constant.StorageBucketEnums;
 import com.tiansuo.file.manage.exception.MinioPlusException;
 import com.tiansuo.file.manage.model.dto.BusinessBindFileDTO;
+import com.tiansuo.file.manage.model.dto.FileBatchCheckDTO;
+import com.tiansuo.file.manage.model.dto.FileBatchCompleteDTO;
 import com.tiansuo.file.manage.model.dto.FileCheckDTO;
 import com.tiansuo.file.manage.model.dto.FileCompleteDTO;
+import com.tiansuo.file.manage.model.dto.FilePrecheckDTO;
+import com.tiansuo.file.manage.model.dto.FileUpdateCompleteDTO;
+import com.tiansuo.file.manage.model.dto.FileUpdateDTO;
+import com.tiansuo.file.manage.model.dto.PartAckDTO;
+import com.tiansuo.file.manage.model.vo.AppendResultVo;
 import com.tiansuo.file.manage.model.vo.CompleteResultVo;
 import com.tiansuo.file.manage.model.vo.FileCheckResultVo;
+import com.tiansuo.file.manage.model.vo.FilePartWindowVo;
+import com.tiansuo.file.manage.model.vo.FilePrecheckResultVo;
+import com.tiansuo.file.manage.model.vo.FileSignatureVo;
 import com.tiansuo.file.manage.model.vo.FilePreShardingVo;
+import com.tiansuo.file.manage.model.vo.FileUpdateResultVo;
 import com.tiansuo.file.manage.model.vo.FileUploadResultVo;
+import com.tiansuo.file.manage.model.vo.PartUploadResultVo;
 import com.tiansuo.file.manage.response.ResultModel;
 import com.tiansuo.file.manage.service.StorageService;
+import com.tiansuo.file.manage.util.CommonUtil;
+import com.tiansuo.file.manage.util.PartUrlUtil;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -25,8 +38,10 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -71,6 +86,34 @@ public class StorageController {
         return ResultModel.success(fileUploadResultVo);
     }
 
+    /**
+     * 批量上传文件(小文件不分片)
+     * 一个multipart请求携带多个文件，服务端并发写入，元数据一次批量插入
+     *
+     * @param files 上传的文件
+     * @return 与上传顺序一致的上传结果
+     */
+    @ApiOperation(value = "文件上传(批量)")
+    @PostMapping("/upload/batch/file")
+    public ResultModel<List<FileUploadResultVo>> batchUploadFile(@RequestParam("files") List<MultipartFile> files) {
+        return ResultModel.success(storageService.batchUploadFile(files));
+    }
+
+    /**
+     * 流式上传文件(小文件不分片)
+     * 请求体为文件的原始字节，不经过multipart解析，边上传边计算md5，内存占用不随文件大小增长
+     * 未携带Content-Length时按分段方式写入MinIO
+     *
+     * @param fileName 文件名（含扩展名）
+     * @param request  请求
+     * @return 上传成功后的返回信息
+     */
+    @ApiOperation(value = "文件上传(流式)")
+    @PostMapping("/upload/stream")
+    public ResultModel<FileUploadResultVo> uploadStream(@RequestParam("fileName") String fileName, HttpServletRequest request) throws IOException {
+        return ResultModel.success(storageService.uploadStream(fileName, request.getInputStream(), request.getContentLengthLong()));
+    }
+
 
 
     /**
@@ -89,6 +132,19 @@ public class StorageController {
         return ResultModel.success(resultVo);
     }
 
+    /**
+     * 抽样预检查
+     * 前端按预分片结果中的抽样范围计算抽样md5，确定为新文件时无需计算完整md5即可初始化上传
+     *
+     * @param filePrecheckDTO 文件长度和抽样md5
+     * @return 预检查结果
+     */
+    @ApiOperation(value = "抽样预检查")
+    @PostMapping("/upload/precheck")
+    public ResultModel<FilePrecheckResultVo> precheck(@RequestBody FilePrecheckDTO filePrecheckDTO) {
+        return ResultModel.success(storageService.precheck(filePrecheckDTO.getFileSize(), filePrecheckDTO.getSampleMd5()));
+    }
+
     /**
      * 分片上传任务初始化
      * 上传前的预检查：秒传、分块上传和断点续传等特性均基于该方法实现
@@ -98,11 +154,102 @@ public class StorageController {
      */
     @ApiOperation(value = "分片上传任务初始化")
     @PostMapping("/upload/init")
-    public ResultModel<FileCheckResultVo> init(@RequestBody FileCheckDTO fileCheckDTO) {
-        FileCheckResultVo resultVo = storageService.init(fileCheckDTO.getFileMd5(), fileCheckDTO.getFullFileName(), fileCheckDTO.getFileSize(), fileCheckDTO.getIsPrivate());
+    public ResultModel<FileCheckResultVo> init(@RequestBody FileCheckDTO fileCheckDTO, HttpServletRequest request) {
+        FileCheckResultVo resultVo = storageService.init(fileCheckDTO.getFileMd5(), fileCheckDTO.getSampleMd5(), fileCheckDTO.getPartMd5List(), fileCheckDTO.getFullFileName(), fileCheckDTO.getFileSize(), fileCheckDTO.getIsPrivate(), CommonUtil.getClientNetwork(request));
+        if (Boolean.TRUE.equals(fileCheckDTO.getCompact())) {
+            resultVo.setCompactParts(PartUrlUtil.compact(resultVo.getPartList()));
+        }
         return ResultModel.success(resultVo);
     }
 
+    /**
+     * 批量上传任务初始化
+     * 目录或多文件上传时一次提交文件清单，代替逐个文件调用初始化
+     *
+     * @param fileBatchCheckDTO 文件清单
+     * @return 与清单顺序一致的检查结果
+     */
+    @ApiOperation(value = "批量上传任务初始化")
+    @PostMapping("/upload/batch/init")
+    public ResultModel<List<FileCheckResultVo>> batchInit(@RequestBody FileBatchCheckDTO fileBatchCheckDTO, HttpServletRequest request) {
+        List<FileCheckResultVo> resultList = storageService.batchInit(fileBatchCheckDTO.getFileList(), CommonUtil.getClientNetwork(request));
+        for (int i = 0; i < resultList.size(); i++) {
+            if (Boolean.TRUE.equals(fileBatchCheckDTO.getFileList().get(i).getCompact())) {
+                resultList.get(i).setCompactParts(PartUrlUtil.compact(resultList.get(i).getPartList()));
+            }
+        }
+        return ResultModel.success(resultList);
+    }
+
+    /**
+     * 获取下一批分块上传链接
+     * 初始化或合并结果中nextPartNumber不为空时，前端以该值为游标继续获取后续分块的上传链接
+     *
+     * @param fileKey    文件KEY
+     * @param partNumber 本批次起始块号
+     * @return 本批次分块上传链接
+     */
+    @ApiOperation(value = "获取下一批分块上传链接")
+    @GetMapping("/upload/parts")
+    public ResultModel<FilePartWindowVo> nextParts(@RequestParam("fileKey") String fileKey, @RequestParam("partNumber") Integer partNumber) {
+        return ResultModel.success(storageService.nextParts(fileKey, partNumber));
+    }
+
+    /**
+     * 刷新分块上传链接
+     * 分块上传链接过期后调用，按块号范围重新签名，无需重新初始化
+     * 上传任务编号与文件不一致时说明上传任务已重建，需重新初始化
+     *
+     * @param fileKey         文件KEY
+     * @param uploadTaskId    上传任务编号
+     * @param startPartNumber 起始块号
+     * @param endPartNumber   结束块号（含），为空时按链接窗口大小下发
+     * @return 重新签名的分块上传链接
+     */
+    @ApiOperation(value = "刷新分块上传链接")
+    @GetMapping("/upload/parts/refresh")
+    public ResultModel<FilePartWindowVo> refreshParts(@RequestParam("fileKey") String fileKey,
+                                                      @RequestParam("uploadTaskId") String uploadTaskId,
+                                                      @RequestParam("startPartNumber") Integer startPartNumber,
+                                                      @RequestParam(value = "endPartNumber", required = false) Integer endPartNumber) {
+        return ResultModel.success(storageService.refreshParts(fileKey, uploadTaskId, startPartNumber, endPartNumber));
+    }
+
+    /**
+     * 分块上传(服务端代理)
+     * 供无法直接访问MinIO的前端使用，请求体为分块的原始字节，必须携带Content-Length
+     * 请求体直接流式转发到MinIO，同一文件的多个分块可以并发上传
+     *
+     * @param fileKey    文件KEY
+     * @param partNumber 分块序号
+     * @param request    请求
+     * @return 分块上传结果
+     */
+    @ApiOperation(value = "分块上传(服务端代理)")
+    @PostMapping("/upload/part")
+    public ResultModel<PartUploadResultVo> uploadPart(@RequestParam("fileKey") String fileKey, @RequestParam("partNumber") Integer partNumber,
+                                                      HttpServletRequest request) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+        return ResultModel.success(storageService.uploadPart(fileKey, partNumber, request.getInputStream(), length));
+    }
+
+    /**
+     * 分块确认
+     * 前端直传MinIO的分块上传成功后调用，回报块号和响应头中的ETag
+     * 断点续传和合并时优先使用确认记录，未确认的分块视为未上传
+     *
+     * @param partAckDTO 分块确认入参
+     * @return 是否成功
+     */
+    @ApiOperation(value = "分块确认")
+    @PostMapping("/upload/part/ack")
+    public ResultModel<Boolean> ackPart(@RequestBody PartAckDTO partAckDTO) {
+        return ResultModel.success(storageService.ackPart(partAckDTO.getFileKey(), partAckDTO.getUploadTaskId(), partAckDTO.getPartNumber(), partAckDTO.getEtag()));
+    }
+
     /**
      * 文件上传完成
      *
@@ -112,10 +259,129 @@ public class StorageController {
     @ApiOperation(value = "文件上传完成")
     @PostMapping("/upload/complete")
     public ResultModel<Object> complete(@RequestBody FileCompleteDTO fileCompleteDTO) {
-        CompleteResultVo completeResultVo = storageService.complete(fileCompleteDTO.getFileKey(), fileCompleteDTO.getPartMd5List());
+        CompleteResultVo completeResultVo = storageService.complete(fileCompleteDTO.getFileKey(), fileCompleteDTO.getFileMd5(), fileCompleteDTO.getPartMd5List());
+        if (Boolean.TRUE.equals(fileCompleteDTO.getCompact())) {
+            completeResultVo.setCompactParts(PartUrlUtil.compact(completeResultVo.getPartList()));
+        }
         return ResultModel.success(completeResultVo);
     }
 
+    /**
+     * 批量文件上传完成
+     * 多个文件的合并并发执行，部分文件分块缺失时对应结果中返回补传链接
+     *
+     * @param fileBatchCompleteDTO 文件清单
+     * @return 与清单顺序一致的合并结果
+     */
+    @ApiOperation(value = "批量文件上传完成")
+    @PostMapping("/upload/batch/complete")
+    public ResultModel<List<CompleteResultVo>> batchComplete(@RequestBody FileBatchCompleteDTO fileBatchCompleteDTO) {
+        List<CompleteResultVo> resultList = storageService.batchComplete(fileBatchCompleteDTO.getFileList());
+        for (int i = 0; i < resultList.size(); i++) {
+            if (Boolean.TRUE.equals(fileBatchCompleteDTO.getFileList().get(i).getCompact())) {
+                resultList.get(i).setCompactParts(PartUrlUtil.compact(resultList.get(i).getPartList()));
+            }
+        }
+        return ResultModel.success(resultList);
+    }
+
+    /**
+     * 开启追加上传会话
+     * 上传前无法确定文件长度时使用，之后按顺序追加任意大小的数据，最后提交
+     *
+     * @param fullFileName 文件名（含扩展名）
+     * @param isPrivate    是否私有 0:否 1:是
+     * @return 会话信息
+     */
+    @ApiOperation(value = "开启追加上传会话")
+    @PostMapping("/append/open")
+    public ResultModel<AppendResultVo> appendOpen(@RequestParam("fullFileName") String fullFileName,
+                                                  @RequestParam(value = "isPrivate", defaultValue = "0") Integer isPrivate) {
+        return ResultModel.success(storageService.appendOpen(fullFileName, isPrivate));
+    }
+
+    /**
+     * 追加数据
+     * 请求体为追加数据的原始字节，可不携带Content-Length，同一会话的追加请求需按顺序发送
+     *
+     * @param fileKey 文件KEY
+     * @param offset  本次追加的开始位置，用于重试时校验
+     * @param request 请求
+     * @return 已接收长度
+     */
+    @ApiOperation(value = "追加数据")
+    @PostMapping("/append/push")
+    public ResultModel<AppendResultVo> appendPush(@RequestParam("fileKey") String fileKey, @RequestParam(value = "offset", required = false) Long offset,
+                                                  HttpServletRequest request) throws IOException {
+        return ResultModel.success(storageService.appendPush(fileKey, offset, request.getInputStream()));
+    }
+
+    /**
+     * 提交追加上传会话
+     *
+     * @param fileKey 文件KEY
+     * @return 上传成功后的返回信息
+     */
+    @ApiOperation(value = "提交追加上传会话")
+    @PostMapping("/append/commit")
+    public ResultModel<FileUploadResultVo> appendCommit(@RequestParam("fileKey") String fileKey) {
+        return ResultModel.success(storageService.appendCommit(fileKey));
+    }
+
+    /**
+     * 取消追加上传会话
+     *
+     * @param fileKey 文件KEY
+     * @return 是否成功
+     */
+    @ApiOperation(value = "取消追加上传会话")
+    @PostMapping("/append/abort")
+    public ResultModel<Boolean> appendAbort(@RequestParam("fileKey") String fileKey) {
+        return ResultModel.success(storageService.appendAbort(fileKey));
+    }
+
+    /**
+     * 取得文件的分块签名
+     * 增量更新的第一步，前端根据签名在新文件中查找与原文件相同的分块
+     *
+     * @param fileKey 文件KEY
+     * @return 分块签名
+     */
+    @ApiOperation(value = "取得文件分块签名")
+    @GetMapping("/update/signature")
+    public ResultModel<FileSignatureVo> signature(@RequestParam("fileKey") String fileKey) {
+        return ResultModel.success(storageService.signature(fileKey));
+    }
+
+    /**
+     * 文件增量更新初始化
+     * 与原文件相同的分块在服务端复制，只下发其余部分的上传链接
+     *
+     * @param fileUpdateDTO 新文件信息及匹配的分块
+     * @return 需要上传的分块
+     */
+    @ApiOperation(value = "文件增量更新初始化")
+    @PostMapping("/update/init")
+    public ResultModel<FileUpdateResultVo> updateInit(@RequestBody FileUpdateDTO fileUpdateDTO) {
+        FileUpdateResultVo resultVo = storageService.updateInit(fileUpdateDTO.getFileKey(), fileUpdateDTO.getFileMd5(), fileUpdateDTO.getFileSize(),
+                fileUpdateDTO.getBlockSize(), fileUpdateDTO.getMatchList());
+        return ResultModel.success(resultVo);
+    }
+
+    /**
+     * 文件增量更新完成
+     * 合并分块后文件KEY指向新文件
+     *
+     * @param fileUpdateCompleteDTO 上传任务信息
+     * @return 是否成功
+     */
+    @ApiOperation(value = "文件增量更新完成")
+    @PostMapping("/update/complete")
+    public ResultModel<Boolean> updateComplete(@RequestBody FileUpdateCompleteDTO fileUpdateCompleteDTO) {
+        return ResultModel.success(storageService.updateComplete(fileUpdateCompleteDTO.getFileKey(), fileUpdateCompleteDTO.getFileMd5(),
+                fileUpdateCompleteDTO.getFileSize(), fileUpdateCompleteDTO.getUploadTaskId(), fileUpdateCompleteDTO.getPartCount()));
+    }
+
     /**
      * 文件下载(返回文件地址供前端访问下载)
      *
@@ -136,8 +402,8 @@ public class StorageController {
      */
     @ApiOperation(value = "文件下载(返回文件流直接下载)")
     @GetMapping("/download/stream")
-    public void download(@RequestParam(value = "fileKey") String fileKey, HttpServletResponse response) {
-        storageService.getDownloadObject(fileKey,response);
+    public void download(@RequestParam(value = "fileKey") String fileKey, HttpServletRequest request, HttpServletResponse response) {
+        storageService.getDownloadObject(fileKey, request, response);
 
     }
 
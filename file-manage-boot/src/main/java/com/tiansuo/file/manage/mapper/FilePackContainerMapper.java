@@ -0,0 +1,21 @@
+package com.tiansuo.file.manage.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tiansuo.file.manage.model.entity.FilePackContainer;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 小文件容器服务接口定义
+ *
+ * @author zhangb
+ * @since 2025/01/27
+ */
+public interface FilePackContainerMapper extends BaseMapper<FilePackContainer> {
+
+    Integer decreaseLiveSize(@Param("id") Long id, @Param("size") Long size);
+
+    List<FilePackContainer> selectCompactCandidates(@Param("ratio") Double ratio, @Param("limit") Integer limit);
+
+}
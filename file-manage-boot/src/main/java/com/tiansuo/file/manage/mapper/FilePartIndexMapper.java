@@ -0,0 +1,21 @@
+package com.tiansuo.file.manage.mapper;
+
+
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tiansuo.file.manage.model.entity.FilePartIndex;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 分块内容索引服务接口定义
+ *
+ * @author zhangb
+ * @since 2025/01/10
+ */
+public interface FilePartIndexMapper extends BaseMapper<FilePartIndex> {
+
+    Integer insertBatch(@Param("list") List<FilePartIndex> list);
+
+}
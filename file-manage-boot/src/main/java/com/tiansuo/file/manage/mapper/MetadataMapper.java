@@ -3,6 +3,7 @@ package com.tiansuo.file.manage.mapper;
 
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tiansuo.file.manage.model.bo.UploadProgressBO;
 import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
 import com.tiansuo.file.manage.model.vo.FileUploadResultVo;
 import org.apache.ibatis.annotations.Param;
@@ -21,4 +22,10 @@ public interface MetadataMapper extends BaseMapper<FileMetadataInfo> {
 
     List<FileUploadResultVo> queryByBusinessKey(@Param("businessKey")String businessKey);
 
+    Integer updateProgressBatch(@Param("list") List<UploadProgressBO> list);
+
+    Integer insertIgnore(FileMetadataInfo metadataInfo);
+
+    Integer insertBatch(List<FileMetadataInfo> list);
+
 }
@@ -0,0 +1,112 @@
+package com.tiansuo.file.manage.model.bo;
+
+import com.tiansuo.file.manage.model.vo.ListParts;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 追加上传会话
+ * 会话只保存在内存中，已接收长度 = 已上传分片长度 + 缓冲区长度，文件md5始终覆盖已接收的全部字节
+ *
+ * @author zhangb
+ * @since  2025/01/14
+ */
+@Getter
+@Setter
+public class AppendSessionBO {
+
+    /**
+     * 文件KEY，同时作为会话标识和临时对象名称
+     */
+    private String fileKey;
+
+    /**
+     * 文件名（含扩展名）
+     */
+    private String fullFileName;
+
+    /**
+     * 文件后缀
+     */
+    private String suffix;
+
+    /**
+     * MIME类型
+     */
+    private String fileMimeType;
+
+    /**
+     * 存储桶
+     */
+    private String bucketName;
+
+    /**
+     * 存储路径
+     */
+    private String storagePath;
+
+    /**
+     * 是否私有 0:否 1:是
+     */
+    private Integer isPrivate;
+
+    /**
+     * 切片上传任务id
+     */
+    private String uploadId;
+
+    /**
+     * 当前分片大小，分片数量每增加1000，分片大小翻倍，不超过最大分块大小
+     */
+    private int partSize;
+
+    /**
+     * 缓冲区，缓冲满一个分片后上传
+     */
+    private byte[] buffer;
+
+    /**
+     * 缓冲区中的字节数
+     */
+    private int bufferLength;
+
+    /**
+     * 已接收长度
+     */
+    private long offset;
+
+    /**
+     * 文件md5
+     */
+    private MessageDigest digest;
+
+    /**
+     * 已上传的分片
+     */
+    private List<ListParts.Part> partList = new ArrayList<>();
+
+    /**
+     * 最后访问时间
+     */
+    private long lastAccessTime;
+
+    /**
+     * 是否已结束
+     */
+    private boolean closed;
+
+    /**
+     * 分片是否已合并，合并后提交失败时重试不再合并
+     */
+    private boolean completed;
+
+    /**
+     * 合并时计算的文件md5
+     */
+    private String fileMd5;
+
+}
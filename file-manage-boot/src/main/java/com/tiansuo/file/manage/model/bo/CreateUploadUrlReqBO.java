@@ -51,6 +51,10 @@ public class CreateUploadUrlReqBO {
      * 存储路径
      */
     private String storagePath;
+    /**
+     * 分块大小,为空时按文件大小计算
+     */
+    private Integer partSize;
     /**********************************************************以上参数是断点续传必传的数据-end**************************************************/
 
 }
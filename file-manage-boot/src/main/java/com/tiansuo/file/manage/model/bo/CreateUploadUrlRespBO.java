@@ -36,6 +36,10 @@ public class CreateUploadUrlRespBO {
      * 默认1
      */
     private Integer partCount = 1;
+    /**
+     * 分块大小
+     */
+    private Integer partSize;
     /**
      * 切片上传任务id
      */
@@ -46,4 +50,9 @@ public class CreateUploadUrlRespBO {
      */
     List<FileCheckResultVo.Part> parts;
 
+    /**
+     * 下一批分片链接的起始块号-可选,为空表示已全部下发
+     */
+    private Integer nextPartNumber;
+
 }
\ No newline at end of file
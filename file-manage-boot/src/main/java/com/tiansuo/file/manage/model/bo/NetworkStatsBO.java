@@ -0,0 +1,32 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 客户端网络的上传统计
+ * 吞吐量按指数加权移动平均，并发数按加性增、乘性减调整
+ *
+ * @author zhangb
+ * @since  2025/01/26
+ */
+@Getter
+@Setter
+public class NetworkStatsBO {
+
+    /**
+     * 总吞吐量的移动平均，单位为byte/秒
+     */
+    private double throughput;
+
+    /**
+     * 建议并发数
+     */
+    private int concurrency;
+
+    /**
+     * 观测次数
+     */
+    private long samples;
+
+}
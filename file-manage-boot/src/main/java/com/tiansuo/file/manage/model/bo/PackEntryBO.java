@@ -0,0 +1,30 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 小文件在容器中的位置
+ *
+ * @author zhangb
+ * @since  2025/01/27
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PackEntryBO {
+
+    /**
+     * 容器主键
+     */
+    private Long packId;
+
+    /**
+     * 文件在容器中的开始位置
+     */
+    private Long offset;
+
+}
@@ -0,0 +1,117 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.BitSet;
+
+/**
+ * 分块确认记录
+ * 前端每上传成功一个分块后回报块号和ETag，记录只保存在内存中，丢失或与MinIO不一致时回退到查询分片
+ *
+ * @author zhangb
+ * @since  2025/01/22
+ */
+@Getter
+@Setter
+public class PartAckBO {
+
+    /**
+     * 切片上传任务id
+     */
+    private String uploadId;
+
+    /**
+     * 文件KEY
+     */
+    private String fileKey;
+
+    /**
+     * 分块数量
+     */
+    private int partCount;
+
+    /**
+     * 已确认的块号
+     */
+    private BitSet acked;
+
+    /**
+     * 分块ETag，下标为块号-1
+     */
+    private String[] etags;
+
+    /**
+     * 最后访问时间
+     */
+    private long lastAccessTime;
+
+    /**
+     * 是否已触发自动合并
+     */
+    private boolean completing;
+
+    public PartAckBO(String uploadId, String fileKey, int partCount) {
+        this.uploadId = uploadId;
+        this.fileKey = fileKey;
+        this.partCount = partCount;
+        this.acked = new BitSet(partCount + 1);
+        this.etags = new String[partCount];
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 确认分块
+     *
+     * @param partNumber 块号
+     * @param etag       分块ETag
+     */
+    public synchronized void ack(int partNumber, String etag) {
+        etags[partNumber - 1] = etag.replace("\"", "");
+        acked.set(partNumber);
+        lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 已确认的分块数量
+     *
+     * @return 数量
+     */
+    public synchronized int ackedCount() {
+        return acked.cardinality();
+    }
+
+    /**
+     * 块号是否已确认
+     *
+     * @param partNumber 块号
+     * @return true:已确认
+     */
+    public synchronized boolean isAcked(int partNumber) {
+        return acked.get(partNumber);
+    }
+
+    /**
+     * 取得分块ETag
+     *
+     * @param partNumber 块号
+     * @return ETag
+     */
+    public synchronized String getEtag(int partNumber) {
+        return etags[partNumber - 1];
+    }
+
+    /**
+     * 全部分块已确认时标记为自动合并中
+     *
+     * @return true:首次标记，由调用方触发自动合并
+     */
+    public synchronized boolean markCompleting() {
+        if (completing || acked.cardinality() != partCount) {
+            return false;
+        }
+        completing = true;
+        return true;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 已读取待保存的上传文件
+ * 文件内容已写入临时对象或已读入内存，md5已计算，尚未确定最终存储位置
+ *
+ * @author zhangb
+ * @since  2025/01/28
+ */
+@Getter
+@Setter
+public class StagedUploadBO {
+
+    /**
+     * 文件KEY
+     */
+    private String fileKey;
+
+    /**
+     * 文件名（含扩展名）
+     */
+    private String fullFileName;
+
+    /**
+     * 文件后缀
+     */
+    private String suffix;
+
+    /**
+     * MIME类型
+     */
+    private String fileMimeType;
+
+    /**
+     * 存储桶
+     */
+    private String bucketName;
+
+    /**
+     * 存储路径
+     */
+    private String storagePath;
+
+    /**
+     * 临时对象名称，合并存储的文件为空
+     */
+    private String tempObjectName;
+
+    /**
+     * 文件内容，只有合并存储的文件读入内存
+     */
+    private byte[] content;
+
+    /**
+     * 内容编码，为空时未压缩
+     */
+    private String contentEncoding;
+
+    /**
+     * 文件md5
+     */
+    private String fileMd5;
+
+    /**
+     * 抽样md5，文件长度未知时为空
+     */
+    private String sampleMd5;
+
+    /**
+     * 文件长度
+     */
+    private long fileSize;
+
+}
@@ -0,0 +1,57 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 单个上传任务的吞吐量观测
+ * 从首个分块确认到最后一个分块确认之间的字节数和耗时计算总吞吐量
+ *
+ * @author zhangb
+ * @since  2025/01/26
+ */
+@Getter
+@Setter
+public class UploadObservationBO {
+
+    /**
+     * 客户端网络
+     */
+    private String network;
+
+    /**
+     * 下发的建议并发数
+     */
+    private int concurrency;
+
+    /**
+     * 文件长度
+     */
+    private long fileSize;
+
+    /**
+     * 分块大小
+     */
+    private int partSize;
+
+    /**
+     * 已确认的分块数量
+     */
+    private int ackedCount;
+
+    /**
+     * 首个分块之后确认的字节数
+     */
+    private long ackedBytes;
+
+    /**
+     * 首个分块确认时间
+     */
+    private long firstAckTime;
+
+    /**
+     * 最后一个分块确认时间
+     */
+    private long lastAckTime;
+
+}
@@ -0,0 +1,37 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * 上传进度，暂存在内存中，由定时任务批量写入数据库
+ *
+ * @author zhangb
+ * @since  2025/01/29
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UploadProgressBO {
+
+    /**
+     * 元数据主键
+     */
+    private Long id;
+
+    /**
+     * 已确认分块数量
+     */
+    private Integer ackedParts;
+
+    /**
+     * 最后活动时间
+     */
+    private Date activeTime;
+
+}
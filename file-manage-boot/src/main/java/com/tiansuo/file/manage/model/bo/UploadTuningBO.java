@@ -0,0 +1,31 @@
+package com.tiansuo.file.manage.model.bo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 上传参数建议
+ *
+ * @author zhangb
+ * @since  2025/01/26
+ */
+@Getter
+@Setter
+public class UploadTuningBO {
+
+    /**
+     * 客户端网络
+     */
+    private String network;
+
+    /**
+     * 建议并发数
+     */
+    private int concurrency;
+
+    /**
+     * 单个并发的预估吞吐量，单位为byte/秒，0表示没有观测数据
+     */
+    private long throughput;
+
+}
@@ -0,0 +1,27 @@
+package com.tiansuo.file.manage.model.dto;
+
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 批量预检查DTO
+ *
+ * @author zhangb
+ * @since 2025/1/15
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("批量预检查入参DTO")
+public class FileBatchCheckDTO {
+
+    @ApiModelProperty(value = "文件清单,每个文件的fileMd5不能为空", required = true)
+    private List<FileCheckDTO> fileList;
+
+}
@@ -0,0 +1,27 @@
+package com.tiansuo.file.manage.model.dto;
+
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 批量完成DTO
+ *
+ * @author zhangb
+ * @since 2025/1/20
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("批量完成入参DTO")
+public class FileBatchCompleteDTO {
+
+    @ApiModelProperty(value = "文件清单", required = true)
+    private List<FileCompleteDTO> fileList;
+
+}
@@ -7,6 +7,8 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.List;
+
 /**
  * 文件预检查DTO
  *
@@ -19,9 +21,15 @@ import lombok.ToString;
 @ApiModel("文件预检查入参DTO")
 public class FileCheckDTO {
 
-    @ApiModelProperty(value = "文件md5",required = true)
+    @ApiModelProperty(value = "文件md5,预检查确定为新文件时可为空,在上传完成时提交")
     private String fileMd5;
 
+    @ApiModelProperty(value = "抽样md5,按预分片结果中的抽样范围计算")
+    private String sampleMd5;
+
+    @ApiModelProperty(value = "分块md5列表,按预分片结果计算,已有相同内容的分块无需上传")
+    private List<String> partMd5List;
+
     @ApiModelProperty(value = "文件名（含扩展名）", required = true)
     private String fullFileName;
 
@@ -31,5 +39,8 @@ public class FileCheckDTO {
     @ApiModelProperty(value = "是否私有 0:否 1:是")
     private Integer isPrivate = 0;
 
+    @ApiModelProperty(value = "是否以紧凑格式返回分块上传链接")
+    private Boolean compact = false;
+
 
 }
\ No newline at end of file
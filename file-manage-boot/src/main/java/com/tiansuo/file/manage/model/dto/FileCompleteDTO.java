@@ -26,4 +26,10 @@ public class FileCompleteDTO {
     @ApiModelProperty(value = "文件的唯一key", required = true)
     private String fileKey;
 
+    @ApiModelProperty(value = "文件md5,初始化时未提交文件md5的必须在此提交")
+    private String fileMd5;
+
+    @ApiModelProperty(value = "是否以紧凑格式返回补传的分块上传链接")
+    private Boolean compact = false;
+
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.tiansuo.file.manage.model.dto;
+
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 文件抽样预检查DTO
+ *
+ * @author zhangb
+ * @since 2025/1/9
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("文件抽样预检查入参DTO")
+public class FilePrecheckDTO {
+
+    @ApiModelProperty(value = "文件长度", required = true)
+    private Long fileSize;
+
+    @ApiModelProperty(value = "抽样md5,按预分片结果中的抽样范围计算", required = true)
+    private String sampleMd5;
+
+}
@@ -0,0 +1,36 @@
+package com.tiansuo.file.manage.model.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 文件增量更新完成入参DTO
+ *
+ * @author zhangb
+ * @since 2025/1/13
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("文件增量更新完成入参DTO")
+public class FileUpdateCompleteDTO {
+
+    @ApiModelProperty(value = "被更新文件的唯一key", required = true)
+    private String fileKey;
+
+    @ApiModelProperty(value = "新文件md5", required = true)
+    private String fileMd5;
+
+    @ApiModelProperty(value = "新文件长度", required = true)
+    private Long fileSize;
+
+    @ApiModelProperty(value = "上传任务编号", required = true)
+    private String uploadTaskId;
+
+    @ApiModelProperty(value = "分块数量", required = true)
+    private Integer partCount;
+
+}
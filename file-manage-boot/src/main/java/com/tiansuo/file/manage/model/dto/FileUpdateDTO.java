@@ -0,0 +1,54 @@
+package com.tiansuo.file.manage.model.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 文件增量更新初始化入参DTO
+ *
+ * @author zhangb
+ * @since 2025/1/13
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("文件增量更新初始化入参DTO")
+public class FileUpdateDTO {
+
+    @ApiModelProperty(value = "被更新文件的唯一key", required = true)
+    private String fileKey;
+
+    @ApiModelProperty(value = "新文件md5", required = true)
+    private String fileMd5;
+
+    @ApiModelProperty(value = "新文件长度", required = true)
+    private Long fileSize;
+
+    @ApiModelProperty(value = "签名使用的分块大小", required = true)
+    private Integer blockSize;
+
+    @ApiModelProperty(value = "新文件中与原文件相同的分块")
+    private List<Match> matchList;
+
+    /**
+     * 匹配分块实体定义
+     */
+    @Getter
+    @Setter
+    @ToString
+    public static class Match {
+
+        @ApiModelProperty(value = "在新文件中的开始位置")
+        private Long offset;
+
+        @ApiModelProperty(value = "原文件分块序号")
+        private Integer blockIndex;
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.tiansuo.file.manage.model.dto;
+
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 分块确认DTO
+ *
+ * @author zhangb
+ * @since 2025/1/22
+ */
+@Getter
+@Setter
+@ToString
+@ApiModel("分块确认入参DTO")
+public class PartAckDTO {
+
+    @ApiModelProperty(value = "文件KEY", required = true)
+    private String fileKey;
+
+    @ApiModelProperty(value = "上传任务编号", required = true)
+    private String uploadTaskId;
+
+    @ApiModelProperty(value = "分块序号", required = true)
+    private Integer partNumber;
+
+    @ApiModelProperty(value = "分块上传响应头中的ETag", required = true)
+    private String etag;
+
+}
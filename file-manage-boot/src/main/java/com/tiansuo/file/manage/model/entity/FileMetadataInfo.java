@@ -83,6 +83,22 @@ public class FileMetadataInfo {
     @ApiModelProperty(value = "分块数量")
     private Integer partNumber;
 
+    @TableField(value = "part_size")
+    @ApiModelProperty(value = "分块大小")
+    private Integer partSize;
+
+    @TableField(value = "sample_md5")
+    @ApiModelProperty(value = "抽样md5")
+    private String sampleMd5;
+
+    @TableField(value = "owner_md5")
+    @ApiModelProperty(value = "作为上传任务所有者的md5，唯一，同一md5只有首次初始化的元数据记录")
+    private String ownerMd5;
+
+    @TableField(value = "verify_state")
+    @ApiModelProperty(value = "校验状态 0:未校验 1:已校验 2:md5不一致已隔离")
+    private Integer verifyState;
+
     @TableField(value = "is_preview")
     @ApiModelProperty(value = "预览图 0:无 1:有")
     private Integer isPreview;
@@ -91,6 +107,26 @@ public class FileMetadataInfo {
     @ApiModelProperty(value = "是否私有 0:否 1:是")
     private Integer isPrivate;
 
+    @TableField(value = "pack_id")
+    @ApiModelProperty(value = "所在容器主键，为空时文件单独存储")
+    private Long packId;
+
+    @TableField(value = "pack_offset")
+    @ApiModelProperty(value = "文件在容器中的开始位置")
+    private Long packOffset;
+
+    @TableField(value = "content_encoding")
+    @ApiModelProperty(value = "内容编码，为空时未压缩")
+    private String contentEncoding;
+
+    @TableField(value = "acked_parts")
+    @ApiModelProperty(value = "已确认分块数量")
+    private Integer ackedParts;
+
+    @TableField(value = "active_time")
+    @ApiModelProperty(value = "上传最后活动时间")
+    private Date activeTime;
+
     @TableField(value = "create_time")
     @ApiModelProperty(value = "创建时间")
     private Date createTime;
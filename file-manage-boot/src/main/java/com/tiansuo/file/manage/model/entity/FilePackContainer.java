@@ -0,0 +1,49 @@
+package com.tiansuo.file.manage.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+
+/**
+ * 小文件容器
+ * 多个小文件合并写入一个容器对象，对象名称为容器路径前缀加主键
+ *
+ * @author zhangb
+ * @since 2025-01-27
+ **/
+@Accessors(chain = true)
+@Getter
+@Setter
+@ApiModel(value = "小文件容器")
+@TableName(value = "file_pack_container")
+public class FilePackContainer {
+
+    @TableId(type = IdType.AUTO)
+    @ApiModelProperty(value = "主键")
+    private Long id;
+
+    @TableField(value = "storage_bucket")
+    @ApiModelProperty(value = "存储桶")
+    private String storageBucket;
+
+    @TableField(value = "total_size")
+    @ApiModelProperty(value = "容器长度")
+    private Long totalSize;
+
+    @TableField(value = "live_size")
+    @ApiModelProperty(value = "有效数据长度")
+    private Long liveSize;
+
+    @TableField(value = "create_time")
+    @ApiModelProperty(value = "创建时间")
+    private Date createTime;
+
+}
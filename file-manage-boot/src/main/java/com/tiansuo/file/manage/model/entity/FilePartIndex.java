@@ -0,0 +1,57 @@
+package com.tiansuo.file.manage.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+
+/**
+ * 分块内容索引
+ * 记录已完成文件中每个分块的md5及其在对象中的位置，新上传任务中md5相同的分块可在服务端复制而无需重新上传
+ *
+ * @author zhangb
+ * @since 2025-01-10
+ **/
+@Accessors(chain = true)
+@Getter
+@Setter
+@ApiModel(value = "分块内容索引")
+@TableName(value = "file_part_index")
+public class FilePartIndex {
+
+    @TableId(type = IdType.AUTO)
+    @ApiModelProperty(value = "主键")
+    private Long id;
+
+    @TableField(value = "part_md5")
+    @ApiModelProperty(value = "分块md5")
+    private String partMd5;
+
+    @TableField(value = "part_size")
+    @ApiModelProperty(value = "分块大小")
+    private Long partSize;
+
+    @TableField(value = "storage_bucket")
+    @ApiModelProperty(value = "存储桶")
+    private String storageBucket;
+
+    @TableField(value = "object_name")
+    @ApiModelProperty(value = "对象名称")
+    private String objectName;
+
+    @TableField(value = "part_offset")
+    @ApiModelProperty(value = "分块在对象中的开始位置")
+    private Long partOffset;
+
+    @TableField(value = "create_time")
+    @ApiModelProperty(value = "创建时间")
+    private Date createTime;
+
+}
@@ -0,0 +1,37 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 追加上传结果
+ *
+ * @author zhangb
+ * @since 2025-01-14
+ **/
+@Getter
+@Setter
+@ApiModel(value = "追加上传结果")
+public class AppendResultVo {
+
+    /**
+     * 文件KEY
+     */
+    @ApiModelProperty(value = "文件KEY，后续追加和提交时使用")
+    private String fileKey;
+
+    /**
+     * 已接收长度
+     */
+    @ApiModelProperty(value = "已接收长度，下次追加的开始位置")
+    private Long offset;
+
+    /**
+     * 已上传分片数量
+     */
+    @ApiModelProperty(value = "已上传分片数量")
+    private Integer partCount;
+
+}
@@ -0,0 +1,54 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑格式的分块上传链接
+ * 上传地址 = baseUrl + "?" + query + "&partNumber=" + 块号 + "&X-Amz-Signature=" + 签名
+ * 开始位置 = (块号 - 1) * partSize，结束位置 = min(开始位置 + partSize, 文件长度)
+ *
+ * @author zhangb
+ * @since 2025-01-23
+ **/
+@Getter
+@Setter
+@ApiModel(value = "紧凑格式的分块上传链接")
+public class CompactPartsVo {
+
+    /**
+     * 不含查询参数的上传地址
+     */
+    @ApiModelProperty(value = "不含查询参数的上传地址")
+    private String baseUrl;
+
+    /**
+     * 各分块共用的查询参数，不含partNumber和X-Amz-Signature
+     */
+    @ApiModelProperty(value = "各分块共用的查询参数，不含partNumber和X-Amz-Signature")
+    private String query;
+
+    /**
+     * 分块大小
+     */
+    @ApiModelProperty(value = "分块大小")
+    private Long partSize;
+
+    /**
+     * 块号
+     */
+    @ApiModelProperty(value = "块号")
+    private List<Integer> partNumbers = new ArrayList<>();
+
+    /**
+     * 签名，与块号一一对应
+     */
+    @ApiModelProperty(value = "签名，与块号一一对应")
+    private List<String> signatures = new ArrayList<>();
+
+}
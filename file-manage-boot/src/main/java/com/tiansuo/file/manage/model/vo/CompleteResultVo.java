@@ -19,6 +19,9 @@ import java.util.List;
 @ApiModel(value = "文件完整性校验结果")
 public class CompleteResultVo {
 
+    @ApiModelProperty(value = "文件KEY")
+    private String fileKey;
+
     @ApiModelProperty(value = "是否完成")
     private Boolean isComplete;
 
@@ -28,4 +31,10 @@ public class CompleteResultVo {
     @ApiModelProperty(value = "补传的分块信息")
     private List<FileCheckResultVo.Part> partList = new ArrayList<>();
 
+    @ApiModelProperty(value = "紧凑格式的补传分块链接，请求紧凑格式时返回，partList中只保留无法共用查询参数的分块")
+    private CompactPartsVo compactParts;
+
+    @ApiModelProperty(value = "下一批补传分块链接的起始块号，为空表示已全部下发")
+    private Integer nextPartNumber;
+
 }
\ No newline at end of file
@@ -71,18 +71,41 @@ public class FileCheckResultVo {
     @ApiModelProperty(value = "分块大小")
     private Integer partSize;
 
+    /**
+     * 建议并发数
+     */
+    @ApiModelProperty(value = "建议并发数，按同一网络近期上传的速度调整")
+    private Integer concurrency;
+
     /**
      * 分块信息
      */
     @ApiModelProperty(value = "分块信息")
     private List<Part> partList = new ArrayList<>();
 
+    /**
+     * 紧凑格式的分块上传链接
+     */
+    @ApiModelProperty(value = "紧凑格式的分块上传链接，请求紧凑格式时返回，partList中只保留无法共用查询参数的分块")
+    private CompactPartsVo compactParts;
+
+    /**
+     * 下一批分块链接的起始块号
+     */
+    @ApiModelProperty(value = "下一批分块链接的起始块号，为空表示已全部下发")
+    private Integer nextPartNumber;
+
     /**
      * 分块信息实体定义
      */
     @Getter
     @Setter
     public static class Part {
+        /**
+         * 分块序号
+         */
+        @ApiModelProperty(value = "分块序号")
+        private Integer partNumber;
         /**
          * minio的上传id
          */
@@ -64,6 +64,12 @@ public class FileMetadataInfoVo {
     @ApiModelProperty(value = "分块数量")
     private Integer partNumber;
 
+    @ApiModelProperty(value = "分块大小")
+    private Integer partSize;
+
+    @ApiModelProperty(value = "抽样md5")
+    private String sampleMd5;
+
     @ApiModelProperty(value = "预览图 0:无 1:有")
     private Integer isPreview;
 
@@ -0,0 +1,58 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块上传链接窗口结果
+ *
+ * @author zhangb
+ * @since 2025-01-06
+ **/
+@Getter
+@Setter
+@ApiModel(value = "分块上传链接窗口结果")
+public class FilePartWindowVo {
+
+    /**
+     * 文件KEY
+     */
+    @ApiModelProperty(value = "文件KEY")
+    private String fileKey;
+
+    /**
+     * 上传任务编号
+     */
+    @ApiModelProperty(value = "上传任务编号")
+    private String uploadTaskId;
+
+    /**
+     * 分块数量
+     */
+    @ApiModelProperty(value = "分块数量")
+    private Integer partCount;
+
+    /**
+     * 分块大小
+     */
+    @ApiModelProperty(value = "分块大小")
+    private Integer partSize;
+
+    /**
+     * 本批次分块信息
+     */
+    @ApiModelProperty(value = "本批次分块信息")
+    private List<FileCheckResultVo.Part> partList = new ArrayList<>();
+
+    /**
+     * 下一批分块链接的起始块号
+     */
+    @ApiModelProperty(value = "下一批分块链接的起始块号，为空表示已全部下发")
+    private Integer nextPartNumber;
+
+}
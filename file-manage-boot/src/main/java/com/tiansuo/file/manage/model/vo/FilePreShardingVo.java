@@ -42,6 +42,12 @@ public class FilePreShardingVo {
     @ApiModelProperty(value = "分块信息")
     private List<Part> partList = new ArrayList<>();
 
+    /**
+     * 抽样范围，用于计算抽样md5
+     */
+    @ApiModelProperty(value = "抽样范围，按顺序拼接各范围内的字节计算抽样md5")
+    private List<Part> sampleList = new ArrayList<>();
+
     /**
      * 分块信息实体定义
      */
@@ -0,0 +1,27 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 文件抽样预检查结果
+ *
+ * @author zhangb
+ * @since 2025-01-09
+ **/
+@Getter
+@Setter
+@ApiModel(value = "文件抽样预检查结果")
+public class FilePrecheckResultVo {
+
+    /**
+     * 是否疑似重复
+     * true:存在长度和抽样md5相同的文件，需计算完整md5后初始化以确认秒传
+     * false:确定为新文件，可不计算完整md5直接初始化上传
+     */
+    @ApiModelProperty(value = "是否疑似重复 true:需计算完整md5确认秒传 false:新文件可直接上传")
+    private Boolean isCandidate;
+
+}
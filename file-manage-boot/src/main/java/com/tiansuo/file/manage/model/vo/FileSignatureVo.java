@@ -0,0 +1,80 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件分块签名结果
+ * 前端用弱校验值在新文件中滚动查找与原文件相同的分块，再用强校验值确认，只上传不同的部分
+ *
+ * @author zhangb
+ * @since 2025-01-13
+ **/
+@Getter
+@Setter
+@ApiModel(value = "文件分块签名结果")
+public class FileSignatureVo {
+
+    /**
+     * 文件KEY
+     */
+    @ApiModelProperty(value = "文件KEY")
+    private String fileKey;
+
+    /**
+     * 文件md5
+     */
+    @ApiModelProperty(value = "文件md5")
+    private String fileMd5;
+
+    /**
+     * 文件长度
+     */
+    @ApiModelProperty(value = "文件长度")
+    private Long fileSize;
+
+    /**
+     * 分块大小
+     */
+    @ApiModelProperty(value = "分块大小，第n块(从0开始)的开始位置为n*分块大小，最后一块可能不足分块大小")
+    private Integer blockSize;
+
+    /**
+     * 分块签名
+     */
+    @ApiModelProperty(value = "分块签名")
+    private List<Block> blockList = new ArrayList<>();
+
+    /**
+     * 分块签名实体定义
+     */
+    @Getter
+    @Setter
+    public static class Block {
+
+        /**
+         * 分块序号
+         */
+        @ApiModelProperty(value = "分块序号，从0开始")
+        private Integer index;
+
+        /**
+         * 弱校验值
+         */
+        @ApiModelProperty(value = "弱校验值(Adler-32)，可按字节滚动计算")
+        private Long weak;
+
+        /**
+         * 强校验值
+         */
+        @ApiModelProperty(value = "强校验值(md5)")
+        private String strong;
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件增量更新初始化结果
+ *
+ * @author zhangb
+ * @since 2025-01-13
+ **/
+@Getter
+@Setter
+@ApiModel(value = "文件增量更新初始化结果")
+public class FileUpdateResultVo {
+
+    /**
+     * 文件KEY
+     */
+    @ApiModelProperty(value = "文件KEY")
+    private String fileKey;
+
+    /**
+     * 上传任务编号
+     */
+    @ApiModelProperty(value = "上传任务编号")
+    private String uploadTaskId;
+
+    /**
+     * 分块数量
+     */
+    @ApiModelProperty(value = "分块数量，含服务端复制的分块，更新完成时需回传")
+    private Integer partCount;
+
+    /**
+     * 服务端复制的字节数
+     */
+    @ApiModelProperty(value = "服务端复制的字节数")
+    private Long copiedSize;
+
+    /**
+     * 需要上传的分块
+     */
+    @ApiModelProperty(value = "需要上传的分块，开始位置和结束位置为新文件中的位置")
+    private List<FileCheckResultVo.Part> partList = new ArrayList<>();
+
+    /**
+     * 是否已完成
+     */
+    @ApiModelProperty(value = "是否已完成，新文件已存在时无需上传直接完成")
+    private Boolean isDone;
+
+}
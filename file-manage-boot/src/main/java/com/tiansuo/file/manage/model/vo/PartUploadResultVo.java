@@ -0,0 +1,37 @@
+package com.tiansuo.file.manage.model.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 分块代理上传结果
+ *
+ * @author zhangb
+ * @since 2025-01-08
+ **/
+@Getter
+@Setter
+@ApiModel(value = "分块代理上传结果")
+public class PartUploadResultVo {
+
+    /**
+     * 文件KEY
+     */
+    @ApiModelProperty(value = "文件KEY")
+    private String fileKey;
+
+    /**
+     * 分块序号
+     */
+    @ApiModelProperty(value = "分块序号")
+    private Integer partNumber;
+
+    /**
+     * 分块标签(MD5)
+     */
+    @ApiModelProperty(value = "分块标签(MD5)")
+    private String etag;
+
+}
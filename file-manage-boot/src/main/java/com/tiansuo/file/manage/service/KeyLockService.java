@@ -0,0 +1,35 @@
+package com.tiansuo.file.manage.service;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * 按业务KEY加锁执行
+ * 相同KEY的操作在进程内和多个节点之间串行执行，后到的调用方在前一个调用方提交后再执行，可以看到其结果
+ *
+ * @author zhangb
+ * @since  2025/01/25
+ */
+public interface KeyLockService {
+
+    /**
+     * 加锁执行
+     * 存在事务时锁在事务结束后释放，否则在执行结束后释放
+     * @param key 业务KEY，不超过64个字符
+     * @param supplier 执行内容
+     * @param <T> 结果类型
+     * @return 执行结果
+     */
+    <T> T execute(String key, Supplier<T> supplier);
+
+    /**
+     * 同时对多个KEY加锁执行
+     * 多个KEY按固定顺序加锁，与单个KEY加锁的调用方互斥
+     * @param keys 业务KEY集合，每个不超过64个字符
+     * @param supplier 执行内容
+     * @param <T> 结果类型
+     * @return 执行结果
+     */
+    <T> T execute(Collection<String> keys, Supplier<T> supplier);
+
+}
@@ -4,9 +4,9 @@ import com.google.common.collect.Multimap;
 import com.tiansuo.file.manage.model.vo.ListParts;
 import io.minio.UploadPartResponse;
 
-import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * MinIO S3文件存储引擎接口定义
@@ -50,6 +50,7 @@ public interface MinioS3Client {
 
     /**
      * 获取分片信息列表
+     * 超过一页时分页查询全部分片
      * @param bucketName 桶名称
      * @param objectName 对象名称（含路径）
      * @param maxParts 分片数量
@@ -58,6 +59,26 @@ public interface MinioS3Client {
      */
     ListParts listParts(String bucketName,String objectName,Integer maxParts,String uploadId);
 
+    /**
+     * 取消分片上传任务，清理已上传的分片
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @param uploadId 上传任务编号
+     */
+    void abortMultipartUpload(String bucketName, String objectName, String uploadId);
+
+    /**
+     * 获取指定块号之后的分片信息列表
+     * 返回块号在(partNumberMarker, partNumberMarker + maxParts]范围内的分片，按块号升序，超过一页时并发分页查询
+     * @param bucketName 桶名称
+     * @param objectName 对象名称（含路径）
+     * @param maxParts 块号范围大小
+     * @param partNumberMarker 起始块号（不含），返回块号大于该值的分片
+     * @param uploadId 上传任务编号
+     * @return 分片信息
+     */
+    ListParts listParts(String bucketName,String objectName,Integer maxParts,Integer partNumberMarker,String uploadId);
+
     /**
      * 获得对象和分片上传链接
      * @param bucketName  桶名称
@@ -78,15 +99,6 @@ public interface MinioS3Client {
      */
     String getDownloadUrl(String fileName, String contentType, String bucketName, String objectName);
 
-    /**
-     * 取得下载文件流
-     * @param fileName 文件全名含扩展名
-     * @param bucketName 桶名称
-     * @param response 响应
-     * @return 下载地址
-     */
-    void getDownloadObject(String fileName, String bucketName, HttpServletResponse response);
-
     /**
      * 取得图片预览链接
      * @param contentType 数据类型
@@ -112,6 +124,34 @@ public interface MinioS3Client {
      **/
     UploadPartResponse uploadPart(String bucketName, String region, String objectName, Object data, long length, String uploadId, int partNumber, Multimap<String, String> extraHeaders, Multimap<String, String> extraQueryParams);
 
+    /**
+     * 前端通过后端流式上传分片到MinIO
+     * 请求体边读边写入MinIO，不在内存或临时文件中缓冲完整分片
+     * @param bucketName MinIO桶名称
+     * @param objectName MinIO中文件全路径
+     * @param uploadId 文件上传uploadId
+     * @param partNumber 分片编号
+     * @param stream 分片数据流
+     * @param length 当前分片文件大小
+     * @return 分片ETag
+     */
+    String uploadPartStream(String bucketName, String objectName, String uploadId, int partNumber, InputStream stream, long length);
+
+    /**
+     * 服务端复制已有对象的字节范围作为分片，不经过前端和后端传输数据
+     * @param bucketName MinIO桶名称
+     * @param objectName MinIO中文件全路径
+     * @param uploadId 文件上传uploadId
+     * @param partNumber 分片编号
+     * @param sourceBucketName 源对象桶名称
+     * @param sourceObjectName 源对象全路径
+     * @param offset 源对象中的开始位置
+     * @param length 复制长度
+     * @return 分片ETag
+     */
+    String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                          String sourceBucketName, String sourceObjectName, long offset, long length);
+
 
     /**
      * 文件上传
@@ -124,6 +164,39 @@ public interface MinioS3Client {
      */
     Boolean putObject(String bucketName, String objectName, InputStream stream, long size, String contentType);
 
+    /**
+     * 文件流式上传
+     * 长度已知时边读边写入MinIO，内存占用仅为一个固定大小的缓冲区；长度未知时按最小分片大小分段上传
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @param stream 文件流
+     * @param size 文件长度，未知时传-1
+     * @param contentType 文件类型
+     * @return 是否成功
+     */
+    Boolean putObjectStream(String bucketName, String objectName, InputStream stream, long size, String contentType);
+
+    /**
+     * 文件流式上传，对象记录内容编码
+     * 通过预签名地址下载时MinIO返回Content-Encoding响应头，浏览器自动解压
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @param stream 文件流
+     * @param size 文件长度，未知时传-1
+     * @param contentType 文件类型
+     * @param contentEncoding 内容编码，为空时不记录
+     * @return 是否成功
+     */
+    Boolean putObjectStream(String bucketName, String objectName, InputStream stream, long size, String contentType, String contentEncoding);
+
+    /**
+     * 服务端复制文件
+     * @param bucketName 桶名称
+     * @param sourceObjectName 源对象名称含路径
+     * @param objectName 目标对象名称含路径
+     */
+    void copyObject(String bucketName, String sourceObjectName, String objectName);
+
     /**
      * 读取文件
      * @param bucketName 桶名称
@@ -132,6 +205,45 @@ public interface MinioS3Client {
      */
     byte[] getObject(String bucketName, String objectName);
 
+    /**
+     * 读取文件流
+     * 调用方负责关闭返回的文件流
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @return 文件流
+     */
+    InputStream getObjectStream(String bucketName, String objectName);
+
+    /**
+     * 按范围读取文件流
+     * 调用方负责关闭返回的文件流
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @param offset 开始位置
+     * @param length 读取长度
+     * @return 文件流
+     */
+    InputStream getObjectStream(String bucketName, String objectName, long offset, long length);
+
+    /**
+     * 异步按范围读取文件流
+     * 调用方负责关闭返回的文件流
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @param offset 开始位置
+     * @param length 读取长度
+     * @return 文件流，响应头返回后完成
+     */
+    CompletableFuture<? extends InputStream> getObjectStreamAsync(String bucketName, String objectName, long offset, long length);
+
+    /**
+     * 取得对象长度
+     * @param bucketName 桶名称
+     * @param objectName 对象名称含路径
+     * @return 对象长度
+     */
+    long getObjectSize(String bucketName, String objectName);
+
     /**
      * 删除文件
      * @param bucketName 桶名称
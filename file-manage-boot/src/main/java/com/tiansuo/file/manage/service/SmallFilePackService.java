@@ -0,0 +1,51 @@
+package com.tiansuo.file.manage.service;
+
+import com.tiansuo.file.manage.model.bo.PackEntryBO;
+
+/**
+ * 小文件合并存储
+ * 对象存储中的对象不能追加写入，小于阈值的文件先在内存中排队，攒满一个容器或等待超时后合并写入一个新的容器对象
+ *
+ * @author zhangb
+ * @since  2025/01/27
+ */
+public interface SmallFilePackService {
+
+    /**
+     * 是否合并存储
+     * @param bucketName 桶名称
+     * @param fileSize 文件长度
+     * @return 是否合并存储
+     */
+    boolean isPackable(String bucketName, long fileSize);
+
+    /**
+     * 将文件写入容器，容器对象写入成功后返回
+     * @param bucketName 桶名称
+     * @param content 文件内容
+     * @return 文件在容器中的位置
+     */
+    PackEntryBO pack(String bucketName, byte[] content);
+
+    /**
+     * 取得容器对象名称
+     * @param packId 容器主键
+     * @return 对象名称
+     */
+    String getObjectName(Long packId);
+
+    /**
+     * 文件不再被引用时扣减容器的有效数据长度，容器中的数据由整理任务回收
+     * @param packId 容器主键
+     * @param length 文件长度
+     */
+    void release(Long packId, long length);
+
+    /**
+     * 整理有效数据占比过低的容器
+     * 有效文件重新写入新容器并更新元数据，已无引用的容器删除
+     * @return 处理的容器数量
+     */
+    int compact();
+
+}
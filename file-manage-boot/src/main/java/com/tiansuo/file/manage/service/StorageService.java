@@ -2,13 +2,17 @@ package com.tiansuo.file.manage.service;
 
 import cn.hutool.core.lang.Pair;
 import com.sun.org.apache.xpath.internal.operations.Bool;
+import com.tiansuo.file.manage.model.dto.FileCheckDTO;
+import com.tiansuo.file.manage.model.dto.FileCompleteDTO;
 import com.tiansuo.file.manage.model.dto.FileMetadataInfoDTO;
+import com.tiansuo.file.manage.model.dto.FileUpdateDTO;
 import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
 import com.tiansuo.file.manage.model.vo.*;
 import com.tiansuo.file.manage.response.ResultModel;
 import io.minio.UploadPartResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
 import java.util.List;
@@ -27,24 +31,162 @@ public interface StorageService {
      */
     FilePreShardingVo sharding(long fileSize);
 
+    /**
+     * 抽样预检查
+     * @param fileSize 文件长度
+     * @param sampleMd5 抽样md5
+     * @return {@link FilePrecheckResultVo}
+     */
+    FilePrecheckResultVo precheck(Long fileSize, String sampleMd5);
+
     /**
      * 上传任务初始化
      * @param fileMd5 文件md5值
+     * @param sampleMd5 抽样md5
+     * @param partMd5List 分块md5列表
      * @param fullFileName 文件名（含扩展名）
      * @param fileSize 文件长度
      * @param isPrivate 是否私有 0:否 1:是
+     * @param clientNetwork 客户端网络，可为空
      * @return {@link FileCheckResultVo}
      */
-    FileCheckResultVo init(String fileMd5,String fullFileName, long fileSize, Integer isPrivate);
+    FileCheckResultVo init(String fileMd5, String sampleMd5, List<String> partMd5List, String fullFileName, long fileSize, Integer isPrivate, String clientNetwork);
+
+
+    /**
+     * 批量上传任务初始化
+     * @param fileList 文件清单
+     * @param clientNetwork 客户端网络，可为空
+     * @return 与清单顺序一致的检查结果
+     */
+    List<FileCheckResultVo> batchInit(List<FileCheckDTO> fileList, String clientNetwork);
 
+    /**
+     * 批量合并已分块的文件
+     * @param fileList 文件清单
+     * @return 与清单顺序一致的合并结果
+     */
+    List<CompleteResultVo> batchComplete(List<FileCompleteDTO> fileList);
+
+    /**
+     * 分块确认
+     * @param fileKey 文件KEY
+     * @param uploadTaskId 上传任务编号
+     * @param partNumber 分块序号
+     * @param etag 分块ETag
+     * @return 是否成功
+     */
+    Boolean ackPart(String fileKey, String uploadTaskId, Integer partNumber, String etag);
+
+    /**
+     * 自动合并全部分块已上传的上传任务
+     * @return 本次合并的上传任务数量
+     */
+    Integer autoComplete();
+
+    /**
+     * 后台校验已完成文件的实际内容
+     * @return 本次校验的文件数量
+     */
+    Integer verifyFiles();
 
     /**
      * 合并已分块的文件
      * @param fileKey 文件关键
+     * @param fileMd5 文件md5值
      * @param partMd5List 文件分块md5列表
      * @return {@link CompleteResultVo}
      */
-    CompleteResultVo complete(String fileKey, List<String> partMd5List);
+    CompleteResultVo complete(String fileKey, String fileMd5, List<String> partMd5List);
+
+    /**
+     * 获取下一批分块上传链接
+     * @param fileKey 文件KEY
+     * @param partNumber 本批次起始块号
+     * @return {@link FilePartWindowVo}
+     */
+    FilePartWindowVo nextParts(String fileKey, Integer partNumber);
+
+    /**
+     * 刷新分块上传链接
+     * @param fileKey 文件KEY
+     * @param uploadTaskId 上传任务编号
+     * @param startPartNumber 起始块号
+     * @param endPartNumber 结束块号（含）
+     * @return {@link FilePartWindowVo}
+     */
+    FilePartWindowVo refreshParts(String fileKey, String uploadTaskId, Integer startPartNumber, Integer endPartNumber);
+
+    /**
+     * 通过服务端代理上传分块
+     * 请求体直接流式转发到MinIO，同一文件的多个分块可以并发上传
+     * @param fileKey 文件KEY
+     * @param partNumber 分块序号
+     * @param stream 分块数据流
+     * @param length 分块大小
+     * @return {@link PartUploadResultVo}
+     */
+    PartUploadResultVo uploadPart(String fileKey, Integer partNumber, InputStream stream, long length);
+
+    /**
+     * 取得文件的分块签名
+     * @param fileKey 文件KEY
+     * @return {@link FileSignatureVo}
+     */
+    FileSignatureVo signature(String fileKey);
+
+    /**
+     * 文件增量更新初始化
+     * @param fileKey 被更新文件的KEY
+     * @param fileMd5 新文件md5
+     * @param fileSize 新文件长度
+     * @param blockSize 签名使用的分块大小
+     * @param matchList 新文件中与原文件相同的分块
+     * @return {@link FileUpdateResultVo}
+     */
+    FileUpdateResultVo updateInit(String fileKey, String fileMd5, Long fileSize, Integer blockSize, List<FileUpdateDTO.Match> matchList);
+
+    /**
+     * 文件增量更新完成
+     * @param fileKey 被更新文件的KEY
+     * @param fileMd5 新文件md5
+     * @param fileSize 新文件长度
+     * @param uploadTaskId 上传任务编号
+     * @param partCount 分块数量
+     * @return 是否成功
+     */
+    Boolean updateComplete(String fileKey, String fileMd5, Long fileSize, String uploadTaskId, Integer partCount);
+
+    /**
+     * 开启追加上传会话
+     * @param fullFileName 文件名（含扩展名）
+     * @param isPrivate 是否私有 0:否 1:是
+     * @return {@link AppendResultVo}
+     */
+    AppendResultVo appendOpen(String fullFileName, Integer isPrivate);
+
+    /**
+     * 追加数据
+     * @param fileKey 文件KEY
+     * @param offset 本次追加的开始位置
+     * @param stream 追加的数据
+     * @return {@link AppendResultVo}
+     */
+    AppendResultVo appendPush(String fileKey, Long offset, InputStream stream);
+
+    /**
+     * 提交追加上传会话
+     * @param fileKey 文件KEY
+     * @return {@link FileUploadResultVo}
+     */
+    FileUploadResultVo appendCommit(String fileKey);
+
+    /**
+     * 取消追加上传会话
+     * @param fileKey 文件KEY
+     * @return 是否成功
+     */
+    Boolean appendAbort(String fileKey);
 
     /**
      * 取得文件下载地址
@@ -57,10 +199,13 @@ public interface StorageService {
     /**
      * 取得文件下载地址
      *
+     * 压缩存储的文件在客户端接受该编码时原样返回，否则解压后返回
+     *
      * @param fileKey 文件KEY
-     * @return 文件下载地址
+     * @param request 请求
+     * @param response 响应
      */
-    void getDownloadObject(String fileKey, HttpServletResponse response);
+    void getDownloadObject(String fileKey, HttpServletRequest request, HttpServletResponse response);
 
 
     /**
@@ -93,6 +238,26 @@ public interface StorageService {
      */
     FileUploadResultVo uploadFile(MultipartFile file);
 
+    /**
+     * 批量上传文件(小文件不分片)
+     * 各文件并发读取和写入，元数据一次批量插入
+     *
+     * @param files 上传的文件
+     * @return 与上传顺序一致的上传结果
+     */
+    List<FileUploadResultVo> batchUploadFile(List<MultipartFile> files);
+
+    /**
+     * 流式上传文件(小文件不分片)
+     * 边上传边计算md5，文件只读取一次
+     *
+     * @param fullFileName 文件名（含扩展名）
+     * @param stream       文件流
+     * @param fileSize     文件长度，未知时传-1
+     * @return {@link FileUploadResultVo}
+     */
+    FileUploadResultVo uploadStream(String fullFileName, InputStream stream, long fileSize);
+
     Boolean bindBusinessAndFile(List<String> fileKeyList, String businessKey);
 
     List<FileUploadResultVo> getFileByBusinessKey(String businessKey);
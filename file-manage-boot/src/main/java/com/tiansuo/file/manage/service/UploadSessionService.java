@@ -0,0 +1,49 @@
+package com.tiansuo.file.manage.service;
+
+import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
+
+/**
+ * 上传会话登记
+ * 进行中的分片上传元数据缓存在内存中，获取分块链接、分块确认等每个分块都会调用的接口不再查询数据库；
+ * 上传进度暂存在内存中，由定时任务批量写入数据库，合并完成时的状态仍同步写入数据库
+ *
+ * @author zhangb
+ * @since  2025/01/29
+ */
+public interface UploadSessionService {
+
+    /**
+     * 取得上传会话的元数据
+     * 缓存未命中时查询数据库，未完成的上传加入缓存
+     * @param fileKey 文件KEY
+     * @return 元数据，不存在时为空
+     */
+    FileMetadataInfo get(String fileKey);
+
+    /**
+     * 登记上传会话，存在事务时在事务提交后登记
+     * @param metadata 元数据
+     */
+    void register(FileMetadataInfo metadata);
+
+    /**
+     * 上传会话的元数据已在数据库中变更，移除缓存
+     * 存在事务时在事务提交后再移除一次，避免事务提交前读到旧数据重新加入缓存
+     * @param fileKey 文件KEY
+     */
+    void invalidate(String fileKey);
+
+    /**
+     * 记录上传进度，由定时任务批量写入数据库
+     * @param fileKey 文件KEY
+     * @param ackedParts 已确认分块数量
+     */
+    void recordProgress(String fileKey, int ackedParts);
+
+    /**
+     * 将暂存的上传进度批量写入数据库
+     * @return 写入的记录数
+     */
+    int flush();
+
+}
@@ -0,0 +1,48 @@
+package com.tiansuo.file.manage.service;
+
+import com.tiansuo.file.manage.model.bo.UploadTuningBO;
+import com.tiansuo.file.manage.model.vo.ListParts;
+
+import java.util.List;
+
+/**
+ * 上传参数建议接口定义
+ * 按客户端网络统计近期上传的分块到达速度，为初始化结果提供并发数和分块大小建议
+ *
+ * @author zhangb
+ * @since  2025/01/26
+ */
+public interface UploadTuningService {
+
+    /**
+     * 取得客户端网络的上传参数建议
+     * @param network 客户端网络，为空时返回默认建议
+     * @return 上传参数建议
+     */
+    UploadTuningBO recommend(String network);
+
+    /**
+     * 登记上传任务，开始观测
+     * @param uploadId 上传任务编号
+     * @param tuning 下发的上传参数建议
+     * @param fileSize 文件长度
+     * @param partSize 分块大小
+     */
+    void register(String uploadId, UploadTuningBO tuning, long fileSize, int partSize);
+
+    /**
+     * 记录分块确认
+     * @param uploadId 上传任务编号
+     * @param partNumber 块号
+     */
+    void observeAck(String uploadId, int partNumber);
+
+    /**
+     * 结束观测，更新客户端网络的统计
+     * 分块确认不足时按分片的最后修改时间估算
+     * @param uploadId 上传任务编号
+     * @param partList MinIO中的分片，可为空
+     */
+    void finish(String uploadId, List<ListParts.Part> partList);
+
+}
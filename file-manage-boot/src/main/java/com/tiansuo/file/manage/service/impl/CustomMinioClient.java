@@ -57,6 +57,22 @@ public class CustomMinioClient extends MinioAsyncClient {
         return super.uploadPartAsync(bucketName, region, objectName, data, length, uploadId, partNumber, extraHeaders, extraQueryParams);
     }
 
+    /**
+     * 服务端复制已有对象的字节范围作为分片
+     *
+     * @param bucketName       存储桶
+     * @param region           区域,一般传null即可
+     * @param objectName       对象名
+     * @param uploadId         上传ID
+     * @param partNumber       分片号
+     * @param headers          消息头,需包含x-amz-copy-source和x-amz-copy-source-range
+     * @param extraQueryParams 额外查询参数,一般传null即可
+     */
+    @Override
+    public CompletableFuture<UploadPartCopyResponse> uploadPartCopyAsync(String bucketName, String region, String objectName, String uploadId, int partNumber, Multimap<String, String> headers, Multimap<String, String> extraQueryParams) throws InsufficientDataException, InternalException, InvalidKeyException, IOException, NoSuchAlgorithmException, XmlParserException {
+        return super.uploadPartCopyAsync(bucketName, region, objectName, uploadId, partNumber, headers, extraQueryParams);
+    }
+
     /**
      * 查询分片数据
      *
@@ -0,0 +1,198 @@
+package com.tiansuo.file.manage.service.impl;
+
+import com.google.common.util.concurrent.Striped;
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.constant.MinioPlusErrorCode;
+import com.tiansuo.file.manage.exception.MinioPlusException;
+import com.tiansuo.file.manage.service.KeyLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * 按业务KEY加锁执行
+ * 进程内使用分段锁，多个节点之间使用MySQL的GET_LOCK命名锁
+ * 命名锁使用当前事务的连接，没有事务时从连接池取得连接，每个调用方只占用一个连接；
+ * 存在事务时命名锁在事务结束后释放，加锁应在事务内第一次读取数据之前，避免读到加锁前的快照
+ *
+ * @author zhangb
+ * @since  2025/01/25
+ */
+@Slf4j
+@Service
+public class KeyLockServiceImpl implements KeyLockService {
+
+    private static final String LOCK_PREFIX = "file-manage:";
+
+    private final Striped<Lock> localLocks = Striped.lazyWeakLock(1024);
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Override
+    public <T> T execute(String key, Supplier<T> supplier) {
+        return this.execute(Collections.singletonList(key), supplier);
+    }
+
+    @Override
+    public <T> T execute(Collection<String> keys, Supplier<T> supplier) {
+        MinioPlusProperties.Lock config = properties.getLock();
+        // 按KEY排序后加锁，同时加锁多个KEY的调用方之间不会互相等待
+        List<String> sortedKeys = new ArrayList<>(new TreeSet<>(keys));
+        List<Lock> acquiredLocks = this.lockLocal(sortedKeys, config.getTimeout());
+
+        Connection connection = null;
+        List<String> acquiredNames = new ArrayList<>(sortedKeys.size());
+        boolean deferred = false;
+        try {
+            if (config.isDistributed()) {
+                connection = this.getConnection();
+                for (String key : sortedKeys) {
+                    this.getLock(connection, LOCK_PREFIX + key, config.getTimeout());
+                    acquiredNames.add(LOCK_PREFIX + key);
+                }
+            }
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                // 事务提交后释放，后到的调用方能读到已提交的结果
+                Connection lockConnection = connection;
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        release(acquiredNames, lockConnection, acquiredLocks);
+                    }
+                });
+                deferred = true;
+            }
+            return supplier.get();
+        } finally {
+            if (!deferred) {
+                this.release(acquiredNames, connection, acquiredLocks);
+            }
+        }
+    }
+
+    /**
+     * 取得进程内锁
+     * 分段锁按段的顺序加锁，多个KEY落在同一段时重复加锁同一个可重入锁
+     *
+     * @param keys    业务KEY
+     * @param timeout 等待时间，单位为秒
+     * @return 已取得的锁
+     */
+    private List<Lock> lockLocal(List<String> keys, int timeout) {
+        List<Lock> acquiredLocks = new ArrayList<>(keys.size());
+        try {
+            for (Lock lock : localLocks.bulkGet(keys)) {
+                if (!lock.tryLock(timeout, TimeUnit.SECONDS)) {
+                    throw new MinioPlusException(MinioPlusErrorCode.LOCK_FAILED);
+                }
+                acquiredLocks.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            this.unlockLocal(acquiredLocks);
+            throw new MinioPlusException(MinioPlusErrorCode.LOCK_FAILED);
+        } catch (MinioPlusException e) {
+            this.unlockLocal(acquiredLocks);
+            throw e;
+        }
+        return acquiredLocks;
+    }
+
+    /**
+     * 取得加命名锁的连接，存在事务时为事务的连接
+     *
+     * @return 连接
+     */
+    private Connection getConnection() {
+        try {
+            return DataSourceUtils.getConnection(dataSource);
+        } catch (DataAccessException e) {
+            log.error("{},失败原因:{}", MinioPlusErrorCode.LOCK_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.LOCK_FAILED);
+        }
+    }
+
+    /**
+     * 取得数据库命名锁
+     *
+     * @param connection 连接
+     * @param name       锁名称
+     * @param timeout    等待时间，单位为秒
+     */
+    private void getLock(Connection connection, String name, int timeout) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, name);
+            statement.setInt(2, timeout);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next() && resultSet.getInt(1) == 1) {
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            log.error("{},锁名称:{},失败原因:{}", MinioPlusErrorCode.LOCK_FAILED.getMessage(), name, e.getMessage(), e);
+        }
+        throw new MinioPlusException(MinioPlusErrorCode.LOCK_FAILED);
+    }
+
+    /**
+     * 释放数据库命名锁和进程内锁
+     *
+     * @param names      已取得的命名锁名称
+     * @param connection 持有命名锁的连接
+     * @param localLocks 已取得的进程内锁
+     */
+    private void release(List<String> names, Connection connection, List<Lock> localLocks) {
+        try {
+            if (connection != null) {
+                try {
+                    for (String name : names) {
+                        this.releaseLock(connection, name);
+                    }
+                } finally {
+                    DataSourceUtils.releaseConnection(connection, dataSource);
+                }
+            }
+        } finally {
+            this.unlockLocal(localLocks);
+        }
+    }
+
+    private void releaseLock(Connection connection, String name) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, name);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            // 连接关闭时命名锁由数据库自动释放
+            log.warn("释放命名锁失败,锁名称:{},原因:{}", name, e.getMessage());
+        }
+    }
+
+    private void unlockLocal(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+}
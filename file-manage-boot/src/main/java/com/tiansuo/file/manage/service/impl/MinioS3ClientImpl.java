@@ -6,6 +6,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.constant.CommonConstant;
 import com.tiansuo.file.manage.constant.MinioPlusErrorCode;
 import com.tiansuo.file.manage.exception.MinioPlusException;
 import com.tiansuo.file.manage.model.vo.ListParts;
@@ -14,22 +15,35 @@ import io.minio.*;
 import io.minio.errors.InsufficientDataException;
 import io.minio.errors.InternalException;
 import io.minio.errors.XmlParserException;
+import io.minio.http.HttpUtils;
 import io.minio.http.Method;
 import io.minio.messages.Part;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -55,12 +69,34 @@ public class MinioS3ClientImpl implements MinioS3Client {
      * 日志打印
      */
     private static final String LOG_TEMPLATE = "{}:{}";
+    /**
+     * 与MinIO之间的连接超时时间，与MinIO客户端默认值保持一致
+     */
+    private static final long CONNECTION_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * 默认数据类型
+     */
+    private static final String OCTET_STREAM = "application/octet-stream";
+    /**
+     * 查询分片时每页数量，S3协议上限1000
+     */
+    private static final int LIST_PARTS_PAGE_SIZE = 1000;
 
     @Autowired
     private MinioPlusProperties properties;
 
     private CustomMinioClient minioClient = null;
 
+    /**
+     * MinIO客户端与流式转发共用的HTTP客户端
+     */
+    private OkHttpClient httpClient = null;
+
+    /**
+     * 已确认存在的桶，避免每次上传都查询桶是否存在
+     */
+    private final Set<String> existingBuckets = ConcurrentHashMap.newKeySet();
+
 
     /**
      * 获取 Minio 客户端
@@ -70,9 +106,19 @@ public class MinioS3ClientImpl implements MinioS3Client {
     public CustomMinioClient getClient() {
 
         if (null == this.minioClient) {
+            // 异步请求都访问同一个MinIO地址，单个地址的并发请求数与连接池一致，默认的5个会让并行读取排队
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(properties.getProxy().getMaxIdleConnections());
+            dispatcher.setMaxRequestsPerHost(properties.getProxy().getMaxIdleConnections());
+            this.httpClient = HttpUtils.newDefaultHttpClient(CONNECTION_TIMEOUT, CONNECTION_TIMEOUT, CONNECTION_TIMEOUT)
+                    .newBuilder()
+                    .connectionPool(new ConnectionPool(properties.getProxy().getMaxIdleConnections(), 5, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .build();
             MinioAsyncClient client = MinioAsyncClient.builder()
                     .endpoint(properties.getBackend())
                     .credentials(properties.getKey(), properties.getSecret())
+                    .httpClient(this.httpClient)
                     .build();
             this.minioClient = new CustomMinioClient(client);
         }
@@ -97,12 +143,20 @@ public class MinioS3ClientImpl implements MinioS3Client {
 
     @Override
     public void makeBucket(String bucketName) {
+        if (existingBuckets.contains(bucketName)) {
+            return;
+        }
         boolean found = bucketExists(bucketName);
         try {
             if (!found) {
                 log.info("create bucket: [{}]", bucketName);
-                this.getClient().makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                this.getClient().makeBucket(MakeBucketArgs.builder().bucket(bucketName).build()).get();
             }
+            existingBuckets.add(bucketName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.MAKE_BUCKET_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.MAKE_BUCKET_FAILED);
         } catch (Exception e) {
             log.error(LOG_TEMPLATE, MinioPlusErrorCode.MAKE_BUCKET_FAILED.getMessage(), e.getMessage(), e);
             throw new MinioPlusException(MinioPlusErrorCode.MAKE_BUCKET_FAILED);
@@ -145,27 +199,58 @@ public class MinioS3ClientImpl implements MinioS3Client {
         }
     }
 
+    @Override
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) {
+        try {
+            this.getClient().abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.ABORT_MULTIPART_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.ABORT_MULTIPART_FAILED);
+        } catch (Exception e) {
+            log.error("{},uploadId:{},ObjectName:{},失败原因:{},", MinioPlusErrorCode.ABORT_MULTIPART_FAILED.getMessage(), uploadId, objectName, e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.ABORT_MULTIPART_FAILED);
+        }
+    }
+
     @Override
     public ListParts listParts(String bucketName, String objectName, Integer maxParts, String uploadId) {
+        return this.listParts(bucketName, objectName, maxParts, 0, uploadId);
+    }
+
+    @Override
+    public ListParts listParts(String bucketName, String objectName, Integer maxParts, Integer partNumberMarker, String uploadId) {
 
         ListParts listParts = ListParts.build();
+        listParts.setBucketName(bucketName);
+        listParts.setObjectName(objectName);
+        listParts.setMaxParts(maxParts);
+        listParts.setUploadId(uploadId);
+
+        // 按块号范围分页，每页范围内最多有一页的分片，各页的请求同时发出
+        int end = partNumberMarker + maxParts;
+        List<CompletableFuture<ListPartsResponse>> pageList = new ArrayList<>();
         try {
-            ListPartsResponse listPartsResponse = this.getClient().listPartsAsync(bucketName, null, objectName, maxParts
-                    , 0, uploadId, null, null).get();
-
-            listParts.setBucketName(bucketName);
-            listParts.setObjectName(objectName);
-            listParts.setMaxParts(maxParts);
-            listParts.setUploadId(uploadId);
-            listParts.setPartList(new ArrayList<>());
-
-            for (Part part : listPartsResponse.result().partList()) {
-                listParts.addPart(part.partNumber(), part.etag(), part.lastModified(), part.partSize());
+            for (int marker = partNumberMarker; marker < end; marker += LIST_PARTS_PAGE_SIZE) {
+                pageList.add(this.getClient().listPartsAsync(bucketName, null, objectName, Math.min(LIST_PARTS_PAGE_SIZE, end - marker)
+                        , marker, uploadId, null, null));
             }
-
+            for (int i = 0; i < pageList.size(); i++) {
+                int pageEnd = Math.min(partNumberMarker + (i + 1) * LIST_PARTS_PAGE_SIZE, end);
+                for (Part part : pageList.get(i).get().result().partList()) {
+                    if (part.partNumber() <= pageEnd) {
+                        listParts.addPart(part.partNumber(), part.etag(), part.lastModified(), part.partSize());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.LIST_PARTS_FAILED.getMessage(), e.getMessage());
+            listParts.setPartList(new ArrayList<>());
         } catch (Exception e) {
             // 查询分片失败，打印日志，返回空的分片信息
             log.error(LOG_TEMPLATE, MinioPlusErrorCode.LIST_PARTS_FAILED.getMessage(), e.getMessage());
+            listParts.setPartList(new ArrayList<>());
         }
 
         return listParts;
@@ -214,17 +299,6 @@ public class MinioS3ClientImpl implements MinioS3Client {
         }
     }
 
-    @Override
-    public void getDownloadObject(String fileName, String bucketName, HttpServletResponse response) {
-        try {
-            InputStream inputStream = this.getClient().getObject(GetObjectArgs.builder().bucket(bucketName).object("2025/01/f7f6ee96ed887cdd1962e05567ee1676").build()).get();
-            IoUtil.copy(inputStream,response.getOutputStream());
-        } catch (Exception e) {
-            log.error(LOG_TEMPLATE, MinioPlusErrorCode.CREATE_DOWNLOAD_URL_FAILED.getMessage(), e.getMessage(), e);
-            throw new MinioPlusException(MinioPlusErrorCode.CREATE_DOWNLOAD_URL_FAILED);
-        }
-    }
-
     @Override
     public String getPreviewUrl(String contentType, String bucketName, String objectName) {
         Map<String, String> reqParams = new HashMap<>();
@@ -279,6 +353,72 @@ public class MinioS3ClientImpl implements MinioS3Client {
         return true;
     }
 
+    @Override
+    public Boolean putObjectStream(String bucketName, String objectName, InputStream stream, long size, String contentType) {
+        return this.putObjectStream(bucketName, objectName, stream, size, contentType, null);
+    }
+
+    @Override
+    public Boolean putObjectStream(String bucketName, String objectName, InputStream stream, long size, String contentType, String contentEncoding) {
+        String type = CharSequenceUtil.isNotBlank(contentType) ? contentType : OCTET_STREAM;
+        try {
+            if (CharSequenceUtil.isNotBlank(contentEncoding)) {
+                // 内容编码需要作为对象元数据保存，由MinIO客户端上传
+                this.getClient().putObject(PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .stream(stream, size, size >= 0 ? -1 : CommonConstant.MIN_MULTIPART_SIZE)
+                        .contentType(type)
+                        .headers(Collections.singletonMap("Content-Encoding", contentEncoding))
+                        .build()).get();
+            } else if (size >= 0) {
+                String uploadUrl = this.getClient().getPresignedObjectUrl(
+                        GetPresignedObjectUrlArgs.builder()
+                                .method(Method.PUT)
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .expiry(properties.getUploadExpiry(), TimeUnit.MINUTES)
+                                .build());
+                this.streamPut(uploadUrl, stream, size, type);
+            } else {
+                // 长度未知时由MinIO客户端按最小分片大小缓冲分段上传
+                this.getClient().putObject(PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .stream(stream, -1, CommonConstant.MIN_MULTIPART_SIZE)
+                        .contentType(type)
+                        .build()).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.WRITE_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED);
+        } catch (Exception e) {
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.WRITE_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED);
+        }
+        return true;
+    }
+
+    @Override
+    public void copyObject(String bucketName, String sourceObjectName, String objectName) {
+        try {
+            // 源对象超过5GB时MinIO客户端会自动改为分片复制
+            this.getClient().copyObject(CopyObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .source(CopySource.builder().bucket(bucketName).object(sourceObjectName).build())
+                    .build()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.COPY_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.COPY_FAILED);
+        } catch (Exception e) {
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.COPY_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.COPY_FAILED);
+        }
+    }
+
     @Override
     public byte[] getObject(String bucketName, String objectName) {
         // 从远程MinIO服务读取文件流
@@ -291,6 +431,58 @@ public class MinioS3ClientImpl implements MinioS3Client {
         }
     }
 
+    @Override
+    public InputStream getObjectStream(String bucketName, String objectName) {
+        try {
+            return this.getClient().getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).build()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.READ_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        } catch (Exception e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+    }
+
+    @Override
+    public InputStream getObjectStream(String bucketName, String objectName, long offset, long length) {
+        try {
+            return this.getClient().getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).offset(offset).length(length).build()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.READ_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        } catch (Exception e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+    }
+
+    @Override
+    public CompletableFuture<? extends InputStream> getObjectStreamAsync(String bucketName, String objectName, long offset, long length) {
+        try {
+            return this.getClient().getObject(GetObjectArgs.builder().bucket(bucketName).object(objectName).offset(offset).length(length).build());
+        } catch (Exception e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+    }
+
+    @Override
+    public long getObjectSize(String bucketName, String objectName) {
+        try {
+            return this.getClient().statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build()).get().size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.READ_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        } catch (Exception e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+    }
+
     @Override
     public void removeObject(String bucketName, String objectName) {
         try {
@@ -307,8 +499,96 @@ public class MinioS3ClientImpl implements MinioS3Client {
         try {
             return this.getClient().uploadPartAsync(bucketName, region, objectName, data, length, uploadId, partNumber, extraHeaders, extraQueryParams).get();
         } catch (Exception e) {
-            log.error(MinioPlusErrorCode.DELETE_FAILED.getMessage(), e);
-            throw new MinioPlusException(MinioPlusErrorCode.DELETE_FAILED);
+            log.error(MinioPlusErrorCode.UPLOAD_PART_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.UPLOAD_PART_FAILED);
+        }
+    }
+
+    @Override
+    public String uploadPartStream(String bucketName, String objectName, String uploadId, int partNumber, InputStream stream, long length) {
+        // MinIO客户端的uploadPart会先把整个分片读入内存计算签名，这里改为向预签名地址直接转发请求体
+        String uploadUrl = this.getUploadObjectUrl(bucketName, objectName, uploadId, String.valueOf(partNumber));
+        try {
+            return this.streamPut(uploadUrl, stream, length, OCTET_STREAM);
+        } catch (Exception e) {
+            log.error("{},uploadId:{},partNumber:{},失败原因:{}", MinioPlusErrorCode.UPLOAD_PART_FAILED.getMessage(), uploadId, partNumber, e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.UPLOAD_PART_FAILED);
+        }
+    }
+
+    @Override
+    public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                                 String sourceBucketName, String sourceObjectName, long offset, long length) {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("x-amz-copy-source", S3Escaper.encodePath(sourceBucketName + "/" + sourceObjectName));
+        headers.put("x-amz-copy-source-range", "bytes=" + offset + "-" + (offset + length - 1));
+        try {
+            UploadPartCopyResponse response = this.getClient().uploadPartCopyAsync(bucketName, null, objectName, uploadId, partNumber, headers, null).get();
+            return response.result().etag().replace("\"", "");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            log.error(LOG_TEMPLATE, MinioPlusErrorCode.COPY_FAILED.getMessage(), e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.COPY_FAILED);
+        } catch (Exception e) {
+            log.error("{},uploadId:{},partNumber:{},失败原因:{}", MinioPlusErrorCode.COPY_FAILED.getMessage(), uploadId, partNumber, e.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.COPY_FAILED);
+        }
+    }
+
+    /**
+     * 向预签名地址流式PUT数据
+     * 预签名地址使用UNSIGNED-PAYLOAD，无需预先计算请求体摘要，内存占用仅为一个固定大小的缓冲区
+     *
+     * @param url 预签名地址
+     * @param stream 数据流
+     * @param length 数据长度
+     * @param contentType 数据类型
+     * @return ETag
+     * @throws IOException 读写失败
+     */
+    private String streamPut(String url, InputStream stream, long length, String contentType) throws IOException {
+        this.getClient();
+        int bufferSize = properties.getProxy().getBufferSize();
+        RequestBody body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return MediaType.parse(contentType);
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                // 数据流只能读取一次，不允许重试
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                byte[] buffer = new byte[bufferSize];
+                long remaining = length;
+                while (remaining > 0) {
+                    int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new EOFException("unexpected end of stream, " + remaining + " bytes missing");
+                    }
+                    sink.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        };
+
+        Request request = new Request.Builder().url(url).put(body).build();
+        try (Response response = this.httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                ResponseBody responseBody = response.body();
+                throw new IOException("HTTP " + response.code() + ": " + (responseBody == null ? "" : responseBody.string()));
+            }
+            String etag = response.header("ETag");
+            return etag == null ? null : etag.replace("\"", "");
         }
     }
 }
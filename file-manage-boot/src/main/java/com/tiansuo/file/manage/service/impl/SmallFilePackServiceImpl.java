@@ -0,0 +1,318 @@
+package com.tiansuo.file.manage.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.constant.CommonConstant;
+import com.tiansuo.file.manage.constant.MinioPlusErrorCode;
+import com.tiansuo.file.manage.constant.StorageBucketEnums;
+import com.tiansuo.file.manage.exception.MinioPlusException;
+import com.tiansuo.file.manage.mapper.FilePackContainerMapper;
+import com.tiansuo.file.manage.mapper.MetadataMapper;
+import com.tiansuo.file.manage.model.bo.PackEntryBO;
+import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
+import com.tiansuo.file.manage.model.entity.FilePackContainer;
+import com.tiansuo.file.manage.service.KeyLockService;
+import com.tiansuo.file.manage.service.MinioS3Client;
+import com.tiansuo.file.manage.service.SmallFilePackService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 小文件合并存储
+ * 单个写入线程从队列中取出待写入的文件，按桶合并为容器对象后一次写入，写入期间到达的文件进入下一个容器
+ *
+ * @author zhangb
+ * @since  2025/01/27
+ */
+@Slf4j
+@Service
+public class SmallFilePackServiceImpl implements SmallFilePackService {
+
+    private static final String CONTAINER_MIME_TYPE = "application/octet-stream";
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private MinioS3Client minioS3Client;
+
+    @Autowired
+    private FilePackContainerMapper filePackContainerMapper;
+
+    @Autowired
+    private MetadataMapper metadataMapper;
+
+    @Autowired
+    private KeyLockService keyLockService;
+
+    /**
+     * 待写入容器的文件
+     */
+    private final BlockingQueue<PendingEntry> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 容器写入线程
+     */
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getPack().isEnable()) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "small-file-pack-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+        }
+        // 未写入的文件返回失败
+        PendingEntry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.getFuture().completeExceptionally(new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED));
+        }
+    }
+
+    @Override
+    public boolean isPackable(String bucketName, long fileSize) {
+        MinioPlusProperties.Pack pack = properties.getPack();
+        return running && fileSize >= 0 && fileSize < pack.getThreshold()
+                && !StorageBucketEnums.IMAGE.getCode().equals(bucketName) && pack.getBuckets().contains(bucketName);
+    }
+
+    @Override
+    public PackEntryBO pack(String bucketName, byte[] content) {
+        return this.waitEntry(this.submit(bucketName, content));
+    }
+
+    @Override
+    public String getObjectName(Long packId) {
+        return CommonConstant.PACK_PATH + "/" + packId;
+    }
+
+    @Override
+    public void release(Long packId, long length) {
+        filePackContainerMapper.decreaseLiveSize(packId, length);
+    }
+
+    @Override
+    public int compact() {
+        MinioPlusProperties.Pack pack = properties.getPack();
+        List<FilePackContainer> candidates = filePackContainerMapper.selectCompactCandidates(pack.getCompactRatio(), pack.getCompactBatchSize());
+        int count = 0;
+        for (FilePackContainer container : candidates) {
+            try {
+                // 多个节点同时整理时串行执行
+                keyLockService.execute("pack:" + container.getId(), () -> {
+                    this.compactContainer(container);
+                    return null;
+                });
+                count++;
+            } catch (Exception e) {
+                log.error("容器整理失败,容器:{},{}", container.getId(), e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 整理容器
+     * 1.没有元数据引用的容器直接删除
+     * 2.仍被引用的文件重新写入新容器，元数据改为指向新容器，原容器有效数据长度置为0
+     * 原容器在下一次整理时才删除，期间秒传等操作仍可能新增指向原容器的元数据，下一次整理时一并迁移
+     *
+     * @param container 容器
+     */
+    private void compactContainer(FilePackContainer container) {
+        String bucketName = container.getStorageBucket();
+        String objectName = this.getObjectName(container.getId());
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getPackId, container.getId());
+        List<FileMetadataInfo> metadataList = metadataMapper.selectList(queryWrapper);
+        if (metadataList.isEmpty()) {
+            filePackContainerMapper.deleteById(container.getId());
+            minioS3Client.removeObject(bucketName, objectName);
+            log.info("删除无引用的容器:{}", container.getId());
+            return;
+        }
+
+        // 相同内容的多条元数据指向同一位置，按开始位置去重
+        Map<Long, Long> entries = metadataList.stream()
+                .collect(Collectors.toMap(FileMetadataInfo::getPackOffset, FileMetadataInfo::getFileSize, (a, b) -> a, TreeMap::new));
+        byte[] data = minioS3Client.getObject(bucketName, objectName);
+        Map<Long, CompletableFuture<PackEntryBO>> moved = new LinkedHashMap<>();
+        entries.forEach((offset, length) ->
+                moved.put(offset, this.submit(bucketName, Arrays.copyOfRange(data, offset.intValue(), (int) (offset + length)))));
+        for (Map.Entry<Long, CompletableFuture<PackEntryBO>> entry : moved.entrySet()) {
+            PackEntryBO packEntry = this.waitEntry(entry.getValue());
+            LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.eq(FileMetadataInfo::getPackId, container.getId())
+                    .eq(FileMetadataInfo::getPackOffset, entry.getKey())
+                    .set(FileMetadataInfo::getPackId, packEntry.getPackId())
+                    .set(FileMetadataInfo::getPackOffset, packEntry.getOffset());
+            metadataMapper.update(null, updateWrapper);
+        }
+
+        LambdaUpdateWrapper<FilePackContainer> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(FilePackContainer::getId, container.getId())
+                .set(FilePackContainer::getLiveSize, 0L);
+        filePackContainerMapper.update(null, updateWrapper);
+        log.info("容器整理完成,容器:{},迁移文件{}个", container.getId(), entries.size());
+    }
+
+    /**
+     * 提交待写入的文件
+     *
+     * @param bucketName 桶名称
+     * @param content    文件内容
+     * @return 写入结果
+     */
+    private CompletableFuture<PackEntryBO> submit(String bucketName, byte[] content) {
+        if (!running) {
+            throw new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED);
+        }
+        PendingEntry entry = new PendingEntry(bucketName, content, new CompletableFuture<>());
+        queue.add(entry);
+        return entry.getFuture();
+    }
+
+    /**
+     * 等待文件写入容器
+     *
+     * @param future 写入结果
+     * @return 文件在容器中的位置
+     */
+    private PackEntryBO waitEntry(CompletableFuture<PackEntryBO> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 重新设置中断状态
+            throw new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MinioPlusException) {
+                throw (MinioPlusException) e.getCause();
+            }
+            log.error(MinioPlusErrorCode.WRITE_FAILED.getMessage(), e.getCause());
+            throw new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED);
+        }
+    }
+
+    /**
+     * 容器写入循环
+     * 取到第一个文件后继续等待，直到攒满一个容器或超过等待时间，再按桶分别写入
+     */
+    private void writeLoop() {
+        MinioPlusProperties.Pack pack = properties.getPack();
+        while (running) {
+            List<PendingEntry> batch = new ArrayList<>();
+            try {
+                PendingEntry first = queue.take();
+                batch.add(first);
+                long batchSize = first.getContent().length;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pack.getLingerMillis());
+                while (batchSize < pack.getContainerSize()) {
+                    long wait = deadline - System.nanoTime();
+                    PendingEntry next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    batchSize += next.getContent().length;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // 重新设置中断状态
+                batch.forEach(entry -> entry.getFuture().completeExceptionally(new MinioPlusException(MinioPlusErrorCode.WRITE_FAILED)));
+                return;
+            }
+            batch.stream()
+                    .collect(Collectors.groupingBy(PendingEntry::getBucketName, LinkedHashMap::new, Collectors.toList()))
+                    .forEach(this::writeContainer);
+        }
+    }
+
+    /**
+     * 写入容器对象
+     * 先插入容器记录取得主键作为对象名称，对象写入失败时删除容器记录
+     *
+     * @param bucketName 桶名称
+     * @param entries    待写入的文件
+     */
+    private void writeContainer(String bucketName, List<PendingEntry> entries) {
+        int totalSize = 0;
+        for (PendingEntry entry : entries) {
+            totalSize += entry.getContent().length;
+        }
+        byte[] data = new byte[totalSize];
+        int offset = 0;
+        for (PendingEntry entry : entries) {
+            System.arraycopy(entry.getContent(), 0, data, offset, entry.getContent().length);
+            offset += entry.getContent().length;
+        }
+
+        FilePackContainer container = new FilePackContainer()
+                .setStorageBucket(bucketName)
+                .setTotalSize((long) totalSize)
+                .setLiveSize((long) totalSize);
+        try {
+            filePackContainerMapper.insert(container);
+            minioS3Client.putObject(bucketName, this.getObjectName(container.getId()), new ByteArrayInputStream(data), totalSize, CONTAINER_MIME_TYPE);
+        } catch (Exception e) {
+            log.error("容器写入失败,桶:{},{}", bucketName, e.getMessage(), e);
+            entries.forEach(entry -> entry.getFuture().completeExceptionally(e));
+            if (container.getId() != null) {
+                try {
+                    filePackContainerMapper.deleteById(container.getId());
+                } catch (Exception ex) {
+                    log.error("容器记录删除失败,容器:{},{}", container.getId(), ex.getMessage(), ex);
+                }
+            }
+            return;
+        }
+
+        offset = 0;
+        for (PendingEntry entry : entries) {
+            entry.getFuture().complete(new PackEntryBO(container.getId(), (long) offset));
+            offset += entry.getContent().length;
+        }
+        log.debug("容器写入成功,容器:{},文件{}个,长度:{}", container.getId(), entries.size(), totalSize);
+    }
+
+    /**
+     * 待写入容器的文件
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class PendingEntry {
+
+        private final String bucketName;
+
+        private final byte[] content;
+
+        private final CompletableFuture<PackEntryBO> future;
+
+    }
+
+}
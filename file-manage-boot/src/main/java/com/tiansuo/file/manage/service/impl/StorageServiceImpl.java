@@ -2,41 +2,86 @@ package com.tiansuo.file.manage.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.crypto.SecureUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.RateLimiter;
 import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.constant.CommonConstant;
 import com.tiansuo.file.manage.constant.MinioPlusErrorCode;
 import com.tiansuo.file.manage.constant.StorageBucketEnums;
 import com.tiansuo.file.manage.exception.MinioPlusException;
+import com.tiansuo.file.manage.mapper.FilePartIndexMapper;
 import com.tiansuo.file.manage.mapper.MetadataMapper;
+import com.tiansuo.file.manage.model.bo.AppendSessionBO;
+import com.tiansuo.file.manage.model.bo.PackEntryBO;
+import com.tiansuo.file.manage.model.bo.StagedUploadBO;
+import com.tiansuo.file.manage.model.bo.PartAckBO;
+import com.tiansuo.file.manage.model.bo.UploadTuningBO;
 import com.tiansuo.file.manage.model.bo.CreateUploadUrlReqBO;
 import com.tiansuo.file.manage.model.bo.CreateUploadUrlRespBO;
+import com.tiansuo.file.manage.model.dto.FileCheckDTO;
+import com.tiansuo.file.manage.model.dto.FileCompleteDTO;
+import com.tiansuo.file.manage.model.dto.FileUpdateDTO;
 
 import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
+import com.tiansuo.file.manage.model.entity.FilePartIndex;
 import com.tiansuo.file.manage.model.vo.*;
+import com.tiansuo.file.manage.service.KeyLockService;
 import com.tiansuo.file.manage.service.MinioS3Client;
+import com.tiansuo.file.manage.service.SmallFilePackService;
 import com.tiansuo.file.manage.service.StorageService;
+import com.tiansuo.file.manage.service.UploadSessionService;
+import com.tiansuo.file.manage.service.UploadTuningService;
 import com.tiansuo.file.manage.util.CommonUtil;
+import com.tiansuo.file.manage.util.SampleDigestInputStream;
 
 import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
+import org.apache.catalina.connector.ClientAbortException;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * 存储组件Service层公共方法实现类
@@ -49,6 +94,21 @@ import java.util.*;
 @Service
 public class StorageServiceImpl implements StorageService {
 
+    /**
+     * 单个复制分块的最大长度，S3协议上限5GB
+     */
+    private static final long MAX_COPY_PART_SIZE = 5L * 1024 * 1024 * 1024;
+
+    /**
+     * 文件下载流的复制缓冲区长度
+     */
+    private static final int DOWNLOAD_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * 单次下载请求允许的最大范围数量，超出时返回完整内容
+     */
+    private static final int MAX_RANGE_COUNT = 16;
+
     /**
      * 文件元数据服务接口定义
      */
@@ -67,18 +127,90 @@ public class StorageServiceImpl implements StorageService {
     @Autowired
     private MinioS3Client minioS3Client;
 
+    @Autowired
+    private FilePartIndexMapper filePartIndexMapper;
+
+    @Autowired
+    private KeyLockService keyLockService;
+
+    @Autowired
+    private UploadTuningService uploadTuningService;
+
+    @Autowired
+    private SmallFilePackService smallFilePackService;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    /**
+     * 先加锁再开启事务的操作使用编程式事务
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 存储任务线程池，限制并发访问MinIO的线程数
+     */
+    @Autowired
+    @Qualifier("storageTaskExecutor")
+    private ThreadPoolTaskExecutor storageTaskExecutor;
+
+    /**
+     * 大文件下载的范围读取线程池
+     */
+    @Autowired
+    @Qualifier("rangeFetchExecutor")
+    private ThreadPoolTaskExecutor rangeFetchExecutor;
+
+    /**
+     * 追加上传会话，会话只保存在内存中，服务重启后需重新上传
+     */
+    private final Map<String, AppendSessionBO> appendSessions = new ConcurrentHashMap<>();
+
+    /**
+     * 增量更新会话，key为被更新文件的KEY，value为新文件内容信息，只保存在内存中
+     */
+    private final Map<String, FileMetadataInfo> updateSessions = new ConcurrentHashMap<>();
+
+    /**
+     * 分块确认记录，key为上传任务编号，只保存在内存中
+     */
+    private final Map<String, PartAckBO> partAcks = new ConcurrentHashMap<>();
+
+    /**
+     * 自动合并检查的主键游标
+     */
+    private final AtomicLong autoCompleteCursor = new AtomicLong();
+
+    /**
+     * 后台校验的主键游标
+     */
+    private final AtomicLong verifyCursor = new AtomicLong();
+
+    /**
+     * 后台校验的读取限速，只由校验任务线程使用
+     */
+    private RateLimiter verifyRateLimiter;
+
+    @PostConstruct
+    public void initVerifyRateLimiter() {
+        verifyRateLimiter = RateLimiter.create(properties.getVerify().getBytesPerSecond());
+    }
+
     @Override
     public FilePreShardingVo sharding(long fileSize) {
 
+        // 计算分块大小
+        int partSize = this.computePartSize(fileSize);
         // 计算分块数量
-        Integer chunkNum = this.computeChunkNum(fileSize);
+        Integer chunkNum = this.computeChunkNum(fileSize, partSize);
 
         List<FilePreShardingVo.Part> partList = new ArrayList<>();
 
         long start = 0;
         for (int partNumber = 1; partNumber <= chunkNum; partNumber++) {
 
-            long end = Math.min(start + properties.getPart().getSize(), fileSize);
+            long end = Math.min(start + partSize, fileSize);
 
             FilePreShardingVo.Part part = new FilePreShardingVo.Part();
             // 开始位置
@@ -87,18 +219,60 @@ public class StorageServiceImpl implements StorageService {
             part.setEndPosition(end);
 
             // 更改下一次的开始位置
-            start = start + properties.getPart().getSize();
+            start = start + partSize;
             partList.add(part);
         }
 
         FilePreShardingVo filePreShardingVo = new FilePreShardingVo();
         filePreShardingVo.setFileSize(fileSize);
         filePreShardingVo.setPartCount(chunkNum);
-        filePreShardingVo.setPartSize(properties.getPart().getSize());
+        filePreShardingVo.setPartSize(partSize);
         filePreShardingVo.setPartList(partList);
+
+        // 抽样范围
+        for (long[] range : CommonUtil.getSampleRanges(fileSize, properties.getPart().getSampleSize())) {
+            FilePreShardingVo.Part sample = new FilePreShardingVo.Part();
+            sample.setStartPosition(range[0]);
+            sample.setEndPosition(range[1]);
+            filePreShardingVo.getSampleList().add(sample);
+        }
         return filePreShardingVo;
     }
 
+    /**
+     * 抽样预检查
+     * 根据文件长度和抽样md5判断是否可能存在相同文件，长度或抽样md5不同的文件一定不同，无需计算完整md5
+     *
+     * @param fileSize  文件长度
+     * @param sampleMd5 抽样md5
+     * @return {@link FilePrecheckResultVo}
+     */
+    @Override
+    public FilePrecheckResultVo precheck(Long fileSize, String sampleMd5) {
+        if (fileSize == null || StringUtils.isEmpty(sampleMd5)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_SAMPLE_MD5_CHECK_FAILED);
+        }
+        FilePrecheckResultVo resultVo = new FilePrecheckResultVo();
+        resultVo.setIsCandidate(this.isSampleCandidate(fileSize, sampleMd5));
+        return resultVo;
+    }
+
+    /**
+     * 是否存在长度和抽样md5都相同的已完成文件
+     *
+     * @param fileSize  文件长度
+     * @param sampleMd5 抽样md5
+     * @return true:疑似重复 false:新文件
+     */
+    private boolean isSampleCandidate(long fileSize, String sampleMd5) {
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getFileSize, fileSize);
+        queryWrapper.eq(FileMetadataInfo::getSampleMd5, sampleMd5);
+        queryWrapper.eq(FileMetadataInfo::getIsFinished, 1);
+        queryWrapper.last("limit 1");
+        return CollUtil.isNotEmpty(metadataMapper.selectList(queryWrapper));
+    }
+
     /**
      * 上传任务初始化
      * <p>
@@ -107,30 +281,146 @@ public class StorageServiceImpl implements StorageService {
      * 3.其他用户上传过，未完成，断点续传，新增文件元数据
      * 4.从未上传过，下发上传链接，新增文件元数据
      *
+     * 5.抽样预检查确定为新文件时可不提交fileMd5，以临时标识上传，完成时提交fileMd5
+     * 6.新上传任务提交了分块md5时，已有相同内容的分块在服务端复制，不再下发上传链接
+     * 7.相同md5的初始化加锁串行执行，后到的调用方续传先到的调用方创建的上传任务
+     * 8.按客户端网络近期的上传速度返回建议并发数，未提交分块md5的新上传任务按预估吞吐量计算分块大小
+     * 9.从未上传过的文件先走快速路径，不加锁，由唯一索引保证同一md5只创建一个上传任务，插入失败时再加锁按上述规则处理
+     * 10.加锁后再开启事务，事务内读取的是前一个调用方已提交的结果
+     *
      * @param fileMd5      文件md5,用来减少否相同的文件重复上传
+     * @param sampleMd5    抽样md5
+     * @param partMd5List  分块md5列表,按预分片结果计算,可为空
      * @param fullFileName 文件名（含扩展名）
      * @param fileSize     文件长度
      * @param isPrivate    是否私有 false:否 true:是
+     * @param clientNetwork 客户端网络，可为空
      * @return {@link FileCheckResultVo}
      */
     @Override
-    public FileCheckResultVo init(String fileMd5, String fullFileName, long fileSize, Integer isPrivate) {
-        //分片上传,前端传参fileMd5不能为空,则可以支持断点续传
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FileCheckResultVo init(String fileMd5, String sampleMd5, List<String> partMd5List, String fullFileName, long fileSize, Integer isPrivate, String clientNetwork) {
+        UploadTuningBO tuning = uploadTuningService.recommend(clientNetwork);
         if (StringUtils.isEmpty(fileMd5)) {
-            throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+            return transactionTemplate.execute(status -> this.doInit(null, sampleMd5, partMd5List, fullFileName, fileSize, isPrivate, tuning));
+        }
+        FileCheckResultVo resultVo = this.fastInit(fileMd5, sampleMd5, partMd5List, fullFileName, fileSize, isPrivate, tuning);
+        if (resultVo != null) {
+            return resultVo;
+        }
+        // 命名锁使用事务的连接，在事务内第一次读取之前加锁
+        // 加锁后新建上传任务时快速路径已插入所有者，在新的事务中重新读取后断点续传
+        do {
+            resultVo = transactionTemplate.execute(status -> keyLockService.execute("init:" + fileMd5,
+                    () -> this.doInit(fileMd5, sampleMd5, partMd5List, fullFileName, fileSize, isPrivate, tuning)));
+        } while (resultVo == null);
+        return resultVo;
+    }
+
+    /**
+     * 上传任务初始化快速路径
+     * 1.按md5查询元数据，已有上传记录时返回空由加锁的初始化处理
+     * 2.没有上传记录时创建分片上传任务并插入元数据，元数据以md5作为上传任务所有者，唯一索引冲突时忽略插入
+     * 3.插入被忽略时取消已创建的上传任务，返回空由加锁的初始化处理
+     *
+     * @param fileMd5      文件md5
+     * @param sampleMd5    抽样md5
+     * @param partMd5List  分块md5列表,可为空
+     * @param fullFileName 文件名（含扩展名）
+     * @param fileSize     文件长度
+     * @param isPrivate    是否私有
+     * @param tuning       上传参数建议
+     * @return {@link FileCheckResultVo}，需要加锁处理时为空
+     */
+    private FileCheckResultVo fastInit(String fileMd5, String sampleMd5, List<String> partMd5List, String fullFileName, long fileSize, Integer isPrivate, UploadTuningBO tuning) {
+        if (CollUtil.isNotEmpty(this.getMetadataByFileMd5(fileMd5, null, 1))) {
+            // 已有上传记录,秒传或断点续传
+            return null;
+        }
+        CreateUploadUrlReqBO bo = new CreateUploadUrlReqBO();
+        bo.setFileMd5(fileMd5);
+        bo.setFileSize(fileSize);
+        bo.setFullFileName(fullFileName);
+        if (CollUtil.isEmpty(partMd5List) && tuning.getThroughput() > 0) {
+            bo.setPartSize(this.computePartSize(fileSize, tuning.getThroughput()));
+        }
+        CreateUploadUrlRespBO respBO = this.createUploadUrl(bo);
+        FileMetadataInfo metadataInfo = this.buildMetadataInfo(respBO, fileMd5, sampleMd5, fullFileName, fileSize, isPrivate);
+        metadataInfo.setOwnerMd5(fileMd5);
+        if (metadataMapper.insertIgnore(metadataInfo) == 0) {
+            // 其他调用方已创建上传任务
+            this.abortCreatedUpload(respBO, fileMd5);
+            return null;
+        }
+
+        if (CollUtil.isNotEmpty(partMd5List)) {
+            // 已有相同内容的分块在服务端复制,不需要前端上传
+            Set<Integer> copiedParts = this.copyIndexedParts(respBO, fileMd5, partMd5List, fileSize);
+            respBO.getParts().removeIf(part -> copiedParts.contains(part.getPartNumber()));
         }
+        uploadSessionService.register(metadataInfo);
+        uploadTuningService.register(respBO.getUploadTaskId(), tuning, fileSize, respBO.getPartSize());
+        FileCheckResultVo resultVo = this.buildResult(metadataInfo, respBO.getParts(), respBO.getPartCount(), Boolean.FALSE, respBO.getNextPartNumber());
+        resultVo.setConcurrency(tuning.getConcurrency());
+        return resultVo;
+    }
+
+    /**
+     * 取消未使用的上传任务，不等待取消结果
+     *
+     * @param respBO  已创建的上传任务
+     * @param fileMd5 文件md5
+     */
+    private void abortCreatedUpload(CreateUploadUrlRespBO respBO, String fileMd5) {
+        storageTaskExecutor.execute(() -> {
+            try {
+                minioS3Client.abortMultipartUpload(respBO.getBucketName(), CommonUtil.getObjectName(respBO.getStoragePath(), fileMd5), respBO.getUploadTaskId());
+            } catch (MinioPlusException e) {
+                log.warn("取消上传任务失败,uploadId:{}", respBO.getUploadTaskId());
+            }
+        });
+    }
 
+    /**
+     * 上传任务初始化
+     *
+     * @param fileMd5      文件md5
+     * @param sampleMd5    抽样md5
+     * @param partMd5List  分块md5列表
+     * @param fullFileName 文件名（含扩展名）
+     * @param fileSize     文件长度
+     * @param isPrivate    是否私有
+     * @param tuning       上传参数建议
+     * @return {@link FileCheckResultVo}，新建上传任务时快速路径已插入相同md5的所有者则为空
+     */
+    private FileCheckResultVo doInit(String fileMd5, String sampleMd5, List<String> partMd5List, String fullFileName, long fileSize, Integer isPrivate, UploadTuningBO tuning) {
         CreateUploadUrlReqBO bo = new CreateUploadUrlReqBO();
 
-        //根据fileMd5,isPart为1(分片),查询元数据
-        List<FileMetadataInfo> list = this.getMetadataByFileMd5(fileMd5, null, 1);
+        List<FileMetadataInfo> list;
+        boolean tempMd5 = StringUtils.isEmpty(fileMd5);
+        if (tempMd5) {
+            //未提交fileMd5时,必须提交抽样md5且确定为新文件,疑似重复的文件需要完整md5确认秒传
+            if (StringUtils.isEmpty(sampleMd5)) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+            }
+            if (this.isSampleCandidate(fileSize, sampleMd5)) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_CANDIDATE_MD5_CHECK_FAILED);
+            }
+            //以文件KEY作为临时md5,完成时替换为真实md5
+            fileMd5 = IdUtil.fastSimpleUUID();
+            bo.setFileKey(fileMd5);
+            list = new ArrayList<>(0);
+        } else {
+            //根据fileMd5,isPart为1(分片),查询元数据
+            list = this.getMetadataByFileMd5(fileMd5, null, 1);
+        }
 
         if (CollUtil.isNotEmpty(list)) {
             //  1.有上传记录，且状态是已完成，则秒传，新增一条文件元数据,指向曾经的文件
             FileMetadataInfo metadata = this.fileFastUpload(list, fileMd5, fullFileName, isPrivate);
             if (Objects.nonNull(metadata)) {
                 log.info("文件在minio中已存在,走秒传逻辑");
-                return this.buildResult(metadata, new ArrayList<>(1), 0, Boolean.TRUE);
+                return this.buildResult(metadata, new ArrayList<>(1), 0, Boolean.TRUE, null);
             }
 
             //2, 有上传记录,但是状态都不是已完成,则进行断点续传
@@ -150,89 +440,2126 @@ public class StorageServiceImpl implements StorageService {
                 fileMetadataInfo.setId(uploadingMetadata.getId());
                 fileMetadataInfo.setUploadTaskId(uploadingMetadata.getUploadTaskId());
                 metadataMapper.updateById(fileMetadataInfo);
+                uploadSessionService.invalidate(uploadingMetadata.getFileKey());
             }
-            return this.buildResult(uploadingMetadata, respBO.getParts(), respBO.getPartCount(), Boolean.FALSE);
+            uploadTuningService.register(uploadingMetadata.getUploadTaskId(), tuning, uploadingMetadata.getFileSize(), respBO.getPartSize());
+            FileCheckResultVo resultVo = this.buildResult(uploadingMetadata, respBO.getParts(), respBO.getPartCount(), Boolean.FALSE, respBO.getNextPartNumber());
+            resultVo.setConcurrency(tuning.getConcurrency());
+            return resultVo;
         } else {
             // 4.从未上传过，下发上传链接，新增文件元数据
             bo.setFileMd5(fileMd5);
             bo.setFileSize(fileSize);
             bo.setFullFileName(fullFileName);
+            if (CollUtil.isEmpty(partMd5List) && tuning.getThroughput() > 0) {
+                // 前端未按预分片结果计算分块md5时,按预估吞吐量计算分块大小
+                bo.setPartSize(this.computePartSize(fileSize, tuning.getThroughput()));
+            }
 
             //获取上传的url
             CreateUploadUrlRespBO createUploadUrlRespBO = this.createUploadUrl(bo);
 
-            //保存原数据信息
-            FileMetadataInfo metadataInfo = saveMetadataInfo(createUploadUrlRespBO, fileMd5, fullFileName, fileSize, isPrivate);
-            return this.buildResult(metadataInfo, createUploadUrlRespBO.getParts(), createUploadUrlRespBO.getPartCount(), Boolean.FALSE);
+            //保存原数据信息,与快速路径相同,以md5作为上传任务所有者
+            FileMetadataInfo metadataInfo = this.buildMetadataInfo(createUploadUrlRespBO, fileMd5, sampleMd5, fullFileName, fileSize, isPrivate);
+            if (!tempMd5) {
+                metadataInfo.setOwnerMd5(fileMd5);
+            }
+            if (metadataMapper.insertIgnore(metadataInfo) == 0) {
+                // 加锁后查询与插入之间快速路径已创建上传任务,当前事务读取不到,由调用方重新初始化
+                this.abortCreatedUpload(createUploadUrlRespBO, fileMd5);
+                return null;
+            }
+
+            if (CollUtil.isNotEmpty(partMd5List)) {
+                // 已有相同内容的分块在服务端复制,不需要前端上传
+                Set<Integer> copiedParts = this.copyIndexedParts(createUploadUrlRespBO, fileMd5, partMd5List, fileSize);
+                createUploadUrlRespBO.getParts().removeIf(part -> copiedParts.contains(part.getPartNumber()));
+            }
+            uploadSessionService.register(metadataInfo);
+            uploadTuningService.register(createUploadUrlRespBO.getUploadTaskId(), tuning, fileSize, createUploadUrlRespBO.getPartSize());
+            FileCheckResultVo resultVo = this.buildResult(metadataInfo, createUploadUrlRespBO.getParts(), createUploadUrlRespBO.getPartCount(), Boolean.FALSE, createUploadUrlRespBO.getNextPartNumber());
+            resultVo.setConcurrency(tuning.getConcurrency());
+            return resultVo;
+        }
+    }
+
+
+    /**
+     * 批量上传任务初始化
+     * <p>
+     * 1.一次查询清单中所有md5的元数据，已完成的秒传
+     * 2.上传过未完成的，按单个文件断点续传处理
+     * 3.从未上传过的md5与单个文件初始化使用相同的锁，加锁后并发创建分片上传任务，同一批次中md5相同的文件共用一个上传任务
+     * 4.新增的文件元数据批量插入
+     *
+     * @param fileList      文件清单
+     * @param clientNetwork 客户端网络，可为空
+     * @return 与清单顺序一致的检查结果
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<FileCheckResultVo> batchInit(List<FileCheckDTO> fileList, String clientNetwork) {
+        if (CollUtil.isEmpty(fileList)) {
+            return new ArrayList<>(0);
+        }
+        if (fileList.size() > properties.getBatch().getMaxSize()) {
+            throw new MinioPlusException(MinioPlusErrorCode.BATCH_SIZE_CHECK_FAILED);
+        }
+        Set<String> md5Set = new HashSet<>();
+        for (FileCheckDTO file : fileList) {
+            if (StringUtils.isEmpty(file.getFileMd5())) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+            }
+            md5Set.add(file.getFileMd5());
+        }
+
+        // 1.一次查询清单中所有md5的分片上传元数据
+        Map<String, List<FileMetadataInfo>> metadataMap = new HashMap<>();
+        for (FileMetadataInfo metadataInfo : this.getMetadataByFileMd5List(md5Set)) {
+            if (metadataInfo.getIsPart() == 1) {
+                metadataMap.computeIfAbsent(metadataInfo.getFileMd5(), k -> new ArrayList<>()).add(metadataInfo);
+            }
+        }
+
+        UploadTuningBO tuning = uploadTuningService.recommend(clientNetwork);
+        FileCheckResultVo[] results = new FileCheckResultVo[fileList.size()];
+        // 秒传的元数据,key为清单序号
+        Map<Integer, FileMetadataInfo> fastUploadMap = new HashMap<>();
+        // 断点续传的清单序号
+        List<Integer> resumeIndexes = new ArrayList<>();
+        // 新建上传任务的清单序号,key为md5
+        Map<String, List<Integer>> createIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < fileList.size(); i++) {
+            FileCheckDTO file = fileList.get(i);
+            List<FileMetadataInfo> list = metadataMap.getOrDefault(file.getFileMd5(), Collections.emptyList());
+            FileMetadataInfo finished = list.stream().filter(a -> a.getIsFinished() == 1).findFirst().orElse(null);
+            if (finished != null) {
+                // 秒传
+                fastUploadMap.put(i, this.buildFastUploadMetadata(finished, file.getFileMd5(), file.getFullFileName(), file.getIsPrivate()));
+            } else if (CollUtil.isNotEmpty(list)) {
+                // 断点续传
+                resumeIndexes.add(i);
+            } else {
+                // 新建上传任务,md5相同的文件只创建一次
+                createIndexes.computeIfAbsent(file.getFileMd5(), md5 -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // 2.新建上传任务,与单个文件初始化使用相同的锁
+        Map<Integer, CreateUploadUrlRespBO> createdMap = new HashMap<>();
+        Map<Integer, FileMetadataInfo> createdMetadataMap = new HashMap<>();
+        if (!createIndexes.isEmpty()) {
+            List<String> lockKeys = createIndexes.keySet().stream().map(md5 -> "init:" + md5).collect(Collectors.toList());
+            // 命名锁使用事务的连接，元数据插入失败时整体回滚
+            transactionTemplate.execute(status -> keyLockService.execute(lockKeys, () -> {
+                this.createBatchUploads(fileList, createIndexes, resumeIndexes, tuning, createdMap, createdMetadataMap);
+                return null;
+            }));
+        }
+
+        // 3.批量插入秒传的元数据
+        for (List<FileMetadataInfo> batch : CollUtil.split(new ArrayList<>(fastUploadMap.values()), 1000)) {
+            metadataMapper.insertBatch(batch);
+        }
+
+        // 4.断点续传按单个文件初始化处理
+        Map<Integer, CompletableFuture<FileCheckResultVo>> resumeTasks = new HashMap<>();
+        for (Integer i : resumeIndexes) {
+            FileCheckDTO file = fileList.get(i);
+            resumeTasks.put(i, CompletableFuture.supplyAsync(() -> this.init(file.getFileMd5(), file.getSampleMd5(), file.getPartMd5List(),
+                    file.getFullFileName(), file.getFileSize(), file.getIsPrivate(), clientNetwork), storageTaskExecutor));
+        }
+
+        for (Map.Entry<Integer, FileMetadataInfo> entry : fastUploadMap.entrySet()) {
+            results[entry.getKey()] = this.buildResult(entry.getValue(), new ArrayList<>(1), 0, Boolean.TRUE, null);
+        }
+        for (Map.Entry<Integer, FileMetadataInfo> entry : createdMetadataMap.entrySet()) {
+            CreateUploadUrlRespBO respBO = createdMap.get(entry.getKey());
+            results[entry.getKey()] = this.buildResult(entry.getValue(), respBO.getParts(), respBO.getPartCount(), Boolean.FALSE, respBO.getNextPartNumber());
+            results[entry.getKey()].setConcurrency(tuning.getConcurrency());
+        }
+        for (Map.Entry<Integer, CompletableFuture<FileCheckResultVo>> entry : resumeTasks.entrySet()) {
+            results[entry.getKey()] = this.joinTask(entry.getValue(), MinioPlusErrorCode.CREATE_MULTIPART_UPLOAD_FAILED);
+        }
+        log.info("批量初始化{}个文件,秒传{}个,断点续传{}个,新建上传任务{}个", fileList.size(), fastUploadMap.size(), resumeTasks.size(),
+                createdMap.values().stream().map(CreateUploadUrlRespBO::getUploadTaskId).distinct().count());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量初始化中新建上传任务，调用方已对清单中的md5加锁
+     * 加锁期间其他调用方已创建上传任务的md5改为断点续传，其余md5并发创建上传任务
+     * 每个md5的第一条元数据作为上传任务所有者逐条插入，唯一索引冲突时忽略插入，取消该md5的上传任务并改为断点续传
+     * 其余元数据批量插入，任一上传任务创建或元数据插入失败时取消已创建的全部上传任务
+     *
+     * @param fileList           文件清单
+     * @param createIndexes      新建上传任务的清单序号,key为md5
+     * @param resumeIndexes      断点续传的清单序号
+     * @param tuning             上传参数建议
+     * @param createdMap         已创建的上传任务,key为清单序号
+     * @param createdMetadataMap 新增的元数据,key为清单序号
+     */
+    private void createBatchUploads(List<FileCheckDTO> fileList, Map<String, List<Integer>> createIndexes, List<Integer> resumeIndexes, UploadTuningBO tuning,
+                                    Map<Integer, CreateUploadUrlRespBO> createdMap, Map<Integer, FileMetadataInfo> createdMetadataMap) {
+        // 加锁后再次查询
+        for (FileMetadataInfo metadataInfo : this.getMetadataByFileMd5List(createIndexes.keySet())) {
+            if (metadataInfo.getIsPart() == 1) {
+                List<Integer> indexes = createIndexes.remove(metadataInfo.getFileMd5());
+                if (indexes != null) {
+                    resumeIndexes.addAll(indexes);
+                }
+            }
+        }
+
+        // 新建上传任务,key为md5
+        Map<String, CompletableFuture<CreateUploadUrlRespBO>> createTasks = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : createIndexes.entrySet()) {
+            FileCheckDTO file = fileList.get(entry.getValue().get(0));
+            String md5 = entry.getKey();
+            createTasks.put(md5, CompletableFuture.supplyAsync(() -> {
+                CreateUploadUrlReqBO bo = new CreateUploadUrlReqBO();
+                bo.setFileMd5(md5);
+                bo.setFileSize(file.getFileSize());
+                bo.setFullFileName(file.getFullFileName());
+                if (CollUtil.isEmpty(file.getPartMd5List()) && tuning.getThroughput() > 0) {
+                    bo.setPartSize(this.computePartSize(file.getFileSize(), tuning.getThroughput()));
+                }
+                CreateUploadUrlRespBO respBO = this.createUploadUrl(bo);
+                if (CollUtil.isNotEmpty(file.getPartMd5List())) {
+                    Set<Integer> copiedParts = this.copyIndexedParts(respBO, md5, file.getPartMd5List(), file.getFileSize());
+                    respBO.getParts().removeIf(part -> copiedParts.contains(part.getPartNumber()));
+                }
+                return respBO;
+            }, storageTaskExecutor));
+        }
+
+        // 等待新建上传任务,构建元数据,key为md5
+        Map<String, CreateUploadUrlRespBO> respMap = new HashMap<>();
+        Map<String, List<FileMetadataInfo>> metadataMap = new LinkedHashMap<>();
+        List<FileMetadataInfo> insertList = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<Integer>> entry : createIndexes.entrySet()) {
+                CreateUploadUrlRespBO respBO = this.joinTask(createTasks.get(entry.getKey()), MinioPlusErrorCode.CREATE_MULTIPART_UPLOAD_FAILED);
+                List<FileMetadataInfo> list = new ArrayList<>(entry.getValue().size());
+                for (Integer i : entry.getValue()) {
+                    FileCheckDTO file = fileList.get(i);
+                    FileMetadataInfo metadataInfo = this.buildMetadataInfo(respBO, file.getFileMd5(), file.getSampleMd5(), file.getFullFileName(), file.getFileSize(), file.getIsPrivate());
+                    if (list.isEmpty()) {
+                        // 与单个文件初始化相同,第一条元数据作为上传任务所有者
+                        metadataInfo.setOwnerMd5(entry.getKey());
+                    } else {
+                        // 共用上传任务的文件使用各自的文件KEY
+                        metadataInfo.setFileKey(IdUtil.fastSimpleUUID());
+                    }
+                    list.add(metadataInfo);
+                }
+                respMap.put(entry.getKey(), respBO);
+                metadataMap.put(entry.getKey(), list);
+            }
+
+            // 逐条插入上传任务所有者,再次查询后快速路径可能已插入相同md5的所有者
+            Iterator<Map.Entry<String, List<FileMetadataInfo>>> iterator = metadataMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, List<FileMetadataInfo>> entry = iterator.next();
+                if (metadataMapper.insertIgnore(entry.getValue().get(0)) == 0) {
+                    // 其他调用方已创建上传任务,改为断点续传
+                    this.abortCreatedUpload(respMap.get(entry.getKey()), entry.getKey());
+                    createTasks.remove(entry.getKey());
+                    resumeIndexes.addAll(createIndexes.get(entry.getKey()));
+                    iterator.remove();
+                } else {
+                    insertList.addAll(entry.getValue().subList(1, entry.getValue().size()));
+                }
+            }
+
+            // 批量插入共用上传任务的元数据
+            for (List<FileMetadataInfo> batch : CollUtil.split(insertList, 1000)) {
+                metadataMapper.insertBatch(batch);
+            }
+        } catch (RuntimeException e) {
+            // 元数据随事务回滚,取消已创建的上传任务
+            for (Map.Entry<String, CompletableFuture<CreateUploadUrlRespBO>> entry : createTasks.entrySet()) {
+                entry.getValue().thenAccept(respBO -> this.abortCreatedUpload(respBO, entry.getKey()));
+            }
+            throw e;
+        }
+
+        // 元数据插入成功后登记上传会话和上传参数
+        for (Map.Entry<String, List<FileMetadataInfo>> entry : metadataMap.entrySet()) {
+            CreateUploadUrlRespBO respBO = respMap.get(entry.getKey());
+            List<Integer> indexes = createIndexes.get(entry.getKey());
+            for (int i = 0; i < indexes.size(); i++) {
+                createdMap.put(indexes.get(i), respBO);
+                createdMetadataMap.put(indexes.get(i), entry.getValue().get(i));
+                uploadSessionService.register(entry.getValue().get(i));
+            }
+            uploadTuningService.register(respBO.getUploadTaskId(), tuning, entry.getValue().get(0).getFileSize(), respBO.getPartSize());
+        }
+    }
+
+    /**
+     * 等待异步任务完成，任务中的业务异常原样抛出
+     *
+     * @param task      异步任务
+     * @param errorCode 非业务异常时抛出的错误码
+     * @param <T>       任务结果类型
+     * @return 任务结果
+     */
+    private <T> T joinTask(CompletableFuture<T> task, MinioPlusErrorCode errorCode) {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MinioPlusException) {
+                throw (MinioPlusException) e.getCause();
+            }
+            log.error(errorCode.getMessage(), e);
+            throw new MinioPlusException(errorCode);
+        }
+    }
+
+    /**
+     * 合并已分块的文件
+     *
+     * @param fileKey     文件关键
+     * @param fileMd5     文件md5,初始化时未提交fileMd5的必须提交
+     * @param partMd5List 文件分块md5列表
+     * @return {@link Boolean}
+     */
+    @Override
+    public CompleteResultVo complete(String fileKey, String fileMd5, List<String> partMd5List) {
+        // 相同文件KEY的合并加锁串行执行，后到的调用方直接得到已完成的结果
+        return keyLockService.execute("complete:" + fileKey, () -> this.doComplete(fileKey, fileMd5, partMd5List));
+    }
+
+    /**
+     * 合并已分块的文件
+     *
+     * @param fileKey     文件关键
+     * @param fileMd5     文件md5
+     * @param partMd5List 文件分块md5列表
+     * @return {@link CompleteResultVo}
+     */
+    private CompleteResultVo doComplete(String fileKey, String fileMd5, List<String> partMd5List) {
+
+        CompleteResultVo completeResultVo;
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getFileKey, fileKey);
+        FileMetadataInfo metadata = metadataMapper.selectOne(queryWrapper);
+        if (metadata == null) {
+            log.error(fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+        }
+
+        if (metadata.getIsFinished() == 1) {
+            // 如果文件已上传完成，直接返回true，不进行合并
+            completeResultVo = new CompleteResultVo();
+            completeResultVo.setFileKey(fileKey);
+            completeResultVo.setIsComplete(true);
+            return completeResultVo;
+        }
+
+        boolean provisional = this.isProvisional(metadata);
+        if (provisional && StringUtils.isEmpty(fileMd5)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+        }
+
+        try {
+            completeResultVo = this.completeMultipartUpload(metadata, partMd5List);
+        } catch (MinioPlusException e) {
+            // 合并期间已被自动合并
+            CompleteResultVo autoCompleted = this.getAutoCompletedResult(fileKey);
+            if (autoCompleted != null) {
+                return autoCompleted;
+            }
+            throw e;
+        }
+        completeResultVo.setFileKey(fileKey);
+        if (!Boolean.TRUE.equals(completeResultVo.getIsComplete())) {
+            // 自动合并后上传任务已结束，查询不到分片
+            CompleteResultVo autoCompleted = this.getAutoCompletedResult(fileKey);
+            if (autoCompleted != null) {
+                return autoCompleted;
+            }
+        }
+
+        if (Boolean.TRUE.equals(completeResultVo.getIsComplete())) {
+            // 更新自己上传的文件元数据状态
+            FileMetadataInfo update = new FileMetadataInfo();
+            update.setId(metadata.getId());
+            //已完成
+            update.setIsFinished(1);
+            if (provisional) {
+                // 临时md5替换为真实md5
+                this.promoteObject(metadata, fileMd5, update);
+            }
+            metadataMapper.updateById(update);
+
+            // 记录分块内容索引,供后续上传任务复用分块
+            this.savePartIndex(metadata, update, partMd5List);
+
+            // 数据库中所有已分片,且状态时未完成的相同MD5元数据，一次更新为完成状态
+            LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.set(FileMetadataInfo::getIsFinished, 1);
+            updateWrapper.eq(FileMetadataInfo::getFileMd5, update.getFileMd5() != null ? update.getFileMd5() : metadata.getFileMd5());
+            updateWrapper.eq(FileMetadataInfo::getIsFinished, 0);
+            updateWrapper.eq(FileMetadataInfo::getIsPart, 1);
+            metadataMapper.update(null, updateWrapper);
+            uploadSessionService.invalidate(fileKey);
+        } else {
+            if (!metadata.getUploadTaskId().equals(completeResultVo.getUploadTaskId())) {
+                FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
+                fileMetadataInfo.setId(metadata.getId());
+                fileMetadataInfo.setUploadTaskId(completeResultVo.getUploadTaskId());
+                metadataMapper.updateById(fileMetadataInfo);
+                uploadSessionService.invalidate(fileKey);
+            }
+        }
+
+        if (CollectionUtils.isNotEmpty(completeResultVo.getPartList())) {
+            for (FileCheckResultVo.Part part : completeResultVo.getPartList()) {
+                part.setUrl(remakeUrl(part.getUrl()));
+            }
+        }
+
+        return completeResultVo;
+    }
+
+    /**
+     * 批量合并已分块的文件
+     * <p>
+     * 1.一次查询清单中所有文件KEY的元数据，校验全部通过后再开始合并
+     * 2.共用同一上传任务的文件分为一组在线程池中并发合并，同一上传任务只合并一次
+     * 3.每组在事务中对组内全部文件KEY加合并锁，与单个合并互斥，合并完成的文件及相同md5的未完成元数据在锁内更新为完成状态
+     *
+     * @param fileList 文件清单
+     * @return 与清单顺序一致的合并结果
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<CompleteResultVo> batchComplete(List<FileCompleteDTO> fileList) {
+        if (CollUtil.isEmpty(fileList)) {
+            return new ArrayList<>(0);
+        }
+        if (fileList.size() > properties.getBatch().getMaxSize()) {
+            throw new MinioPlusException(MinioPlusErrorCode.BATCH_SIZE_CHECK_FAILED);
+        }
+
+        // 1.一次查询所有文件元数据
+        Map<String, FileMetadataInfo> metadataMap = new HashMap<>();
+        for (List<String> fileKeyList : CollUtil.split(fileList.stream().map(FileCompleteDTO::getFileKey).distinct().collect(Collectors.toList()), 1000)) {
+            LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.in(FileMetadataInfo::getFileKey, fileKeyList);
+            metadataMapper.selectList(queryWrapper).forEach(metadata -> metadataMap.put(metadata.getFileKey(), metadata));
+        }
+        for (FileCompleteDTO file : fileList) {
+            FileMetadataInfo metadata = metadataMap.get(file.getFileKey());
+            if (metadata == null) {
+                log.error(file.getFileKey() + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), file.getFileKey() + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+            }
+            if (metadata.getIsFinished() != 1 && this.isProvisional(metadata) && StringUtils.isEmpty(file.getFileMd5())) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+            }
+        }
+
+        // 2.并发合并,同一上传任务的文件分为一组,key为上传任务编号
+        Map<String, Map<String, FileCompleteDTO>> taskGroups = new LinkedHashMap<>();
+        for (FileCompleteDTO file : fileList) {
+            FileMetadataInfo metadata = metadataMap.get(file.getFileKey());
+            if (metadata.getIsFinished() != 1) {
+                taskGroups.computeIfAbsent(metadata.getUploadTaskId(), uploadTaskId -> new LinkedHashMap<>()).putIfAbsent(file.getFileKey(), file);
+            }
+        }
+        List<CompletableFuture<Map<String, CompleteResultVo>>> completeTasks = new ArrayList<>(taskGroups.size());
+        for (Map<String, FileCompleteDTO> group : taskGroups.values()) {
+            // 与单个合并使用相同的锁,锁在事务连接上获取,合并期间不再占用第二个连接
+            List<String> lockKeys = group.keySet().stream().map(fileKey -> "complete:" + fileKey).collect(Collectors.toList());
+            completeTasks.add(CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status ->
+                    keyLockService.execute(lockKeys, () -> this.batchCompleteGroup(new ArrayList<>(group.values())))), storageTaskExecutor));
+        }
+        Map<String, CompleteResultVo> resultMap = new HashMap<>();
+        for (CompletableFuture<Map<String, CompleteResultVo>> task : completeTasks) {
+            resultMap.putAll(this.joinTask(task, MinioPlusErrorCode.COMPLETE_MULTIPART_FAILED));
+        }
+
+        List<CompleteResultVo> results = new ArrayList<>(fileList.size());
+        int finishedCount = 0;
+        for (FileCompleteDTO file : fileList) {
+            CompleteResultVo completeResultVo = resultMap.get(file.getFileKey());
+            if (completeResultVo == null) {
+                completeResultVo = new CompleteResultVo();
+                completeResultVo.setFileKey(file.getFileKey());
+                completeResultVo.setIsComplete(true);
+            }
+            if (Boolean.TRUE.equals(completeResultVo.getIsComplete())) {
+                finishedCount++;
+            }
+            results.add(completeResultVo);
+        }
+        log.info("批量合并{}个文件,执行合并任务{}个,完成{}个", fileList.size(), completeTasks.size(), finishedCount);
+        return results;
+    }
+
+    /**
+     * 批量合并中合并同一上传任务的一组文件，调用方已对组内全部文件KEY加锁
+     * 加锁后重新查询元数据，已被其他请求合并的文件直接返回完成，合并后更新组内元数据及相同md5的未完成元数据
+     *
+     * @param group 共用同一上传任务的文件
+     * @return 合并结果，key为文件KEY
+     */
+    private Map<String, CompleteResultVo> batchCompleteGroup(List<FileCompleteDTO> group) {
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.in(FileMetadataInfo::getFileKey, group.stream().map(FileCompleteDTO::getFileKey).collect(Collectors.toList()));
+        Map<String, FileMetadataInfo> metadataMap = new HashMap<>();
+        metadataMapper.selectList(queryWrapper).forEach(metadata -> metadataMap.put(metadata.getFileKey(), metadata));
+
+        Map<String, CompleteResultVo> resultMap = new HashMap<>();
+        // 同一上传任务只合并一次
+        CompleteResultVo taskResult = null;
+        // 已合并的对象md5,用于批量更新为完成状态
+        Set<String> finishedMd5Set = new HashSet<>();
+        for (FileCompleteDTO file : group) {
+            FileMetadataInfo metadata = metadataMap.get(file.getFileKey());
+            if (metadata == null) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), file.getFileKey() + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+            }
+            CompleteResultVo completeResultVo = new CompleteResultVo();
+            completeResultVo.setFileKey(file.getFileKey());
+            if (metadata.getIsFinished() == 1) {
+                completeResultVo.setIsComplete(true);
+                resultMap.put(file.getFileKey(), completeResultVo);
+                continue;
+            }
+            if (taskResult == null) {
+                taskResult = this.completeMultipartUpload(metadata, file.getPartMd5List());
+                // 同一上传任务的分块只重写一次地址
+                if (CollectionUtils.isNotEmpty(taskResult.getPartList())) {
+                    for (FileCheckResultVo.Part part : taskResult.getPartList()) {
+                        part.setUrl(remakeUrl(part.getUrl()));
+                    }
+                }
+            }
+            completeResultVo.setIsComplete(taskResult.getIsComplete());
+            completeResultVo.setUploadTaskId(taskResult.getUploadTaskId());
+            completeResultVo.setPartList(new ArrayList<>(taskResult.getPartList()));
+            completeResultVo.setNextPartNumber(taskResult.getNextPartNumber());
+            this.afterBatchComplete(metadata, file, completeResultVo, finishedMd5Set);
+            resultMap.put(file.getFileKey(), completeResultVo);
+        }
+
+        // 在锁内更新相同md5的未完成元数据,释放锁后其他请求不会重复合并
+        for (List<String> md5List : CollUtil.split(finishedMd5Set, 1000)) {
+            LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.set(FileMetadataInfo::getIsFinished, 1);
+            updateWrapper.in(FileMetadataInfo::getFileMd5, md5List);
+            updateWrapper.eq(FileMetadataInfo::getIsFinished, 0);
+            updateWrapper.eq(FileMetadataInfo::getIsPart, 1);
+            metadataMapper.update(null, updateWrapper);
+        }
+        return resultMap;
+    }
+
+    /**
+     * 批量合并中单个文件合并后的处理
+     * 以真实md5上传的文件只记录md5,由调用方批量更新状态；临时md5上传的文件需替换md5,单独更新
+     *
+     * @param metadata         文件元数据
+     * @param file             合并入参
+     * @param completeResultVo 合并结果
+     * @param finishedMd5Set   已合并的对象md5
+     */
+    private void afterBatchComplete(FileMetadataInfo metadata, FileCompleteDTO file, CompleteResultVo completeResultVo, Set<String> finishedMd5Set) {
+        if (Boolean.TRUE.equals(completeResultVo.getIsComplete())) {
+            FileMetadataInfo update = new FileMetadataInfo();
+            update.setId(metadata.getId());
+            if (this.isProvisional(metadata)) {
+                // 临时md5替换为真实md5
+                update.setIsFinished(1);
+                this.promoteObject(metadata, file.getFileMd5(), update);
+                metadataMapper.updateById(update);
+            }
+            finishedMd5Set.add(update.getFileMd5() != null ? update.getFileMd5() : metadata.getFileMd5());
+            uploadSessionService.invalidate(metadata.getFileKey());
+            // 记录分块内容索引,供后续上传任务复用分块
+            this.savePartIndex(metadata, update, file.getPartMd5List());
+        } else if (!metadata.getUploadTaskId().equals(completeResultVo.getUploadTaskId())) {
+            // 共用该上传任务的元数据一起更新任务编号
+            LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+            updateWrapper.set(FileMetadataInfo::getUploadTaskId, completeResultVo.getUploadTaskId());
+            updateWrapper.eq(FileMetadataInfo::getUploadTaskId, metadata.getUploadTaskId());
+            metadataMapper.update(null, updateWrapper);
+            metadata.setUploadTaskId(completeResultVo.getUploadTaskId());
+            uploadSessionService.invalidate(metadata.getFileKey());
+        }
+    }
+
+
+    /**
+     * 是否以临时md5上传
+     * 初始化时未提交fileMd5的上传任务以文件KEY作为临时md5
+     *
+     * @param metadata 文件元数据信息
+     * @return true:临时md5
+     */
+    private boolean isProvisional(FileMetadataInfo metadata) {
+        return metadata.getFileKey().equals(metadata.getFileMd5());
+    }
+
+    /**
+     * 是否为链接有效期内创建的上传任务
+     *
+     * @param metadata 文件元数据信息
+     * @return true:上传任务未失效
+     */
+    private boolean isRecentUpload(FileMetadataInfo metadata) {
+        return metadata.getCreateTime() != null
+                && metadata.getCreateTime().getTime() > System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getUploadExpiry());
+    }
+
+    /**
+     * 将以临时md5命名的对象替换为以真实md5命名的对象
+     * 已存在相同md5的已完成文件时直接指向该文件，否则在服务端复制为正式对象，最后删除临时对象
+     *
+     * @param metadata 文件元数据信息
+     * @param fileMd5  真实md5
+     * @param update   待更新的元数据
+     */
+    private void promoteObject(FileMetadataInfo metadata, String fileMd5, FileMetadataInfo update) {
+        String provisionalObjectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        List<FileMetadataInfo> finished = this.getMetadataByFileMd5(fileMd5, 1, null);
+        if (CollUtil.isEmpty(finished)) {
+            minioS3Client.copyObject(metadata.getStorageBucket(), provisionalObjectName, CommonUtil.getObjectName(metadata.getStoragePath(), fileMd5));
+        } else {
+            // 指向已存在的文件
+            this.copyStorageLocation(update, finished.get(0));
+        }
+        minioS3Client.removeObject(metadata.getStorageBucket(), provisionalObjectName);
+        update.setFileMd5(fileMd5);
+    }
+
+    /**
+     * 在服务端复制已有相同内容的分块
+     * 分块md5和分块长度都相同的分块从已完成的对象中按字节范围复制到新上传任务，复制失败的分块仍由前端上传
+     *
+     * @param respBO      上传任务信息
+     * @param fileMd5     文件md5
+     * @param partMd5List 分块md5列表
+     * @param fileSize    文件长度
+     * @return 已复制的分块序号
+     */
+    private Set<Integer> copyIndexedParts(CreateUploadUrlRespBO respBO, String fileMd5, List<String> partMd5List, long fileSize) {
+        Set<Integer> copiedParts = new HashSet<>();
+        if (partMd5List.size() != respBO.getPartCount()) {
+            // 前端分块方式与上传任务不一致,不做分块去重
+            return copiedParts;
+        }
+
+        partMd5List = partMd5List.stream().map(String::toLowerCase).collect(Collectors.toList());
+        Map<String, List<FilePartIndex>> indexMap = new HashMap<>();
+        for (List<String> md5List : CollUtil.split(new ArrayList<>(new HashSet<>(partMd5List)), 1000)) {
+            LambdaQueryWrapper<FilePartIndex> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.in(FilePartIndex::getPartMd5, md5List);
+            for (FilePartIndex index : filePartIndexMapper.selectList(queryWrapper)) {
+                indexMap.computeIfAbsent(index.getPartMd5(), k -> new ArrayList<>()).add(index);
+            }
+        }
+        if (indexMap.isEmpty()) {
+            return copiedParts;
+        }
+
+        String objectName = CommonUtil.getObjectName(respBO.getStoragePath(), fileMd5);
+        int partSize = respBO.getPartSize();
+        for (int partNumber = 1; partNumber <= respBO.getPartCount(); partNumber++) {
+            String partMd5 = partMd5List.get(partNumber - 1);
+            long start = (long) (partNumber - 1) * partSize;
+            long length = Math.min(start + partSize, fileSize) - start;
+            FilePartIndex source = null;
+            for (FilePartIndex index : indexMap.getOrDefault(partMd5, Collections.emptyList())) {
+                if (index.getPartSize() == length) {
+                    source = index;
+                    break;
+                }
+            }
+            if (source == null) {
+                continue;
+            }
+            try {
+                String etag = minioS3Client.uploadPartCopy(respBO.getBucketName(), objectName, respBO.getUploadTaskId(), partNumber,
+                        source.getStorageBucket(), source.getObjectName(), source.getPartOffset(), length);
+                if (CharSequenceUtil.equalsIgnoreCase(etag, partMd5)) {
+                    copiedParts.add(partNumber);
+                }
+            } catch (MinioPlusException e) {
+                // 源对象可能已被删除,删除失效的索引,该分块由前端上传
+                log.warn("分块复制失败,partNumber:{},源对象:{}", partNumber, source.getObjectName());
+                filePartIndexMapper.deleteById(source.getId());
+                indexMap.get(partMd5).remove(source);
+            }
+        }
+        log.info("{}个分块已在服务端复制", copiedParts.size());
+        return copiedParts;
+    }
+
+    /**
+     * 记录分块内容索引
+     * 已有索引的分块md5不重复记录
+     *
+     * @param metadata    文件元数据信息
+     * @param update      合并完成后更新的元数据
+     * @param partMd5List 分块md5列表
+     */
+    private void savePartIndex(FileMetadataInfo metadata, FileMetadataInfo update, List<String> partMd5List) {
+        if (CollUtil.isEmpty(partMd5List) || partMd5List.size() != metadata.getPartNumber()) {
+            return;
+        }
+        String bucketName = update.getStorageBucket() != null ? update.getStorageBucket() : metadata.getStorageBucket();
+        String storagePath = update.getStoragePath() != null ? update.getStoragePath() : metadata.getStoragePath();
+        String fileMd5 = update.getFileMd5() != null ? update.getFileMd5() : metadata.getFileMd5();
+        String objectName = CommonUtil.getObjectName(storagePath, fileMd5);
+
+        partMd5List = partMd5List.stream().map(String::toLowerCase).collect(Collectors.toList());
+        Set<String> indexed = new HashSet<>();
+        for (List<String> md5List : CollUtil.split(new ArrayList<>(new HashSet<>(partMd5List)), 1000)) {
+            LambdaQueryWrapper<FilePartIndex> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.select(FilePartIndex::getPartMd5);
+            queryWrapper.in(FilePartIndex::getPartMd5, md5List);
+            filePartIndexMapper.selectList(queryWrapper).forEach(index -> indexed.add(index.getPartMd5()));
+        }
+
+        int partSize = this.getPartSize(metadata);
+        List<FilePartIndex> indexList = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= partMd5List.size(); partNumber++) {
+            String partMd5 = partMd5List.get(partNumber - 1);
+            if (!indexed.add(partMd5)) {
+                continue;
+            }
+            long start = (long) (partNumber - 1) * partSize;
+            FilePartIndex index = new FilePartIndex();
+            index.setPartMd5(partMd5);
+            index.setPartSize(Math.min(start + partSize, metadata.getFileSize()) - start);
+            index.setStorageBucket(bucketName);
+            index.setObjectName(objectName);
+            index.setPartOffset(start);
+            indexList.add(index);
+        }
+        for (List<FilePartIndex> batch : CollUtil.split(indexList, 1000)) {
+            filePartIndexMapper.insertBatch(batch);
+        }
+    }
+
+    /**
+     * 删除文件内容
+     * 合并存储的文件只扣减所在容器的有效数据长度，容器中的数据由整理任务回收
+     *
+     * @param metadata 文件元数据信息
+     */
+    private void removeStoredFile(FileMetadataInfo metadata) {
+        if (metadata.getPackId() != null) {
+            smallFilePackService.release(metadata.getPackId(), metadata.getFileSize());
+            return;
+        }
+        minioS3Client.removeObject(metadata.getStorageBucket(), CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()));
+        this.removePartIndex(metadata);
+    }
+
+    /**
+     * 读取文件流，合并存储的文件按范围读取所在容器，压缩存储的文件读取时解压
+     * 调用方负责关闭返回的文件流
+     *
+     * @param metadata 文件元数据信息
+     * @return 文件流
+     */
+    private InputStream getObjectStream(FileMetadataInfo metadata) {
+        if (metadata.getPackId() == null) {
+            InputStream stream = minioS3Client.getObjectStream(metadata.getStorageBucket(), CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()));
+            return this.isCompressed(metadata) ? new InflaterInputStream(stream) : stream;
+        }
+        if (metadata.getFileSize() == 0) {
+            // 范围读取的长度必须大于0
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return minioS3Client.getObjectStream(metadata.getStorageBucket(), smallFilePackService.getObjectName(metadata.getPackId()),
+                metadata.getPackOffset(), metadata.getFileSize());
+    }
+
+    /**
+     * 按范围读取存储的文件流，合并存储的文件按范围读取所在容器
+     * 压缩存储的文件读取的是压缩后的内容
+     * 调用方负责关闭返回的文件流
+     *
+     * @param metadata 文件元数据信息
+     * @param offset   开始位置
+     * @param length   读取长度
+     * @return 文件流
+     */
+    private InputStream getObjectRangeStream(FileMetadataInfo metadata, long offset, long length) {
+        if (metadata.getPackId() == null) {
+            return minioS3Client.getObjectStream(metadata.getStorageBucket(), CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()), offset, length);
+        }
+        return minioS3Client.getObjectStream(metadata.getStorageBucket(), smallFilePackService.getObjectName(metadata.getPackId()),
+                metadata.getPackOffset() + offset, length);
+    }
+
+    /**
+     * 按范围复制存储的文件内容到输出流
+     * 长度超过阈值时拆分为多个范围，通过异步客户端并发读取，按顺序写出；
+     * 同时读取和等待写出的范围数量不超过并发数，先读取完成的范围在窗口中等待前面的范围写出；
+     * 写出失败时取消窗口中的范围，已返回的对象流关闭以释放连接
+     *
+     * @param metadata     文件元数据信息
+     * @param offset       开始位置
+     * @param length       复制长度
+     * @param outputStream 输出流
+     * @throws IOException 写出失败
+     */
+    private void copyObjectRange(FileMetadataInfo metadata, long offset, long length, OutputStream outputStream) throws IOException {
+        MinioPlusProperties.ParallelFetch config = properties.getParallelFetch();
+        if (!config.isEnable() || length < config.getThreshold()) {
+            try (InputStream inputStream = this.getObjectRangeStream(metadata, offset, length)) {
+                IoUtil.copy(inputStream, outputStream, DOWNLOAD_BUFFER_SIZE);
+            }
+            return;
+        }
+        // 对象流与读取结果一一对应
+        Deque<CompletableFuture<? extends InputStream>> streams = new ArrayDeque<>(config.getConcurrency());
+        Deque<CompletableFuture<byte[]>> window = new ArrayDeque<>(config.getConcurrency());
+        long position = offset;
+        long end = offset + length;
+        try {
+            while (position < end || !window.isEmpty()) {
+                while (position < end && window.size() < config.getConcurrency()) {
+                    long chunkLength = Math.min(config.getChunkSize(), end - position);
+                    CompletableFuture<? extends InputStream> stream = this.fetchObjectRange(metadata, position, chunkLength);
+                    streams.add(stream);
+                    // 异步客户端返回响应头后，在范围读取线程池中读取内容
+                    window.add(stream.thenApplyAsync(inputStream -> IoUtil.readBytes(inputStream, true), rangeFetchExecutor));
+                    position += chunkLength;
+                }
+                streams.poll();
+                outputStream.write(this.joinTask(window.poll(), MinioPlusErrorCode.READ_FAILED));
+            }
+        } finally {
+            for (CompletableFuture<byte[]> pending : window) {
+                pending.cancel(false);
+            }
+            for (CompletableFuture<? extends InputStream> stream : streams) {
+                stream.thenAccept(IoUtil::close);
+            }
+        }
+    }
+
+    /**
+     * 异步读取存储的文件的一个范围
+     *
+     * @param metadata 文件元数据信息
+     * @param offset   开始位置
+     * @param length   读取长度
+     * @return 范围的对象流
+     */
+    private CompletableFuture<? extends InputStream> fetchObjectRange(FileMetadataInfo metadata, long offset, long length) {
+        if (metadata.getPackId() == null) {
+            return minioS3Client.getObjectStreamAsync(metadata.getStorageBucket(), CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()), offset, length);
+        }
+        return minioS3Client.getObjectStreamAsync(metadata.getStorageBucket(), smallFilePackService.getObjectName(metadata.getPackId()),
+                metadata.getPackOffset() + offset, length);
+    }
+
+    /**
+     * 指向已存在的文件
+     *
+     * @param target 待更新的元数据
+     * @param source 已完成的文件元数据
+     */
+    private void copyStorageLocation(FileMetadataInfo target, FileMetadataInfo source) {
+        target.setStorageBucket(source.getStorageBucket());
+        target.setStoragePath(source.getStoragePath());
+        target.setPackId(source.getPackId());
+        target.setPackOffset(source.getPackOffset());
+        target.setContentEncoding(source.getContentEncoding());
+    }
+
+    /**
+     * 文件是否压缩存储
+     *
+     * @param metadata 文件元数据信息
+     * @return 是否压缩存储
+     */
+    private boolean isCompressed(FileMetadataInfo metadata) {
+        return CommonConstant.CONTENT_ENCODING_DEFLATE.equals(metadata.getContentEncoding());
+    }
+
+    /**
+     * 上传的文件是否压缩存储
+     * 按桶和后缀判断，长度已知且小于最小长度的文件不压缩
+     *
+     * @param bucketName 存储桶
+     * @param suffix     文件后缀
+     * @param fileSize   文件长度，未知时为-1
+     * @return 是否压缩存储
+     */
+    private boolean isCompressible(String bucketName, String suffix, long fileSize) {
+        MinioPlusProperties.Compress compress = properties.getCompress();
+        if (!compress.isEnable() || !compress.getBuckets().contains(bucketName)) {
+            return false;
+        }
+        if (fileSize >= 0 && fileSize < compress.getMinSize()) {
+            return false;
+        }
+        return compress.getSuffixes().contains(suffix.toLowerCase());
+    }
+
+    /**
+     * 文件是否只能由服务端读取
+     * 容器对象无法生成单个文件的预签名地址；压缩存储的对象通过预签名地址只能得到压缩后的内容，
+     * 由服务端按客户端的Accept-Encoding决定原样返回或解压后返回
+     *
+     * @param metadata 文件元数据信息
+     * @return 是否由服务端读取
+     */
+    private boolean isServerDownload(FileMetadataInfo metadata) {
+        return metadata.getPackId() != null || this.isCompressed(metadata);
+    }
+
+    /**
+     * 由服务端读取的文件的下载地址
+     *
+     * @param fileKey 文件KEY
+     * @return 下载地址
+     */
+    private String getServerDownloadUrl(String fileKey) {
+        return properties.getPack().getDownloadPath() + "?fileKey=" + fileKey;
+    }
+
+    /**
+     * 删除对象的分块内容索引
+     *
+     * @param metadata 文件元数据信息
+     */
+    private void removePartIndex(FileMetadataInfo metadata) {
+        LambdaQueryWrapper<FilePartIndex> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FilePartIndex::getStorageBucket, metadata.getStorageBucket());
+        queryWrapper.eq(FilePartIndex::getObjectName, CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()));
+        filePartIndexMapper.delete(queryWrapper);
+    }
+
+    /**
+     * 按窗口下发分块上传链接
+     * 只对窗口内尚未上传的分块签发链接，已上传的分块通过一次带起始块号的listParts排除
+     *
+     * @param fileKey    文件KEY
+     * @param partNumber 本批次起始块号
+     * @return {@link FilePartWindowVo}
+     */
+    @Override
+    public FilePartWindowVo nextParts(String fileKey, Integer partNumber) {
+        FileMetadataInfo metadata = uploadSessionService.get(fileKey);
+        if (Objects.isNull(metadata)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+        }
+
+        FilePartWindowVo windowVo = new FilePartWindowVo();
+        windowVo.setFileKey(fileKey);
+        windowVo.setUploadTaskId(metadata.getUploadTaskId());
+        windowVo.setPartCount(metadata.getPartNumber());
+        windowVo.setPartSize(this.getPartSize(metadata));
+
+        Integer chunkNum = metadata.getPartNumber();
+        if (metadata.getIsFinished() == 1 || partNumber == null || partNumber < 1 || partNumber > chunkNum) {
+            // 已完成或游标越界，没有需要下发的分块
+            return windowVo;
+        }
+
+        int windowEnd = this.computeWindowEnd(partNumber, chunkNum);
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        // 只查询窗口范围内的分片
+        ListParts listParts = minioS3Client.listParts(metadata.getStorageBucket(), objectName, windowEnd - partNumber + 1, partNumber - 1, metadata.getUploadTaskId());
+        boolean[] exists = new boolean[windowEnd - partNumber + 1];
+        for (ListParts.Part item : listParts.getPartList()) {
+            if (item.getPartNumber() >= partNumber && item.getPartNumber() <= windowEnd) {
+                exists[item.getPartNumber() - partNumber] = true;
+            }
+        }
+
+        for (int i = partNumber; i <= windowEnd; i++) {
+            if (!exists[i - partNumber]) {
+                FileCheckResultVo.Part part = this.buildResultPart(metadata.getStorageBucket(), objectName, metadata.getUploadTaskId(), metadata.getFileSize(), windowVo.getPartSize(), i);
+                part.setUrl(remakeUrl(part.getUrl()));
+                windowVo.getPartList().add(part);
+            }
+        }
+        windowVo.setNextPartNumber(windowEnd < chunkNum ? windowEnd + 1 : null);
+        return windowVo;
+    }
+
+    /**
+     * 刷新分块上传链接
+     * 链接过期后按块号范围重新签名，只查询元数据，不查询MinIO中的分片，已确认的分块不再下发
+     *
+     * @param fileKey         文件KEY
+     * @param uploadTaskId    上传任务编号
+     * @param startPartNumber 起始块号
+     * @param endPartNumber   结束块号（含），为空时按链接窗口大小计算
+     * @return {@link FilePartWindowVo}
+     */
+    @Override
+    public FilePartWindowVo refreshParts(String fileKey, String uploadTaskId, Integer startPartNumber, Integer endPartNumber) {
+        FileMetadataInfo metadata = this.getUploadingMetadataInfo(fileKey, uploadTaskId);
+        if (Objects.isNull(metadata) || metadata.getIsFinished() == 1) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+        }
+        if (!metadata.getUploadTaskId().equals(uploadTaskId)) {
+            // 上传任务已重建，需重新初始化
+            throw new MinioPlusException(MinioPlusErrorCode.UPLOAD_TASK_CHECK_FAILED);
+        }
+
+        FilePartWindowVo windowVo = new FilePartWindowVo();
+        windowVo.setFileKey(fileKey);
+        windowVo.setUploadTaskId(uploadTaskId);
+        windowVo.setPartCount(metadata.getPartNumber());
+        windowVo.setPartSize(this.getPartSize(metadata));
+
+        int chunkNum = metadata.getPartNumber();
+        if (startPartNumber == null || startPartNumber < 1 || startPartNumber > chunkNum) {
+            return windowVo;
+        }
+        // 单次刷新不超过链接窗口大小
+        int windowEnd = this.computeWindowEnd(startPartNumber, chunkNum);
+        int end = endPartNumber == null ? windowEnd : Math.min(Math.max(endPartNumber, startPartNumber), windowEnd);
+
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        PartAckBO partAck = this.getPartAck(metadata);
+        for (int i = startPartNumber; i <= end; i++) {
+            if (partAck == null || !partAck.isAcked(i)) {
+                FileCheckResultVo.Part part = this.buildResultPart(metadata.getStorageBucket(), objectName, uploadTaskId, metadata.getFileSize(), windowVo.getPartSize(), i);
+                part.setUrl(remakeUrl(part.getUrl()));
+                windowVo.getPartList().add(part);
+            }
+        }
+        windowVo.setNextPartNumber(end < chunkNum ? end + 1 : null);
+        return windowVo;
+    }
+
+    /**
+     * 通过服务端代理上传分块
+     * 分块上传期间不占用数据库连接，避免大量并发分块耗尽连接池
+     *
+     * @param fileKey    文件KEY
+     * @param partNumber 分块序号
+     * @param stream     分块数据流
+     * @param length     分块大小
+     * @return {@link PartUploadResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PartUploadResultVo uploadPart(String fileKey, Integer partNumber, InputStream stream, long length) {
+        FileMetadataInfo metadata = uploadSessionService.get(fileKey);
+        if (Objects.isNull(metadata) || metadata.getIsFinished() == 1) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+        }
+
+        // 校验分块序号和分块大小，防止错位的分块写入上传任务
+        int partSize = this.getPartSize(metadata);
+        if (partNumber == null || partNumber < 1 || partNumber > metadata.getPartNumber()) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+        long start = (long) (partNumber - 1) * partSize;
+        long expectLength = Math.min(start + partSize, metadata.getFileSize()) - start;
+        if (length != expectLength) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        String etag = minioS3Client.uploadPartStream(metadata.getStorageBucket(), objectName, metadata.getUploadTaskId(), partNumber, stream, length);
+        // 服务端代理上传的分块直接确认
+        PartAckBO partAck = this.getOrCreatePartAck(metadata);
+        partAck.ack(partNumber, etag);
+        uploadTuningService.observeAck(metadata.getUploadTaskId(), partNumber);
+        this.onPartAcked(partAck);
+
+        PartUploadResultVo resultVo = new PartUploadResultVo();
+        resultVo.setFileKey(fileKey);
+        resultVo.setPartNumber(partNumber);
+        resultVo.setEtag(etag);
+        return resultVo;
+    }
+
+    /**
+     * 分块确认
+     * 前端每上传成功一个分块后调用，记录块号和ETag，断点续传和合并时优先使用确认记录，不再查询MinIO中的分片
+     * 同一上传任务只在首次确认时查询一次元数据
+     *
+     * @param fileKey      文件KEY
+     * @param uploadTaskId 上传任务编号
+     * @param partNumber   分块序号
+     * @param etag         分块ETag
+     * @return 是否成功
+     */
+    @Override
+    public Boolean ackPart(String fileKey, String uploadTaskId, Integer partNumber, String etag) {
+        if (StringUtils.isEmpty(uploadTaskId) || StringUtils.isEmpty(etag)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+        PartAckBO partAck = partAcks.get(uploadTaskId);
+        if (partAck == null) {
+            FileMetadataInfo metadata = this.getUploadingMetadataInfo(fileKey, uploadTaskId);
+            if (Objects.isNull(metadata) || metadata.getIsFinished() == 1 || !uploadTaskId.equals(metadata.getUploadTaskId())) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+            }
+            partAck = this.getOrCreatePartAck(metadata);
+        }
+        if (partNumber == null || partNumber < 1 || partNumber > partAck.getPartCount()) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+        partAck.ack(partNumber, etag);
+        uploadTuningService.observeAck(uploadTaskId, partNumber);
+        this.onPartAcked(partAck);
+        return true;
+    }
+
+    /**
+     * 分块确认后的处理，全部分块已确认时异步自动合并
+     *
+     * @param partAck 分块确认记录
+     */
+    private void onPartAcked(PartAckBO partAck) {
+        uploadSessionService.recordProgress(partAck.getFileKey(), partAck.ackedCount());
+        if (partAck.ackedCount() == partAck.getPartCount()) {
+            // 全部分块已确认,结束上传速度观测
+            uploadTuningService.finish(partAck.getUploadId(), null);
+        }
+        if (properties.getAutoComplete().isEnable() && partAck.markCompleting()) {
+            storageTaskExecutor.execute(() -> this.autoCompleteByAck(partAck));
+        }
+    }
+
+    /**
+     * 取得或创建上传任务的分块确认记录
+     *
+     * @param metadata 文件元数据
+     * @return 分块确认记录
+     */
+    private PartAckBO getOrCreatePartAck(FileMetadataInfo metadata) {
+        PartAckBO partAck = partAcks.get(metadata.getUploadTaskId());
+        if (partAck == null) {
+            this.clearExpiredPartAcks();
+            partAck = partAcks.computeIfAbsent(metadata.getUploadTaskId(), uploadId -> new PartAckBO(uploadId, metadata.getFileKey(), metadata.getPartNumber()));
+        }
+        return partAck;
+    }
+
+    /**
+     * 取得与元数据一致的分块确认记录
+     *
+     * @param metadata 文件元数据
+     * @return 分块确认记录，不存在或分块数量不一致时返回null
+     */
+    private PartAckBO getPartAck(FileMetadataInfo metadata) {
+        PartAckBO partAck = partAcks.get(metadata.getUploadTaskId());
+        if (partAck == null || partAck.getPartCount() != metadata.getPartNumber()) {
+            return null;
+        }
+        return partAck;
+    }
+
+    /**
+     * 清理过期的分块确认记录
+     * 记录丢失只会回退到查询分片，不影响上传结果
+     */
+    private void clearExpiredPartAcks() {
+        long expireTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getUploadExpiry());
+        partAcks.values().removeIf(partAck -> partAck.getLastAccessTime() < expireTime);
+    }
+
+    /**
+     * 查找未上传的块号
+     * 分块确认记录只保存在接收确认的节点内存中，全部分块已确认时不再查询；
+     * 否则以MinIO中已上传的分片为准，其他节点确认的分块不会被误判为未上传
+     *
+     * @param metadata 文件元数据
+     * @return 未上传的块号
+     */
+    private List<Integer> findMissingParts(FileMetadataInfo metadata) {
+        int chunkNum = metadata.getPartNumber();
+        List<Integer> missingNumbers = new ArrayList<>();
+        PartAckBO partAck = this.getPartAck(metadata);
+        if (partAck != null && partAck.ackedCount() >= chunkNum) {
+            return missingNumbers;
+        }
+
+        // 获取分块信息
+        List<ListParts.Part> parts = this.getListParts(metadata).getPartList();
+        // 遍历数组，标记存在的块号
+        boolean[] exists = new boolean[chunkNum + 1];
+        for (ListParts.Part item : parts) {
+            exists[item.getPartNumber()] = true;
+        }
+        // 查找丢失的块号
+        for (int i = 1; i <= chunkNum; i++) {
+            if (!exists[i]) {
+                missingNumbers.add(i);
+            }
+        }
+        return missingNumbers;
+    }
+
+    /**
+     * 自动合并全部分块已上传的上传任务
+     * 按主键游标分批检查未完成的分片上传任务，一轮检查结束后游标归零；以临时md5上传的任务需要前端提交真实md5，不自动合并
+     *
+     * @return 本次合并的上传任务数量
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Integer autoComplete() {
+        MinioPlusProperties.AutoComplete config = properties.getAutoComplete();
+        long now = System.currentTimeMillis();
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getIsPart, 1);
+        queryWrapper.eq(FileMetadataInfo::getIsFinished, 0);
+        queryWrapper.isNotNull(FileMetadataInfo::getUploadTaskId);
+        queryWrapper.gt(FileMetadataInfo::getId, autoCompleteCursor.get());
+        // 按最后活动时间判断是否空闲,没有确认过分块的按创建时间判断
+        Date idleTime = new Date(now - TimeUnit.SECONDS.toMillis(config.getIdleSeconds()));
+        queryWrapper.and(w -> w.lt(FileMetadataInfo::getActiveTime, idleTime)
+                .or(o -> o.isNull(FileMetadataInfo::getActiveTime).lt(FileMetadataInfo::getCreateTime, idleTime)));
+        queryWrapper.gt(FileMetadataInfo::getCreateTime, new Date(now - TimeUnit.HOURS.toMillis(config.getMaxAgeHours())));
+        queryWrapper.orderByAsc(FileMetadataInfo::getId);
+        queryWrapper.last("limit " + config.getBatchSize());
+        List<FileMetadataInfo> list = metadataMapper.selectList(queryWrapper);
+        autoCompleteCursor.set(list.size() < config.getBatchSize() ? 0 : list.get(list.size() - 1).getId());
+
+        int count = 0;
+        Set<String> checkedTasks = new HashSet<>();
+        for (FileMetadataInfo metadata : list) {
+            if (this.isProvisional(metadata) || !checkedTasks.add(metadata.getUploadTaskId())) {
+                continue;
+            }
+            if (this.tryAutoComplete(metadata, null)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 后台校验已完成文件的实际内容
+     * 1.按主键游标分批查询未校验的已完成元数据，一轮检查结束后游标归零
+     * 2.同一存储位置只读取一次，限速读取文件内容，计算md5
+     * 3.md5和长度一致的标记为已校验，否则标记为已隔离，不再参与秒传和上传任务复用
+     * 读取失败的文件保持未校验，下一轮重试
+     *
+     * @return 本次校验的文件数量
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Integer verifyFiles() {
+        MinioPlusProperties.Verify config = properties.getVerify();
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getIsFinished, 1);
+        queryWrapper.eq(FileMetadataInfo::getVerifyState, 0);
+        queryWrapper.gt(FileMetadataInfo::getId, verifyCursor.get());
+        queryWrapper.orderByAsc(FileMetadataInfo::getId);
+        queryWrapper.last("limit " + config.getBatchSize());
+        List<FileMetadataInfo> list = metadataMapper.selectList(queryWrapper);
+        verifyCursor.set(list.size() < config.getBatchSize() ? 0 : list.get(list.size() - 1).getId());
+
+        int count = 0;
+        Set<String> checkedLocations = new HashSet<>();
+        for (FileMetadataInfo metadata : list) {
+            String location = metadata.getStorageBucket() + "/" + metadata.getStoragePath() + "/" + metadata.getFileMd5()
+                    + "/" + metadata.getPackId() + "/" + metadata.getPackOffset();
+            if (!checkedLocations.add(location)) {
+                continue;
+            }
+            if (this.verifyFile(metadata)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 校验单个文件，结果写入指向同一存储位置的全部未校验元数据
+     *
+     * @param metadata 文件元数据信息
+     * @return 是否完成校验
+     */
+    private boolean verifyFile(FileMetadataInfo metadata) {
+        MessageDigest messageDigest = SecureUtil.md5().getDigest();
+        long size = 0;
+        try (InputStream inputStream = this.getObjectStream(metadata)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+                verifyRateLimiter.acquire(read);
+                messageDigest.update(buffer, 0, read);
+                size += read;
+            }
+        } catch (Exception e) {
+            log.warn("文件校验读取失败,fileKey:{},原因:{}", metadata.getFileKey(), e.getMessage());
+            return false;
+        }
+        String actualMd5 = HexUtil.encodeHexStr(messageDigest.digest());
+        boolean matched = actualMd5.equals(metadata.getFileMd5()) && size == metadata.getFileSize();
+
+        LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(FileMetadataInfo::getStorageBucket, metadata.getStorageBucket())
+                .eq(FileMetadataInfo::getStoragePath, metadata.getStoragePath())
+                .eq(FileMetadataInfo::getFileMd5, metadata.getFileMd5())
+                .eq(FileMetadataInfo::getIsFinished, 1)
+                .eq(FileMetadataInfo::getVerifyState, 0);
+        if (metadata.getPackId() == null) {
+            updateWrapper.isNull(FileMetadataInfo::getPackId);
+        } else {
+            updateWrapper.eq(FileMetadataInfo::getPackId, metadata.getPackId())
+                    .eq(FileMetadataInfo::getPackOffset, metadata.getPackOffset());
+        }
+        if (matched) {
+            updateWrapper.set(FileMetadataInfo::getVerifyState, 1);
+        } else {
+            // 隔离后释放上传任务所有者，相同md5的文件可以重新上传
+            updateWrapper.set(FileMetadataInfo::getVerifyState, 2)
+                    .set(FileMetadataInfo::getOwnerMd5, null);
+            log.warn("文件md5校验不一致,已隔离,fileKey:{},记录md5:{},实际md5:{},记录长度:{},实际长度:{}",
+                    metadata.getFileKey(), metadata.getFileMd5(), actualMd5, metadata.getFileSize(), size);
+        }
+        metadataMapper.update(null, updateWrapper);
+        return true;
+    }
+
+    /**
+     * 全部分块确认后自动合并
+     *
+     * @param partAck 分块确认记录
+     */
+    private void autoCompleteByAck(PartAckBO partAck) {
+        try {
+            FileMetadataInfo metadata = this.getUploadingMetadataInfo(partAck.getFileKey(), partAck.getUploadId());
+            if (Objects.isNull(metadata) || metadata.getIsFinished() == 1 || this.isProvisional(metadata)
+                    || !partAck.getUploadId().equals(metadata.getUploadTaskId())) {
+                return;
+            }
+            List<ListParts.Part> partList = new ArrayList<>(partAck.getPartCount());
+            for (int i = 1; i <= partAck.getPartCount(); i++) {
+                ListParts.Part part = new ListParts.Part();
+                part.setPartNumber(i);
+                part.setEtag(partAck.getEtag(i));
+                partList.add(part);
+            }
+            if (this.tryAutoComplete(metadata, partList)) {
+                log.info("全部分块已确认,自动合并完成,fileKey:{}", metadata.getFileKey());
+            }
+        } catch (Exception e) {
+            log.warn("全部分块已确认,自动合并失败,fileKey:{},原因:{}", partAck.getFileKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * 分块齐全时合并上传任务，并将相同md5的未完成元数据更新为完成状态
+     *
+     * @param metadata 文件元数据
+     * @param partList 分块列表，为空时查询MinIO中的分片
+     * @return true:已合并
+     */
+    private boolean tryAutoComplete(FileMetadataInfo metadata, List<ListParts.Part> partList) {
+        return keyLockService.execute("complete:" + metadata.getFileKey(), () -> {
+            // 加锁期间可能已由前端合并
+            FileMetadataInfo latest = getFileMetadataInfo(metadata.getFileKey());
+            if (Objects.isNull(latest) || latest.getIsFinished() == 1 || !metadata.getUploadTaskId().equals(latest.getUploadTaskId())) {
+                return false;
+            }
+            return this.doAutoComplete(metadata, partList);
+        });
+    }
+
+    /**
+     * 合并上传任务并更新完成状态
+     *
+     * @param metadata 文件元数据
+     * @param partList 分块列表，为空时查询MinIO中的分片
+     * @return true:已合并
+     */
+    private boolean doAutoComplete(FileMetadataInfo metadata, List<ListParts.Part> partList) {
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        if (partList == null) {
+            partList = this.listAllParts(metadata.getStorageBucket(), objectName, metadata.getPartNumber(), metadata.getUploadTaskId());
+        }
+        int chunkNum = metadata.getPartNumber();
+        if (partList.size() != chunkNum) {
+            return false;
+        }
+        List<String> etagList = new ArrayList<>(chunkNum);
+        for (int i = 0; i < chunkNum; i++) {
+            ListParts.Part part = partList.get(i);
+            if (part.getPartNumber() != i + 1 || StringUtils.isEmpty(part.getEtag())) {
+                return false;
+            }
+            etagList.add(part.getEtag().replace("\"", ""));
+        }
+        try {
+            if (!Boolean.TRUE.equals(minioS3Client.completeMultipartUpload(metadata.getStorageBucket(), objectName, metadata.getUploadTaskId(), partList))) {
+                return false;
+            }
+        } catch (MinioPlusException e) {
+            // 上传任务已由前端合并或已失效
+            return false;
+        }
+        partAcks.remove(metadata.getUploadTaskId());
+
+        // 自己及相同md5的未完成元数据更新为完成状态
+        LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.set(FileMetadataInfo::getIsFinished, 1);
+        updateWrapper.eq(FileMetadataInfo::getFileMd5, metadata.getFileMd5());
+        updateWrapper.eq(FileMetadataInfo::getIsFinished, 0);
+        updateWrapper.eq(FileMetadataInfo::getIsPart, 1);
+        metadataMapper.update(null, updateWrapper);
+        uploadSessionService.invalidate(metadata.getFileKey());
+
+        // 分块ETag即分块md5，记录分块内容索引
+        this.savePartIndex(metadata, new FileMetadataInfo(), etagList);
+        return true;
+    }
+
+    /**
+     * 取得已被自动合并的文件的合并结果
+     * 使用加锁读取最新提交的状态，不受当前事务快照影响
+     *
+     * @param fileKey 文件KEY
+     * @return 已完成时返回合并结果，否则返回null
+     */
+    private CompleteResultVo getAutoCompletedResult(String fileKey) {
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getFileKey, fileKey);
+        queryWrapper.last("for update");
+        FileMetadataInfo latest = metadataMapper.selectOne(queryWrapper);
+        if (latest == null || latest.getIsFinished() != 1) {
+            return null;
+        }
+        CompleteResultVo completeResultVo = new CompleteResultVo();
+        completeResultVo.setFileKey(fileKey);
+        completeResultVo.setIsComplete(true);
+        return completeResultVo;
+    }
+
+    /**
+     * 按分块确认记录合并分块
+     * 确认记录完整且ETag与分块md5一致时直接合并，否则返回false，由调用方查询分片后处理
+     *
+     * @param metadataInfo 文件元数据信息
+     * @param partMd5List  分块md5列表
+     * @return true:已合并
+     */
+    private boolean completeByPartAck(FileMetadataInfo metadataInfo, List<String> partMd5List) {
+        PartAckBO partAck = this.getPartAck(metadataInfo);
+        if (partAck == null || partAck.ackedCount() != metadataInfo.getPartNumber()) {
+            return false;
+        }
+        List<ListParts.Part> partList = new ArrayList<>(partMd5List.size());
+        for (int i = 1; i <= partMd5List.size(); i++) {
+            String etag = partAck.getEtag(i);
+            if (!CharSequenceUtil.equalsIgnoreCase(etag, partMd5List.get(i - 1))) {
+                return false;
+            }
+            ListParts.Part part = new ListParts.Part();
+            part.setPartNumber(i);
+            part.setEtag(etag);
+            partList.add(part);
+        }
+        String objectName = CommonUtil.getObjectName(metadataInfo.getStoragePath(), metadataInfo.getFileMd5());
+        try {
+            return minioS3Client.completeMultipartUpload(metadataInfo.getStorageBucket(), objectName, metadataInfo.getUploadTaskId(), partList);
+        } catch (MinioPlusException e) {
+            // 确认记录与MinIO中的分片不一致
+            log.warn("按分块确认记录合并失败,回退到查询分片,uploadId:{}", metadataInfo.getUploadTaskId());
+            partAcks.remove(metadataInfo.getUploadTaskId());
+            return false;
+        }
+    }
+
+    /**
+     * 取得文件的分块签名
+     * 按分块大小顺序读取对象，逐块计算弱校验值和强校验值，读取过程中只占用固定大小的缓冲区
+     * 读取耗时与文件大小相关，不开启事务，避免长时间占用数据库连接
+     *
+     * @param fileKey 文件KEY
+     * @return {@link FileSignatureVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FileSignatureVo signature(String fileKey) {
+        FileMetadataInfo metadata = this.getFinishedMetadataInfo(fileKey);
+        int blockSize = this.getPartSize(metadata);
+
+        FileSignatureVo signatureVo = new FileSignatureVo();
+        signatureVo.setFileKey(fileKey);
+        signatureVo.setFileMd5(metadata.getFileMd5());
+        signatureVo.setFileSize(metadata.getFileSize());
+        signatureVo.setBlockSize(blockSize);
+
+        Adler32 weak = new Adler32();
+        MessageDigest strong = SecureUtil.md5().getDigest();
+        byte[] buffer = new byte[IoUtil.DEFAULT_LARGE_BUFFER_SIZE];
+        try (InputStream inputStream = this.getObjectStream(metadata)) {
+            // 当前分块剩余长度
+            long blockRemain = blockSize;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                int offset = 0;
+                while (offset < read) {
+                    int length = (int) Math.min(read - offset, blockRemain);
+                    weak.update(buffer, offset, length);
+                    strong.update(buffer, offset, length);
+                    offset += length;
+                    blockRemain -= length;
+                    if (blockRemain == 0) {
+                        this.addSignatureBlock(signatureVo, weak, strong);
+                        blockRemain = blockSize;
+                    }
+                }
+            }
+            if (blockRemain < blockSize) {
+                // 最后一块不足分块大小
+                this.addSignatureBlock(signatureVo, weak, strong);
+            }
+        } catch (IOException e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+        return signatureVo;
+    }
+
+    /**
+     * 记录一个分块的签名并重置校验值
+     *
+     * @param signatureVo 分块签名结果
+     * @param weak        弱校验值
+     * @param strong      强校验值
+     */
+    private void addSignatureBlock(FileSignatureVo signatureVo, Adler32 weak, MessageDigest strong) {
+        FileSignatureVo.Block block = new FileSignatureVo.Block();
+        block.setIndex(signatureVo.getBlockList().size());
+        block.setWeak(weak.getValue());
+        block.setStrong(HexUtil.encodeHexStr(strong.digest()));
+        signatureVo.getBlockList().add(block);
+        weak.reset();
+    }
+
+    /**
+     * 文件增量更新初始化
+     * <p>
+     * 1.新文件已存在，直接将文件元数据指向已存在的文件
+     * 2.按前端提交的匹配分块规划新文件的分块，与原文件相同的分块在服务端复制，其余分块下发上传链接
+     *
+     * @param fileKey   被更新文件的KEY
+     * @param fileMd5   新文件md5
+     * @param fileSize  新文件长度
+     * @param blockSize 签名使用的分块大小
+     * @param matchList 新文件中与原文件相同的分块
+     * @return {@link FileUpdateResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FileUpdateResultVo updateInit(String fileKey, String fileMd5, Long fileSize, Integer blockSize, List<FileUpdateDTO.Match> matchList) {
+        if (StringUtils.isEmpty(fileMd5)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+        }
+        if (fileSize == null || fileSize <= 0) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_BYTES_FAILED);
+        }
+        FileMetadataInfo metadata = this.getFinishedMetadataInfo(fileKey);
+        if (blockSize == null || blockSize != this.getPartSize(metadata)) {
+            // 签名已过期或分块大小不一致
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+
+        FileUpdateResultVo resultVo = new FileUpdateResultVo();
+        resultVo.setFileKey(fileKey);
+        resultVo.setCopiedSize(0L);
+
+        // 1.新文件已存在,直接指向已存在的文件
+        List<FileMetadataInfo> finished = this.getMetadataByFileMd5(fileMd5, 1, null);
+        if (CollUtil.isNotEmpty(finished)) {
+            this.replaceFileContent(metadata, finished.get(0));
+            resultVo.setPartCount(0);
+            resultVo.setIsDone(Boolean.TRUE);
+            return resultVo;
+        }
+
+        // 2.规划新文件的分块，压缩存储的原文件无法按原始位置复制，全部由前端上传
+        List<long[]> plan = this.planDeltaParts(metadata.getFileSize(), blockSize, fileSize, this.isCompressed(metadata) ? null : matchList);
+        if (plan.size() > properties.getPart().getMaxCount()) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_NUM_CHECK_FAILED);
+        }
+
+        String bucketName = metadata.getStorageBucket();
+        String sourceObjectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+        // 合并存储的原文件从容器中复制
+        long sourceOffset = 0;
+        if (metadata.getPackId() != null) {
+            sourceObjectName = smallFilePackService.getObjectName(metadata.getPackId());
+            sourceOffset = metadata.getPackOffset();
+        }
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), fileMd5);
+        String uploadId = minioS3Client.createMultipartUpload(bucketName, objectName, metadata.getFileMimeType());
+        long copiedSize = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            long[] range = plan.get(i);
+            int partNumber = i + 1;
+            if (range[2] >= 0) {
+                // 与原文件相同的部分在服务端复制
+                minioS3Client.uploadPartCopy(bucketName, objectName, uploadId, partNumber, bucketName, sourceObjectName, sourceOffset + range[2], range[1] - range[0]);
+                copiedSize += range[1] - range[0];
+            } else {
+                FileCheckResultVo.Part part = new FileCheckResultVo.Part();
+                // 分块序号
+                part.setPartNumber(partNumber);
+                part.setUploadId(uploadId);
+                // 上传地址
+                part.setUrl(remakeUrl(minioS3Client.getUploadObjectUrl(bucketName, objectName, uploadId, String.valueOf(partNumber))));
+                // 开始位置
+                part.setStartPosition(range[0]);
+                // 结束位置
+                part.setEndPosition(range[1]);
+                resultVo.getPartList().add(part);
+            }
+        }
+        log.info("{},增量更新共{}个分块,服务端复制{}字节", fileKey, plan.size(), copiedSize);
+
+        // 登记更新会话,完成时校验上传任务编号
+        FileMetadataInfo target = new FileMetadataInfo();
+        target.setFileMd5(fileMd5);
+        target.setUploadTaskId(uploadId);
+        target.setStorageBucket(bucketName);
+        target.setStoragePath(metadata.getStoragePath());
+        target.setCreateTime(new Date());
+        this.clearExpiredUpdateSessions();
+        FileMetadataInfo previous = updateSessions.put(fileKey, target);
+        if (previous != null) {
+            // 同一文件重新发起更新,取消之前的上传任务
+            this.abortUpdateSession(fileKey, previous);
+        }
+
+        resultVo.setUploadTaskId(uploadId);
+        resultVo.setPartCount(plan.size());
+        resultVo.setCopiedSize(copiedSize);
+        resultVo.setIsDone(Boolean.FALSE);
+        return resultVo;
+    }
+
+    /**
+     * 文件增量更新完成
+     * 校验上传任务与更新会话一致、分块数量和长度后合并分块，将文件元数据指向新文件，原文件不再被引用时删除
+     *
+     * @param fileKey      被更新文件的KEY
+     * @param fileMd5      新文件md5
+     * @param fileSize     新文件长度
+     * @param uploadTaskId 上传任务编号
+     * @param partCount    分块数量
+     * @return 是否成功
+     */
+    @Override
+    public Boolean updateComplete(String fileKey, String fileMd5, Long fileSize, String uploadTaskId, Integer partCount) {
+        if (StringUtils.isEmpty(fileMd5)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_MD5_CHECK_FAILED);
+        }
+        FileMetadataInfo session = updateSessions.get(fileKey);
+        if (session == null || !session.getUploadTaskId().equals(uploadTaskId) || !session.getFileMd5().equals(fileMd5)) {
+            throw new MinioPlusException(MinioPlusErrorCode.UPLOAD_TASK_CHECK_FAILED);
+        }
+        FileMetadataInfo metadata = this.getFinishedMetadataInfo(fileKey);
+        String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), fileMd5);
+
+        if (partCount == null) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_NUM_CHECK_FAILED);
+        }
+        List<ListParts.Part> partList = this.listAllParts(metadata.getStorageBucket(), objectName, partCount, uploadTaskId);
+        if (partList.size() != partCount) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_NUM_CHECK_FAILED);
+        }
+        long totalSize = 0;
+        for (ListParts.Part part : partList) {
+            totalSize += part.getSize();
+        }
+        if (fileSize == null || totalSize != fileSize) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_SIZE_CHECK_FAILED);
+        }
+        minioS3Client.completeMultipartUpload(metadata.getStorageBucket(), objectName, uploadTaskId, partList);
+        updateSessions.remove(fileKey, session);
+
+        FileMetadataInfo target = new FileMetadataInfo();
+        target.setFileMd5(fileMd5);
+        target.setFileSize(fileSize);
+        target.setStorageBucket(metadata.getStorageBucket());
+        target.setStoragePath(metadata.getStoragePath());
+        target.setUploadTaskId(uploadTaskId);
+        target.setPartNumber(partCount);
+        target.setPartSize(this.getPartSize(metadata));
+        target.setIsPreview(0);
+        this.replaceFileContent(metadata, target);
+        return true;
+    }
+
+    /**
+     * 清理超过上传有效期的增量更新会话，并取消对应的上传任务
+     */
+    private void clearExpiredUpdateSessions() {
+        long expireTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getUploadExpiry());
+        for (Map.Entry<String, FileMetadataInfo> entry : updateSessions.entrySet()) {
+            if (entry.getValue().getCreateTime().getTime() < expireTime && updateSessions.remove(entry.getKey(), entry.getValue())) {
+                this.abortUpdateSession(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 取消增量更新会话的上传任务
+     *
+     * @param fileKey 被更新文件的KEY
+     * @param session 更新会话
+     */
+    private void abortUpdateSession(String fileKey, FileMetadataInfo session) {
+        try {
+            minioS3Client.abortMultipartUpload(session.getStorageBucket(), CommonUtil.getObjectName(session.getStoragePath(), session.getFileMd5()), session.getUploadTaskId());
+        } catch (MinioPlusException e) {
+            log.warn("增量更新上传任务取消失败,fileKey:{}", fileKey);
+        }
+    }
+
+    /**
+     * 规划增量更新的分块
+     * 与原文件相同的分块在服务端复制，其余部分由前端上传，除最后一块外每块不小于最小分块大小
+     * 在新旧文件中都连续的复制分块合并为一块
+     *
+     * @param oldSize   原文件长度
+     * @param blockSize 签名使用的分块大小
+     * @param newSize   新文件长度
+     * @param matchList 新文件中与原文件相同的分块
+     * @return 分块列表，每项为[新文件开始位置,新文件结束位置,原文件开始位置]，原文件开始位置为-1表示需要上传
+     */
+    private List<long[]> planDeltaParts(long oldSize, int blockSize, long newSize, List<FileUpdateDTO.Match> matchList) {
+        long minSize = properties.getPart().getSize();
+        List<FileUpdateDTO.Match> matches = new ArrayList<>();
+        if (matchList != null) {
+            for (FileUpdateDTO.Match match : matchList) {
+                if (match.getOffset() != null && match.getBlockIndex() != null) {
+                    matches.add(match);
+                }
+            }
+            matches.sort(Comparator.comparing(FileUpdateDTO.Match::getOffset));
+        }
+
+        List<long[]> plan = new ArrayList<>();
+        // 已规划到的位置
+        long position = 0;
+        for (FileUpdateDTO.Match match : matches) {
+            long offset = match.getOffset();
+            long sourceStart = (long) match.getBlockIndex() * blockSize;
+            if (match.getBlockIndex() < 0 || sourceStart >= oldSize || offset < position) {
+                // 越界或与已规划的部分重叠
+                continue;
+            }
+            long length = Math.min(sourceStart + blockSize, oldSize) - sourceStart;
+            long end = offset + length;
+            if (end > newSize || (length < minSize && end < newSize)) {
+                // 超出新文件，或不足最小分块且不是最后一块
+                continue;
+            }
+            long gap = offset - position;
+            if (gap > 0 && gap < minSize) {
+                // 待上传部分不足最小分块，该分块并入待上传部分
+                continue;
+            }
+            if (gap > 0) {
+                this.addUploadRanges(plan, position, offset, blockSize, minSize);
+            }
+            long[] last = plan.isEmpty() ? null : plan.get(plan.size() - 1);
+            if (last != null && last[2] >= 0 && last[1] == offset && last[2] + (last[1] - last[0]) == sourceStart
+                    && last[1] - last[0] + length <= MAX_COPY_PART_SIZE) {
+                last[1] = end;
+            } else {
+                plan.add(new long[]{offset, end, sourceStart});
+            }
+            position = end;
+        }
+        if (position < newSize) {
+            this.addUploadRanges(plan, position, newSize, blockSize, minSize);
+        }
+        return plan;
+    }
+
+    /**
+     * 将待上传部分按分块大小切分，剩余不足最小分块时并入前一块
+     *
+     * @param plan      分块列表
+     * @param start     开始位置
+     * @param end       结束位置
+     * @param blockSize 分块大小
+     * @param minSize   最小分块大小
+     */
+    private void addUploadRanges(List<long[]> plan, long start, long end, int blockSize, long minSize) {
+        long position = start;
+        while (position < end) {
+            long rangeEnd = Math.min(position + blockSize, end);
+            if (end - rangeEnd > 0 && end - rangeEnd < minSize) {
+                rangeEnd = end;
+            }
+            plan.add(new long[]{position, rangeEnd, -1});
+            position = rangeEnd;
+        }
+    }
+
+    /**
+     * 将文件元数据指向新的文件内容
+     * 原文件不再被其他元数据引用时，删除原文件、缩略图和分块内容索引
+     * 内容已变更，清除md5归属并重置后台校验状态
+     *
+     * @param metadata 被更新的文件元数据
+     * @param target   新文件内容信息
+     */
+    private void replaceFileContent(FileMetadataInfo metadata, FileMetadataInfo target) {
+        LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.eq(FileMetadataInfo::getId, metadata.getId())
+                .set(FileMetadataInfo::getFileMd5, target.getFileMd5())
+                .set(FileMetadataInfo::getSampleMd5, target.getSampleMd5())
+                .set(FileMetadataInfo::getFileSize, target.getFileSize())
+                .set(FileMetadataInfo::getStorageBucket, target.getStorageBucket())
+                .set(FileMetadataInfo::getStoragePath, target.getStoragePath())
+                .set(FileMetadataInfo::getUploadTaskId, target.getUploadTaskId())
+                .set(FileMetadataInfo::getPartNumber, target.getPartNumber())
+                .set(FileMetadataInfo::getPartSize, target.getPartSize())
+                .set(FileMetadataInfo::getIsPreview, target.getIsPreview())
+                .set(FileMetadataInfo::getPackId, target.getPackId())
+                .set(FileMetadataInfo::getPackOffset, target.getPackOffset())
+                .set(FileMetadataInfo::getContentEncoding, target.getContentEncoding())
+                .set(FileMetadataInfo::getOwnerMd5, null)
+                .set(FileMetadataInfo::getVerifyState, 0);
+        metadataMapper.update(null, updateWrapper);
+
+        if (metadata.getFileMd5().equals(target.getFileMd5()) && metadata.getStorageBucket().equals(target.getStorageBucket())
+                && metadata.getStoragePath().equals(target.getStoragePath())) {
+            return;
+        }
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getStorageBucket, metadata.getStorageBucket());
+        queryWrapper.eq(FileMetadataInfo::getStoragePath, metadata.getStoragePath());
+        queryWrapper.eq(FileMetadataInfo::getFileMd5, metadata.getFileMd5());
+        if (metadataMapper.selectCount(queryWrapper) == 0) {
+            // 原文件不再被引用
+            this.removeStoredFile(metadata);
+            if (metadata.getIsPreview() == 1) {
+                minioS3Client.removeObject(StorageBucketEnums.IMAGE_PREVIEW.getCode(), CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5()));
+            }
+        }
+    }
+
+    /**
+     * 查询上传任务的全部分片
+     *
+     * @param bucketName 桶名称
+     * @param objectName 对象名称
+     * @param partCount  分块数量
+     * @param uploadId   上传任务编号
+     * @return 按块号升序的分片列表
+     */
+    private List<ListParts.Part> listAllParts(String bucketName, String objectName, int partCount, String uploadId) {
+        return minioS3Client.listParts(bucketName, objectName, partCount, uploadId).getPartList();
+    }
+
+    /**
+     * 取得已完成的文件元数据
+     *
+     * @param fileKey 文件KEY
+     * @return 文件元数据
+     */
+    private FileMetadataInfo getFinishedMetadataInfo(String fileKey) {
+        FileMetadataInfo metadata = this.getFileMetadataInfo(fileKey);
+        if (Objects.isNull(metadata) || metadata.getIsFinished() != 1) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+        }
+        return metadata;
+    }
+
+    /**
+     * 开启追加上传会话
+     * 适用于上传前无法确定文件长度的场景，如录制中的音视频、生成中的导出文件
+     *
+     * @param fullFileName 文件名（含扩展名）
+     * @param isPrivate    是否私有 0:否 1:是
+     * @return {@link AppendResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AppendResultVo appendOpen(String fullFileName, Integer isPrivate) {
+        String suffix = FileUtil.getSuffix(fullFileName);
+        if (CharSequenceUtil.isBlank(suffix)) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_SUFFIX_GET_FAILED);
+        }
+        this.clearExpiredAppendSessions();
+
+        AppendSessionBO session = new AppendSessionBO();
+        session.setFileKey(IdUtil.fastSimpleUUID());
+        session.setFullFileName(fullFileName);
+        session.setSuffix(suffix);
+        session.setFileMimeType(FileUtil.getMimeType(fullFileName));
+        session.setBucketName(StorageBucketEnums.getBucketByFileSuffix(suffix));
+        session.setStoragePath(CommonUtil.getPathByDate());
+        session.setIsPrivate(isPrivate);
+        // 创建桶
+        minioS3Client.makeBucket(session.getBucketName());
+        // 上传期间以文件KEY作为临时对象名称,提交时替换为md5
+        String objectName = CommonUtil.getObjectName(session.getStoragePath(), session.getFileKey());
+        session.setUploadId(minioS3Client.createMultipartUpload(session.getBucketName(), objectName, session.getFileMimeType()));
+        // 除最后一个分片外不能小于S3协议允许的最小分片
+        session.setPartSize((int) Math.max(properties.getPart().getSize(), CommonConstant.MIN_MULTIPART_SIZE));
+        session.setDigest(SecureUtil.md5().getDigest());
+        session.setLastAccessTime(System.currentTimeMillis());
+        appendSessions.put(session.getFileKey(), session);
+        return this.buildAppendResult(session);
+    }
+
+    /**
+     * 追加数据
+     * 数据写入会话缓冲区，缓冲满一个分片后上传到MinIO，每个会话的内存占用不超过一个分片
+     * 同一会话的追加请求串行处理，读取中断时已读取的字节仍计入会话，前端从返回或报错的已接收长度继续追加
+     *
+     * @param fileKey 文件KEY
+     * @param offset  本次追加的开始位置，不为空时校验与已接收长度一致
+     * @param stream  追加的数据
+     * @return {@link AppendResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AppendResultVo appendPush(String fileKey, Long offset, InputStream stream) {
+        AppendSessionBO session = this.getAppendSession(fileKey);
+        synchronized (session) {
+            this.checkAppendSession(session);
+            if (session.isCompleted()) {
+                // 分片已合并,只能重试提交或取消
+                throw new MinioPlusException(MinioPlusErrorCode.APPEND_SESSION_NOT_FOUND);
+            }
+            if (offset != null && offset != session.getOffset()) {
+                throw new MinioPlusException(MinioPlusErrorCode.APPEND_OFFSET_CHECK_FAILED.getCode(),
+                        MinioPlusErrorCode.APPEND_OFFSET_CHECK_FAILED.getMessage() + ",已接收长度:" + session.getOffset());
+            }
+            session.setLastAccessTime(System.currentTimeMillis());
+            try {
+                while (true) {
+                    if (session.getBuffer() == null) {
+                        session.setBuffer(new byte[session.getPartSize()]);
+                    }
+                    if (session.getBufferLength() == session.getBuffer().length) {
+                        // 缓冲满一个分片,上传到MinIO
+                        this.flushAppendPart(session);
+                        continue;
+                    }
+                    int read = stream.read(session.getBuffer(), session.getBufferLength(), session.getBuffer().length - session.getBufferLength());
+                    if (read == -1) {
+                        break;
+                    }
+                    session.getDigest().update(session.getBuffer(), session.getBufferLength(), read);
+                    session.setBufferLength(session.getBufferLength() + read);
+                    session.setOffset(session.getOffset() + read);
+                }
+            } catch (IOException e) {
+                log.error("{},已接收长度:{}", MinioPlusErrorCode.READ_FAILED.getMessage(), session.getOffset(), e);
+                throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED.getCode(),
+                        MinioPlusErrorCode.READ_FAILED.getMessage() + ",已接收长度:" + session.getOffset());
+            }
+            return this.buildAppendResult(session);
+        }
+    }
+
+    /**
+     * 提交追加上传会话
+     * 上传缓冲区剩余数据作为最后一个分片，合并分片后按md5秒传或转为正式对象，并保存文件元数据
+     * 全部完成后才结束会话，失败时可以重试提交或取消
+     *
+     * @param fileKey 文件KEY
+     * @return {@link FileUploadResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FileUploadResultVo appendCommit(String fileKey) {
+        AppendSessionBO session = this.getAppendSession(fileKey);
+        synchronized (session) {
+            this.checkAppendSession(session);
+            String provisionalObjectName = CommonUtil.getObjectName(session.getStoragePath(), fileKey);
+            if (!session.isCompleted()) {
+                if (session.getBufferLength() > 0 || session.getPartList().isEmpty()) {
+                    this.flushAppendPart(session);
+                }
+                // 已上传的分片记录在会话中,无需查询分片
+                minioS3Client.completeMultipartUpload(session.getBucketName(), provisionalObjectName, session.getUploadId(), session.getPartList());
+                session.setFileMd5(HexUtil.encodeHexStr(session.getDigest().digest()));
+                session.setCompleted(true);
+                session.setBuffer(null);
+            }
+
+            String fileMd5 = session.getFileMd5();
+            List<FileMetadataInfo> finished = this.getMetadataByFileMd5(fileMd5, 1, null);
+            if (CollUtil.isEmpty(finished)) {
+                minioS3Client.copyObject(session.getBucketName(), provisionalObjectName, CommonUtil.getObjectName(session.getStoragePath(), fileMd5));
+            }
+
+            FileMetadataInfo metadataInfo = this.buildMetadataInfoFinished(fileKey, fileMd5, null, session.getFullFileName(), session.getFileMimeType(),
+                    session.getSuffix(), session.getBucketName(), session.getStoragePath(), session.getOffset());
+            if (CollUtil.isNotEmpty(finished)) {
+                // 指向已存在的文件
+                this.copyStorageLocation(metadataInfo, finished.get(0));
+            }
+            // 上传任务id
+            metadataInfo.setUploadTaskId(session.getUploadId());
+            // 是否分块 0:否 1:是
+            metadataInfo.setIsPart(1);
+            // 分片数量
+            metadataInfo.setPartNumber(session.getPartList().size());
+            // 是否私有 0:否 1:是
+            metadataInfo.setIsPrivate(session.getIsPrivate());
+            metadataMapper.insert(metadataInfo);
+            session.setClosed(true);
+            appendSessions.remove(fileKey);
+            try {
+                minioS3Client.removeObject(session.getBucketName(), provisionalObjectName);
+            } catch (MinioPlusException e) {
+                log.warn("追加上传临时对象删除失败,fileKey:{}", fileKey);
+            }
+            log.info("{},追加上传完成,文件长度:{},分片数量:{}", session.getFullFileName(), session.getOffset(), session.getPartList().size());
+
+            FileUploadResultVo fileUploadResultVo = new FileUploadResultVo();
+            fileUploadResultVo.setFileKey(metadataInfo.getFileKey())
+                    .setFileSize(metadataInfo.getFileSize())
+                    .setFileName(metadataInfo.getFileName())
+                    .setStoragePath(metadataInfo.getStoragePath())
+                    .setFileSuffix(metadataInfo.getFileSuffix())
+                    .setFileMimeType(metadataInfo.getFileMimeType());
+            return fileUploadResultVo;
+        }
+    }
+
+    /**
+     * 取消追加上传会话，清理已上传的分片
+     *
+     * @param fileKey 文件KEY
+     * @return 是否成功
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Boolean appendAbort(String fileKey) {
+        AppendSessionBO session = this.getAppendSession(fileKey);
+        synchronized (session) {
+            this.checkAppendSession(session);
+            this.abortAppendSession(session);
+        }
+        return true;
+    }
+
+    /**
+     * 上传会话缓冲区中的数据作为一个分片
+     * 上传失败时缓冲区保持不变，下次追加或提交时重试
+     *
+     * @param session 追加上传会话
+     */
+    private void flushAppendPart(AppendSessionBO session) {
+        int partNumber = session.getPartList().size() + 1;
+        if (partNumber > properties.getPart().getMaxCount()) {
+            throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_NUM_CHECK_FAILED);
+        }
+        String objectName = CommonUtil.getObjectName(session.getStoragePath(), session.getFileKey());
+        int length = session.getBufferLength();
+        String etag = minioS3Client.uploadPartStream(session.getBucketName(), objectName, session.getUploadId(), partNumber,
+                new ByteArrayInputStream(session.getBuffer(), 0, length), length);
+        ListParts.Part part = new ListParts.Part();
+        part.setPartNumber(partNumber);
+        part.setEtag(etag);
+        part.setSize((long) length);
+        session.getPartList().add(part);
+        session.setBufferLength(0);
+        session.setLastAccessTime(System.currentTimeMillis());
+        // 分片数量每增加1000,分片大小翻倍,保证长时间的追加不会超出分片数量上限
+        if (partNumber % 1000 == 0 && (long) session.getPartSize() * 2 <= properties.getPart().getMaxSize()) {
+            session.setPartSize(session.getPartSize() * 2);
+            session.setBuffer(null);
         }
     }
 
-
     /**
-     * 合并已分块的文件
+     * 取得追加上传会话
      *
-     * @param fileKey     文件关键
-     * @param partMd5List 文件分块md5列表
-     * @return {@link Boolean}
+     * @param fileKey 文件KEY
+     * @return 追加上传会话
      */
-    @Override
-    public CompleteResultVo complete(String fileKey, List<String> partMd5List) {
-
-        CompleteResultVo completeResultVo;
-        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(FileMetadataInfo::getFileKey, fileKey);
-        FileMetadataInfo metadata = metadataMapper.selectOne(queryWrapper);
-        if (metadata == null) {
-            log.error(fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
-            throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
+    private AppendSessionBO getAppendSession(String fileKey) {
+        AppendSessionBO session = appendSessions.get(fileKey);
+        if (session == null) {
+            throw new MinioPlusException(MinioPlusErrorCode.APPEND_SESSION_NOT_FOUND);
         }
+        return session;
+    }
 
-        if (metadata.getIsFinished() == 1) {
-            // 如果文件已上传完成，直接返回true，不进行合并
-            completeResultVo = new CompleteResultVo();
-            completeResultVo.setIsComplete(true);
-            return completeResultVo;
+    /**
+     * 校验追加上传会话未结束
+     *
+     * @param session 追加上传会话
+     */
+    private void checkAppendSession(AppendSessionBO session) {
+        if (session.isClosed()) {
+            throw new MinioPlusException(MinioPlusErrorCode.APPEND_SESSION_NOT_FOUND);
         }
+    }
 
-        completeResultVo = this.completeMultipartUpload(metadata, partMd5List);
-
-        if (Boolean.TRUE.equals(completeResultVo.getIsComplete())) {
-            // 更新自己上传的文件元数据状态
-            FileMetadataInfo update = new FileMetadataInfo();
-            update.setId(metadata.getId());
-            //已完成
-            update.setIsFinished(1);
-            metadataMapper.updateById(update);
-
-            // 搜索数据库中所有已分片,且状态时未完成的相同MD5元数据，更新为完成状态
-            List<FileMetadataInfo> others = this.getMetadataByFileMd5(metadata.getFileMd5(), 0, 1);
-            if (CollUtil.isNotEmpty(others)) {
-                for (FileMetadataInfo other : others) {
-                    FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
-                    fileMetadataInfo.setId(other.getId());
-                    //已完成
-                    fileMetadataInfo.setIsFinished(1);
-                    metadataMapper.updateById(fileMetadataInfo);
-                }
-            }
+    /**
+     * 结束追加上传会话并取消分片上传任务，分片已合并时删除合并后的临时对象
+     *
+     * @param session 追加上传会话
+     */
+    private void abortAppendSession(AppendSessionBO session) {
+        session.setClosed(true);
+        session.setBuffer(null);
+        appendSessions.remove(session.getFileKey());
+        String provisionalObjectName = CommonUtil.getObjectName(session.getStoragePath(), session.getFileKey());
+        if (session.isCompleted()) {
+            minioS3Client.removeObject(session.getBucketName(), provisionalObjectName);
         } else {
-            if (!metadata.getUploadTaskId().equals(completeResultVo.getUploadTaskId())) {
-                FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
-                fileMetadataInfo.setId(metadata.getId());
-                fileMetadataInfo.setUploadTaskId(completeResultVo.getUploadTaskId());
-                metadataMapper.updateById(fileMetadataInfo);
-            }
+            minioS3Client.abortMultipartUpload(session.getBucketName(), provisionalObjectName, session.getUploadId());
         }
+    }
 
-        if (CollectionUtils.isNotEmpty(completeResultVo.getPartList())) {
-            for (FileCheckResultVo.Part part : completeResultVo.getPartList()) {
-                part.setUrl(remakeUrl(part.getUrl()));
+    /**
+     * 清理超过上传链接有效期未访问的追加上传会话
+     */
+    private void clearExpiredAppendSessions() {
+        long expireTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getUploadExpiry());
+        for (AppendSessionBO session : appendSessions.values()) {
+            if (session.getLastAccessTime() < expireTime) {
+                synchronized (session) {
+                    if (!session.isClosed() && session.getLastAccessTime() < expireTime) {
+                        try {
+                            this.abortAppendSession(session);
+                        } catch (MinioPlusException e) {
+                            log.warn("追加上传会话清理失败,fileKey:{}", session.getFileKey());
+                        }
+                    }
+                }
             }
         }
-
-        return completeResultVo;
     }
 
+    /**
+     * 构建追加上传结果
+     *
+     * @param session 追加上传会话
+     * @return {@link AppendResultVo}
+     */
+    private AppendResultVo buildAppendResult(AppendSessionBO session) {
+        AppendResultVo resultVo = new AppendResultVo();
+        resultVo.setFileKey(session.getFileKey());
+        resultVo.setOffset(session.getOffset());
+        resultVo.setPartCount(session.getPartList().size());
+        return resultVo;
+    }
 
     /**
      * 取得文件下载地址
@@ -249,6 +2576,10 @@ public class StorageServiceImpl implements StorageService {
             if (Objects.isNull(metadata)) {
                 throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
             }
+            if (this.isServerDownload(metadata)) {
+                // 合并存储和压缩存储的文件由服务端读取
+                return this.getServerDownloadUrl(fileKey);
+            }
             downloadUrl = minioS3Client.getDownloadUrl(metadata.getFileName(), metadata.getFileMimeType(), metadata.getStorageBucket(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
         } catch (Exception e) {
             // 打印日志
@@ -261,24 +2592,120 @@ public class StorageServiceImpl implements StorageService {
 
     /**
      * 取得文件下载流
+     * 1.ETag取文件md5，If-None-Match匹配时返回304
+     * 2.支持单个和多个范围请求，按范围读取MinIO对象或所在容器，多个范围按multipart/byteranges返回
+     * 3.压缩存储的文件在客户端接受该编码时原样返回，范围按压缩后的内容计算；否则解压后返回完整内容，不支持范围请求
      *
      * @param fileKey 文件KEY
-     * @return 地址
+     * @param request 请求
+     * @param response 响应
      */
     @Override
-    public void getDownloadObject(String fileKey, HttpServletResponse response) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void getDownloadObject(String fileKey, HttpServletRequest request, HttpServletResponse response) {
         FileMetadataInfo metadata = getFileMetadataInfo(fileKey);
 
         if (Objects.isNull(metadata)) {
             throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
         }
         try {
-            response.setContentType("application/octet-stream");
-            response.setCharacterEncoding("utf-8");
+            boolean compressed = this.isCompressed(metadata);
+            boolean encoded = compressed && CommonUtil.acceptsEncoding(request.getHeader("Accept-Encoding"), metadata.getContentEncoding());
+            String objectName = CommonUtil.getObjectName(metadata.getStoragePath(), metadata.getFileMd5());
+            long size = encoded ? minioS3Client.getObjectSize(metadata.getStorageBucket(), objectName) : metadata.getFileSize();
+            // 同一文件的不同编码使用不同的ETag
+            String etag = "\"" + metadata.getFileMd5() + (encoded ? "-" + metadata.getContentEncoding() : "") + "\"";
+            String contentType = CharSequenceUtil.isNotBlank(metadata.getFileMimeType()) ? metadata.getFileMimeType() : "application/octet-stream";
+
+            response.setHeader("ETag", etag);
+            if (compressed) {
+                response.setHeader("Vary", "Accept-Encoding");
+            }
+            if (CommonUtil.matchesEtag(request.getHeader("If-None-Match"), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            if (encoded) {
+                // 客户端自行解压
+                response.setHeader("Content-Encoding", metadata.getContentEncoding());
+            }
+            boolean rangeable = !compressed || encoded;
+            response.setHeader("Accept-Ranges", rangeable ? "bytes" : "none");
             String filename = URLEncoder.encode(metadata.getFileName(), "utf-8");
             response.setHeader("Content-Disposition", "attachment;filename=\"" + filename + "\"");
-            minioS3Client.getDownloadObject(metadata.getFileName(), metadata.getStorageBucket(), response);
+
+            // If-Range与ETag不一致时忽略范围,返回完整内容
+            List<long[]> ranges = null;
+            String ifRange = request.getHeader("If-Range");
+            if (rangeable && size > 0 && (ifRange == null || ifRange.equals(etag))) {
+                ranges = CommonUtil.parseRanges(request.getHeader("Range"), size, MAX_RANGE_COUNT);
+            }
+            boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+
+            if (ranges == null) {
+                response.setContentType(contentType);
+                response.setContentLengthLong(size);
+                if (head) {
+                    return;
+                }
+                if (rangeable && size > 0) {
+                    this.copyObjectRange(metadata, 0, size, response.getOutputStream());
+                    return;
+                }
+                try (InputStream inputStream = this.getObjectStream(metadata)) {
+                    IoUtil.copy(inputStream, response.getOutputStream(), DOWNLOAD_BUFFER_SIZE);
+                }
+                return;
+            }
+            if (ranges.isEmpty()) {
+                response.setHeader("Content-Range", "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            if (ranges.size() == 1) {
+                long[] range = ranges.get(0);
+                response.setContentType(contentType);
+                response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+                response.setContentLengthLong(range[1] - range[0] + 1);
+                if (head) {
+                    return;
+                }
+                this.copyObjectRange(metadata, range[0], range[1] - range[0] + 1, response.getOutputStream());
+                return;
+            }
+
+            // 多个范围按multipart/byteranges返回,先计算总长度
+            String boundary = IdUtil.fastSimpleUUID();
+            List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+            long contentLength = 0;
+            for (long[] range : ranges) {
+                byte[] partHeader = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                        + "\r\nContent-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                partHeaders.add(partHeader);
+                contentLength += partHeader.length + range[1] - range[0] + 1;
+            }
+            byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            contentLength += closeDelimiter.length;
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            response.setContentLengthLong(contentLength);
+            if (head) {
+                return;
+            }
+            OutputStream outputStream = response.getOutputStream();
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                outputStream.write(partHeaders.get(i));
+                this.copyObjectRange(metadata, range[0], range[1] - range[0] + 1, outputStream);
+            }
+            outputStream.write(closeDelimiter);
         } catch (Exception e) {
+            if (ExceptionUtil.isCausedBy(e, ClientAbortException.class)) {
+                // 客户端断开连接,响应已提交,不再返回错误
+                log.debug("文件下载客户端已断开,fileKey:{}", fileKey);
+                return;
+            }
             // 打印日志
             log.error(e.getMessage(), e);
             // 任何异常，统一返回给前端文件不存在
@@ -297,6 +2724,10 @@ public class StorageServiceImpl implements StorageService {
             if (Objects.isNull(metadata)) {
                 throw new MinioPlusException(MinioPlusErrorCode.FILE_EXIST_FAILED.getCode(), fileKey + MinioPlusErrorCode.FILE_EXIST_FAILED.getMessage());
             }
+            if (this.isServerDownload(metadata)) {
+                // 合并存储和压缩存储的文件由服务端读取
+                return this.getServerDownloadUrl(fileKey);
+            }
 
             previewUrl = minioS3Client.getPreviewUrl(metadata.getFileMimeType(), metadata.getStorageBucket(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
         } catch (Exception e) {
@@ -349,7 +2780,7 @@ public class StorageServiceImpl implements StorageService {
             // 删除元数据信息
             metadataMapper.deleteById(metadata.getId());
             //删除minio物理文件
-            minioS3Client.removeObject(metadata.getStorageBucket(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
+            this.removeStoredFile(metadata);
             if (metadata.getIsPreview() == 1) {
                 // 当存在缩略图时，同步删除缩略图
                 minioS3Client.removeObject(StorageBucketEnums.IMAGE_PREVIEW.getCode(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
@@ -359,74 +2790,292 @@ public class StorageServiceImpl implements StorageService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public FileUploadResultVo uploadFile(MultipartFile file) {
-        FileUploadResultVo fileUploadResultVo = new FileUploadResultVo();
-        String originalFilename = file.getOriginalFilename();
-        String suffix = FileUtil.getSuffix(originalFilename);
+        try (InputStream fileInputStream = file.getInputStream()) {
+            return this.uploadStream(file.getOriginalFilename(), fileInputStream, file.getSize());
+        } catch (IOException e) {
+            log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+            throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+        }
+    }
+
+    /**
+     * 批量上传文件(小文件不分片)
+     * <p>
+     * 1.各文件在存储任务线程池中并发读取，边计算md5边写入临时对象，合并存储的小文件读入内存
+     * 2.一次查询所有md5已完成的文件，md5相同的文件只写入一次
+     * 3.元数据一次批量插入
+     * 任一文件读取失败时清理已写入的临时对象，整批上传失败
+     *
+     * @param files 上传的文件
+     * @return 与上传顺序一致的上传结果
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<FileUploadResultVo> batchUploadFile(List<MultipartFile> files) {
+        if (CollUtil.isEmpty(files)) {
+            return new ArrayList<>(0);
+        }
+        if (files.size() > properties.getBatch().getMaxSize()) {
+            throw new MinioPlusException(MinioPlusErrorCode.BATCH_SIZE_CHECK_FAILED);
+        }
+        for (MultipartFile file : files) {
+            if (CharSequenceUtil.isBlank(FileUtil.getSuffix(file.getOriginalFilename()))) {
+                throw new MinioPlusException(MinioPlusErrorCode.FILE_SUFFIX_GET_FAILED);
+            }
+        }
+
+        List<CompletableFuture<StagedUploadBO>> stageTasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            stageTasks.add(CompletableFuture.supplyAsync(() -> {
+                try (InputStream fileInputStream = file.getInputStream()) {
+                    return this.stageUpload(file.getOriginalFilename(), fileInputStream, file.getSize());
+                } catch (IOException e) {
+                    log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+                    throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+                }
+            }, storageTaskExecutor));
+        }
+        List<StagedUploadBO> stagedList = new ArrayList<>(files.size());
+        MinioPlusException error = null;
+        for (CompletableFuture<StagedUploadBO> task : stageTasks) {
+            try {
+                stagedList.add(this.joinTask(task, MinioPlusErrorCode.WRITE_FAILED));
+            } catch (MinioPlusException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            this.removeTempObjects(stagedList);
+            throw error;
+        }
+        return this.saveStagedUploads(stagedList);
+    }
+
+    /**
+     * 流式上传文件(小文件不分片)
+     * <p>
+     * 1.文件流边计算md5边写入MinIO临时对象，整个过程只读取一次，内存占用为固定大小的缓冲区
+     * 2.md5已存在且已完成，删除临时对象，新增元数据指向已存在的文件
+     * 3.md5不存在，将临时对象在服务端复制到正式位置后删除临时对象
+     * 上传耗时与文件大小相关，不开启事务，避免长时间占用数据库连接
+     *
+     * @param fullFileName 文件名（含扩展名）
+     * @param stream       文件流
+     * @param fileSize     文件长度，未知时传-1
+     * @return {@link FileUploadResultVo}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public FileUploadResultVo uploadStream(String fullFileName, InputStream stream, long fileSize) {
+        StagedUploadBO staged = this.stageUpload(fullFileName, stream, fileSize);
+        return this.saveStagedUploads(Collections.singletonList(staged)).get(0);
+    }
+
+    /**
+     * 读取上传文件
+     * 边读取边计算md5和抽样md5，写入临时对象；合并存储的小文件读入内存，由保存时写入容器
+     *
+     * @param fullFileName 文件名（含扩展名）
+     * @param stream       文件流
+     * @param fileSize     文件长度，未知时传-1
+     * @return {@link StagedUploadBO}
+     */
+    private StagedUploadBO stageUpload(String fullFileName, InputStream stream, long fileSize) {
+        String suffix = FileUtil.getSuffix(fullFileName);
         if (CharSequenceUtil.isBlank(suffix)) {
             throw new MinioPlusException(MinioPlusErrorCode.FILE_SUFFIX_GET_FAILED);
         }
 
+        StagedUploadBO staged = new StagedUploadBO();
         // 文件key
-        String fileKey = IdUtil.fastSimpleUUID();
+        staged.setFileKey(IdUtil.fastSimpleUUID());
+        staged.setFullFileName(fullFileName);
+        staged.setSuffix(suffix);
         //存储路径
-        String storagePath = CommonUtil.getPathByDate();
+        staged.setStoragePath(CommonUtil.getPathByDate());
         // MIME类型
-        String fileMimeType = FileUtil.getMimeType(originalFilename);
+        staged.setFileMimeType(FileUtil.getMimeType(fullFileName));
         // 存储桶
         String bucketName = StorageBucketEnums.getBucketByFileSuffix(suffix);
+        staged.setBucketName(bucketName);
         // 创建桶
         minioS3Client.makeBucket(bucketName);
 
-        long fileSize = file.getSize();
+        MessageDigest sampleDigest = null;
+        if (fileSize >= 0) {
+            // 文件长度未知时无法确定抽样范围
+            sampleDigest = SecureUtil.md5().getDigest();
+            stream = new SampleDigestInputStream(stream, CommonUtil.getSampleRanges(fileSize, properties.getPart().getSampleSize()), sampleDigest);
+        }
+        if (smallFilePackService.isPackable(bucketName, fileSize)) {
+            // 小文件读入内存
+            byte[] content;
+            try {
+                content = IoUtil.readBytes(stream, false);
+            } catch (IORuntimeException e) {
+                log.error(MinioPlusErrorCode.READ_FAILED.getMessage(), e);
+                throw new MinioPlusException(MinioPlusErrorCode.READ_FAILED);
+            }
+            staged.setContent(content);
+            staged.setFileMd5(SecureUtil.md5().digestHex(content));
+            staged.setSampleMd5(HexUtil.encodeHexStr(sampleDigest.digest()));
+            staged.setFileSize(content.length);
+            return staged;
+        }
+
+        //边上传边计算md5和抽样md5,先写入临时对象
+        String tempObjectName = CommonConstant.TEMP_PATH + "/" + staged.getFileKey();
+        MessageDigest messageDigest = SecureUtil.md5().getDigest();
+        CountingInputStream countingStream = new CountingInputStream(new DigestInputStream(stream, messageDigest));
+        Deflater deflater = null;
+        try {
+            if (this.isCompressible(bucketName, suffix, fileSize)) {
+                // md5和长度按原始内容计算，压缩后的长度未知
+                deflater = new Deflater(properties.getCompress().getLevel());
+                minioS3Client.putObjectStream(bucketName, tempObjectName, new DeflaterInputStream(countingStream, deflater), -1,
+                        staged.getFileMimeType(), CommonConstant.CONTENT_ENCODING_DEFLATE);
+                staged.setContentEncoding(CommonConstant.CONTENT_ENCODING_DEFLATE);
+            } else {
+                minioS3Client.putObjectStream(bucketName, tempObjectName, countingStream, fileSize, staged.getFileMimeType());
+            }
+        } catch (MinioPlusException e) {
+            // 清理可能残留的临时对象
+            minioS3Client.removeObject(bucketName, tempObjectName);
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        staged.setTempObjectName(tempObjectName);
+        staged.setFileMd5(HexUtil.encodeHexStr(messageDigest.digest()));
+        staged.setSampleMd5(sampleDigest == null ? null : HexUtil.encodeHexStr(sampleDigest.digest()));
+        staged.setFileSize(countingStream.getCount());
+        log.info("{},文件写入临时对象成功,md5:{}", fullFileName, staged.getFileMd5());
+        return staged;
+    }
 
-        InputStream fileInputStream = null;
+    /**
+     * 保存已读取的上传文件
+     * 1.一次查询所有md5已完成的不分片文件，已存在的文件新增元数据指向已存在的文件
+     * 2.md5不存在的文件并发写入正式位置，md5相同的文件只写入一次
+     * 3.批量插入元数据，同一md5下未完成的不分片元数据改为已完成
+     *
+     * @param stagedList 已读取的上传文件
+     * @return 与清单顺序一致的上传结果
+     */
+    private List<FileUploadResultVo> saveStagedUploads(List<StagedUploadBO> stagedList) {
         try {
-            String fileMd5 = SecureUtil.md5().digestHex(file.getBytes());
-            //1,查询是否有相同的md5是已完成的,有则只新插一条元数据信息,不往minio上传了
+            Set<String> md5Set = stagedList.stream().map(StagedUploadBO::getFileMd5).collect(Collectors.toSet());
             //根据fileMd5查询不分片且状态是已完成状态的元数据
-            List<FileMetadataInfo> list = this.getMetadataByFileMd5(fileMd5, 1, 0);
-            if (CollectionUtils.isEmpty(list)) {
-                //没有上传过,重新将文件上传minio
-                fileInputStream = file.getInputStream();
-                String objectName = CommonUtil.getObjectName(fileMd5);
-                Boolean isSuccess = minioS3Client.putObject(bucketName, objectName, fileInputStream, fileSize, fileMimeType);
-                log.info("{},文件上传minio成功!", originalFilename);
-                if (!isSuccess) {
-                    //上传minio失败,抛出异常
-                    throw new MinioPlusException(MinioPlusErrorCode.FILE_UPLOAD_FAILED);
+            Map<String, FileMetadataInfo> finishedMap = new HashMap<>();
+            for (FileMetadataInfo metadataInfo : this.getMetadataByFileMd5List(md5Set)) {
+                if (metadataInfo.getIsFinished() == 1 && metadataInfo.getIsPart() == 0) {
+                    finishedMap.putIfAbsent(metadataInfo.getFileMd5(), metadataInfo);
                 }
             }
-            //新增一条元数据,状态为已完成
-            FileMetadataInfo metadataInfoFinished = this.createMetadataInfoFinished(fileKey, fileMd5, originalFilename, fileMimeType, suffix, bucketName, storagePath, fileSize);
+
+            // 没有上传过的文件写入正式位置,key为md5,单个文件在调用线程中写入
+            Executor executor = stagedList.size() > 1 ? storageTaskExecutor : Runnable::run;
+            Map<String, CompletableFuture<FileMetadataInfo>> storeTasks = new HashMap<>();
+            for (StagedUploadBO staged : stagedList) {
+                if (!finishedMap.containsKey(staged.getFileMd5())) {
+                    storeTasks.computeIfAbsent(staged.getFileMd5(), md5 -> CompletableFuture.supplyAsync(() -> this.storeStagedUpload(staged), executor));
+                }
+            }
+
+            List<FileMetadataInfo> insertList = new ArrayList<>(stagedList.size());
+            for (StagedUploadBO staged : stagedList) {
+                FileMetadataInfo location = finishedMap.get(staged.getFileMd5());
+                if (location == null) {
+                    location = this.joinTask(storeTasks.get(staged.getFileMd5()), MinioPlusErrorCode.WRITE_FAILED);
+                }
+                FileMetadataInfo metadataInfo = this.buildMetadataInfoFinished(staged.getFileKey(), staged.getFileMd5(), staged.getSampleMd5(), staged.getFullFileName(),
+                        staged.getFileMimeType(), staged.getSuffix(), staged.getBucketName(), staged.getStoragePath(), staged.getFileSize());
+                // 指向已存在或刚写入的文件
+                this.copyStorageLocation(metadataInfo, location);
+                insertList.add(metadataInfo);
+            }
+
+            //新增元数据,状态为已完成
+            for (List<FileMetadataInfo> batch : CollUtil.split(insertList, 1000)) {
+                metadataMapper.insertBatch(batch);
+            }
             //更新同一个fileMd5下的其他不分片,未完成状态的元数据 isFinished状态改为已完成
-            List<FileMetadataInfo> metadataList = this.getMetadataByFileMd5(fileMd5, 0, 0);
-            metadataList.forEach(a -> {
-                FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
-                fileMetadataInfo.setId(a.getId());
-                //已完成
-                fileMetadataInfo.setIsFinished(1);
-                metadataMapper.updateById(fileMetadataInfo);
-            });
+            for (List<String> md5List : CollUtil.split(md5Set, 1000)) {
+                LambdaUpdateWrapper<FileMetadataInfo> updateWrapper = new LambdaUpdateWrapper<>();
+                updateWrapper.in(FileMetadataInfo::getFileMd5, md5List)
+                        .eq(FileMetadataInfo::getIsFinished, 0)
+                        .eq(FileMetadataInfo::getIsPart, 0)
+                        .set(FileMetadataInfo::getIsFinished, 1);
+                metadataMapper.update(null, updateWrapper);
+            }
+            if (stagedList.size() > 1) {
+                log.info("批量上传{}个文件,新写入{}个", stagedList.size(), storeTasks.size());
+            }
+
             //构建返回给前端的对象
-            fileUploadResultVo.setFileKey(metadataInfoFinished.getFileKey())
-                    .setFileSize(metadataInfoFinished.getFileSize())
-                    .setFileName(metadataInfoFinished.getFileName())
-                    .setStoragePath(metadataInfoFinished.getStoragePath())
-                    .setFileSuffix(metadataInfoFinished.getFileSuffix())
-                    .setFileMimeType(metadataInfoFinished.getFileMimeType());
-        } catch (IOException e) {
-            e.printStackTrace();
+            return insertList.stream().map(metadataInfoFinished -> {
+                FileUploadResultVo fileUploadResultVo = new FileUploadResultVo();
+                fileUploadResultVo.setFileKey(metadataInfoFinished.getFileKey())
+                        .setFileSize(metadataInfoFinished.getFileSize())
+                        .setFileName(metadataInfoFinished.getFileName())
+                        .setStoragePath(metadataInfoFinished.getStoragePath())
+                        .setFileSuffix(metadataInfoFinished.getFileSuffix())
+                        .setFileMimeType(metadataInfoFinished.getFileMimeType());
+                return fileUploadResultVo;
+            }).collect(Collectors.toList());
         } finally {
-            if (fileInputStream != null) {
+            // 临时对象已复制或文件已存在,丢弃临时对象
+            this.removeTempObjects(stagedList);
+        }
+    }
+
+    /**
+     * 将已读取的文件写入正式位置
+     * 合并存储的文件写入容器，其余文件将临时对象在服务端复制到正式位置
+     *
+     * @param staged 已读取的上传文件
+     * @return 存储位置
+     */
+    private FileMetadataInfo storeStagedUpload(StagedUploadBO staged) {
+        FileMetadataInfo location = new FileMetadataInfo();
+        location.setStorageBucket(staged.getBucketName());
+        location.setStoragePath(staged.getStoragePath());
+        if (staged.getContent() != null) {
+            PackEntryBO packEntry = smallFilePackService.pack(staged.getBucketName(), staged.getContent());
+            location.setPackId(packEntry.getPackId());
+            location.setPackOffset(packEntry.getOffset());
+            log.info("{},文件写入容器成功,容器:{}", staged.getFullFileName(), packEntry.getPackId());
+        } else {
+            //没有上传过,将临时对象转为正式对象,对象的内容编码随复制保留
+            location.setContentEncoding(staged.getContentEncoding());
+            minioS3Client.copyObject(staged.getBucketName(), staged.getTempObjectName(), CommonUtil.getObjectName(staged.getStoragePath(), staged.getFileMd5()));
+            log.info("{},文件上传minio成功!", staged.getFullFileName());
+        }
+        return location;
+    }
+
+    /**
+     * 删除临时对象
+     *
+     * @param stagedList 已读取的上传文件
+     */
+    private void removeTempObjects(List<StagedUploadBO> stagedList) {
+        for (StagedUploadBO staged : stagedList) {
+            if (staged.getTempObjectName() != null) {
                 try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    minioS3Client.removeObject(staged.getBucketName(), staged.getTempObjectName());
+                } catch (MinioPlusException e) {
+                    // 临时对象由过期规则清理
+                    log.warn("临时对象删除失败:{}", staged.getTempObjectName());
                 }
             }
         }
-        return fileUploadResultVo;
     }
 
     /**
@@ -509,7 +3158,7 @@ public class StorageServiceImpl implements StorageService {
         queryWrapper.eq(FileMetadataInfo::getFileKey, metadata.getFileKey());
         metadataMapper.delete(queryWrapper);
         //删除minio物理文件
-        minioS3Client.removeObject(metadata.getStorageBucket(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
+        this.removeStoredFile(metadata);
         if (metadata.getIsPreview() == 1) {
             // 当存在缩略图时，同步删除缩略图
             minioS3Client.removeObject(StorageBucketEnums.IMAGE_PREVIEW.getCode(), metadata.getStoragePath() + "/" + metadata.getFileMd5());
@@ -528,7 +3177,16 @@ public class StorageServiceImpl implements StorageService {
     /**
      * 插入文件元数据,状态为已完成
      */
-    public FileMetadataInfo createMetadataInfoFinished(String fileKey, String fileMd5, String originalFilename, String fileMimeType, String suffix, String bucketName, String storagePath, Long fileSize) {
+    public FileMetadataInfo createMetadataInfoFinished(String fileKey, String fileMd5, String sampleMd5, String originalFilename, String fileMimeType, String suffix, String bucketName, String storagePath, Long fileSize) {
+        FileMetadataInfo fileMetadataInfo = this.buildMetadataInfoFinished(fileKey, fileMd5, sampleMd5, originalFilename, fileMimeType, suffix, bucketName, storagePath, fileSize);
+        metadataMapper.insert(fileMetadataInfo);
+        return fileMetadataInfo;
+    }
+
+    /**
+     * 构建文件元数据,状态为已完成
+     */
+    private FileMetadataInfo buildMetadataInfoFinished(String fileKey, String fileMd5, String sampleMd5, String originalFilename, String fileMimeType, String suffix, String bucketName, String storagePath, Long fileSize) {
         //保存原数据信息
         FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
         // 保存文件元数据
@@ -536,6 +3194,8 @@ public class StorageServiceImpl implements StorageService {
         fileMetadataInfo.setFileKey(fileKey);
         // 文件md5
         fileMetadataInfo.setFileMd5(fileMd5);
+        // 抽样md5
+        fileMetadataInfo.setSampleMd5(sampleMd5);
         // 文件名
         fileMetadataInfo.setFileName(originalFilename);
         // MIME类型
@@ -560,7 +3220,6 @@ public class StorageServiceImpl implements StorageService {
         fileMetadataInfo.setIsPreview(0);
         // 是否私有 0:否 1:是
         fileMetadataInfo.setIsPrivate(0);
-        metadataMapper.insert(fileMetadataInfo);
         return fileMetadataInfo;
     }
 
@@ -575,27 +3234,13 @@ public class StorageServiceImpl implements StorageService {
         CreateUploadUrlRespBO result = new CreateUploadUrlRespBO();
         result.setParts(new ArrayList<>());
         result.setPartCount(fileMetadataVo.getPartNumber());
+        result.setPartSize(this.getPartSize(fileMetadataVo));
 
         // 分块数量
         Integer chunkNum = fileMetadataVo.getPartNumber();
-        // 获取分块信息
-        ListParts listParts = this.getListParts(fileMetadataVo);
-        List<ListParts.Part> parts = listParts.getPartList();
-        if (!chunkNum.equals(parts.size())) {
-            // 找到丢失的片
-            boolean[] exists = new boolean[chunkNum + 1];
-            // 遍历数组，标记存在的块号
-            for (ListParts.Part item : parts) {
-                int partNumber = item.getPartNumber();
-                exists[partNumber] = true;
-            }
-            // 查找丢失的块号
-            List<Integer> missingNumbers = new ArrayList<>();
-            for (int i = 1; i <= chunkNum; i++) {
-                if (!exists[i]) {
-                    missingNumbers.add(i);
-                }
-            }
+        // 找到丢失的片
+        List<Integer> missingNumbers = this.findMissingParts(fileMetadataVo);
+        if (!missingNumbers.isEmpty()) {
             CreateUploadUrlReqBO bo = new CreateUploadUrlReqBO();
             // 文件md5
             bo.setFileMd5(fileMetadataVo.getFileMd5());
@@ -608,12 +3253,15 @@ public class StorageServiceImpl implements StorageService {
             // 丢失的块号-断点续传时必传
             bo.setMissPartNum(missingNumbers);
 
-            if (missingNumbers.size() != chunkNum) {
+            if (missingNumbers.size() != chunkNum || this.isRecentUpload(fileMetadataVo)) {
                 //minio中分片一个都没上传成功,原本的uploadId会失效,如果有上传成功的分片,则继续使用之前的uploadId
+                //链接有效期内创建的上传任务未失效,继续使用,并发初始化的调用方共用同一个上传任务
                 // minio中分片信息为空的话,会出现任务id失效的情况，此时createUploadUrl()会重新创建新的任务产生新的uploadId
                 bo.setUploadId(fileMetadataVo.getUploadTaskId());
             }
 
+            // 分块大小
+            bo.setPartSize(this.getPartSize(fileMetadataVo));
             // 存储桶
             bo.setStorageBucket(fileMetadataVo.getStorageBucket());
             // 存储路径
@@ -635,15 +3283,18 @@ public class StorageServiceImpl implements StorageService {
      * @param objectName 对象名称（含路径）
      * @param uploadId   上传任务编号
      * @param fileSize   文件大小
-     * @param start      开始位置
+     * @param partSize   分块大小
      * @param partNumber 块号
      * @return {@link FileCheckResultVo.Part}
      */
-    private FileCheckResultVo.Part buildResultPart(String bucketName, String objectName, String uploadId, Long fileSize, long start, Integer partNumber) {
+    private FileCheckResultVo.Part buildResultPart(String bucketName, String objectName, String uploadId, Long fileSize, Integer partSize, Integer partNumber) {
         // 计算起始位置
-        long end = Math.min(start + properties.getPart().getSize(), fileSize);
+        long start = (long) (partNumber - 1) * partSize;
+        long end = Math.min(start + partSize, fileSize);
         String uploadUrl = minioS3Client.getUploadObjectUrl(bucketName, objectName, uploadId, String.valueOf(partNumber));
         FileCheckResultVo.Part part = new FileCheckResultVo.Part();
+        // 分块序号
+        part.setPartNumber(partNumber);
         part.setUploadId(uploadId);
         // 上传地址
         part.setUrl(uploadUrl);
@@ -654,16 +3305,34 @@ public class StorageServiceImpl implements StorageService {
         return part;
     }
 
+    /**
+     * 计算本批次下发链接的结束块号
+     * 窗口大小为0时一次性下发到最后一块
+     *
+     * @param startPartNumber 本批次起始块号
+     * @param chunkNum        分块数量
+     * @return 本批次结束块号（含）
+     */
+    private int computeWindowEnd(int startPartNumber, int chunkNum) {
+        int window = properties.getPart().getUrlWindow();
+        if (window <= 0) {
+            return chunkNum;
+        }
+        return (int) Math.min((long) startPartNumber + window - 1, chunkNum);
+    }
 
     /**
      * 创建上传链接
+     * 开启链接窗口时只下发首批分块链接，其余分块链接通过{@link #nextParts(String, Integer)}按需获取
      *
      * @param bo 创建上传url
      * @return 创建上传链接请求参数
      */
     public CreateUploadUrlRespBO createUploadUrl(CreateUploadUrlReqBO bo) {
+        // 分块大小，断点续传时沿用元数据中记录的分块大小，避免配置变更导致偏移量错乱
+        int partSize = bo.getPartSize() != null ? bo.getPartSize() : this.computePartSize(bo.getFileSize());
         // 计算分块数量
-        Integer chunkNum = this.computeChunkNum(bo.getFileSize());
+        Integer chunkNum = this.computeChunkNum(bo.getFileSize(), partSize);
         // 分块信息集合
         List<FileCheckResultVo.Part> partList = new ArrayList<>();
         // 存储桶
@@ -674,6 +3343,8 @@ public class StorageServiceImpl implements StorageService {
         String fileKey;
         // 上传任务编号
         String uploadId;
+        // 本批次结束块号
+        int windowEnd;
         // 断点续传
         if (Boolean.TRUE.equals(bo.getIsSequel()) && CollUtil.isNotEmpty(bo.getMissPartNum()) && CharSequenceUtil.isNotBlank(bo.getUploadId())) {
             // 断点续传需要使用已创建的任务信息构建分片信息
@@ -684,13 +3355,14 @@ public class StorageServiceImpl implements StorageService {
 
             storagePath = bo.getStoragePath();
             uploadId = bo.getUploadId();
-            // 开始位置
-            long start = (long) (bo.getMissPartNum().get(0) - 1) * properties.getPart().getSize();
+            String objectName = CommonUtil.getObjectName(storagePath, bo.getFileMd5());
+            // 窗口从第一个丢失的块号开始
+            windowEnd = this.computeWindowEnd(bo.getMissPartNum().get(0), chunkNum);
             for (int partNumber : bo.getMissPartNum()) {
-                FileCheckResultVo.Part part = this.buildResultPart(bucketName, CommonUtil.getObjectName(bo.getFileMd5()), uploadId, bo.getFileSize(), start, partNumber);
-                // 更改下一次的开始位置
-                start = start + properties.getPart().getSize();
-                partList.add(part);
+                if (partNumber > windowEnd) {
+                    break;
+                }
+                partList.add(this.buildResultPart(bucketName, objectName, uploadId, bo.getFileSize(), partSize, partNumber));
             }
         } else {
             // 获取文件后缀
@@ -698,10 +3370,10 @@ public class StorageServiceImpl implements StorageService {
             if (CharSequenceUtil.isBlank(suffix)) {
                 throw new MinioPlusException(MinioPlusErrorCode.FILE_SUFFIX_GET_FAILED);
             }
-            // 文件key
-            fileKey = IdUtil.fastSimpleUUID();
+            // 文件key，原上传任务失效重新创建时沿用原文件key和存储路径
+            fileKey = CharSequenceUtil.isNotBlank(bo.getFileKey()) ? bo.getFileKey() : IdUtil.fastSimpleUUID();
             // 存储路径
-            storagePath = CommonUtil.getPathByDate();
+            storagePath = CharSequenceUtil.isNotBlank(bo.getStoragePath()) ? bo.getStoragePath() : CommonUtil.getPathByDate();
             // MIME类型
             String fileMimeType = FileUtil.getMimeType(bo.getFullFileName());
 
@@ -710,14 +3382,12 @@ public class StorageServiceImpl implements StorageService {
             // 创建桶
             minioS3Client.makeBucket(bucketName);
 
+            String objectName = CommonUtil.getObjectName(storagePath, bo.getFileMd5());
             // 创建分片请求,获取uploadId
-            uploadId = minioS3Client.createMultipartUpload(bucketName, CommonUtil.getObjectName(bo.getFileMd5()), fileMimeType);
-            long start = 0;
-            for (Integer partNumber = 1; partNumber <= chunkNum; partNumber++) {
-                FileCheckResultVo.Part part = this.buildResultPart(bucketName, CommonUtil.getObjectName(bo.getFileMd5()), uploadId, bo.getFileSize(), start, partNumber);
-                // 更改下一次的开始位置
-                start = start + properties.getPart().getSize();
-                partList.add(part);
+            uploadId = minioS3Client.createMultipartUpload(bucketName, objectName, fileMimeType);
+            windowEnd = this.computeWindowEnd(1, chunkNum);
+            for (int partNumber = 1; partNumber <= windowEnd; partNumber++) {
+                partList.add(this.buildResultPart(bucketName, objectName, uploadId, bo.getFileSize(), partSize, partNumber));
             }
         }
         CreateUploadUrlRespBO respBO = new CreateUploadUrlRespBO();
@@ -729,10 +3399,14 @@ public class StorageServiceImpl implements StorageService {
         respBO.setFileKey(fileKey);
         // 分块数量-可选,分片后必须重新赋值 默认1
         respBO.setPartCount(chunkNum);
+        // 分块大小
+        respBO.setPartSize(partSize);
         // 切片上传任务id
         respBO.setUploadTaskId(uploadId);
         // 分片信息-必填
         respBO.setParts(partList);
+        // 下一批分片链接的起始块号
+        respBO.setNextPartNumber(windowEnd < chunkNum ? windowEnd + 1 : null);
         return respBO;
     }
 
@@ -743,24 +3417,84 @@ public class StorageServiceImpl implements StorageService {
      * @return {@link Integer}
      */
     public Integer computeChunkNum(Long fileSize) {
+        return this.computeChunkNum(fileSize, this.computePartSize(fileSize));
+    }
+
+    /**
+     * 计算分块的数量
+     *
+     * @param fileSize 文件大小
+     * @param partSize 分块大小
+     * @return {@link Integer}
+     */
+    public Integer computeChunkNum(Long fileSize, int partSize) {
         // 计算分块数量
-        double tempNum = (double) fileSize / properties.getPart().getSize();
+        double tempNum = (double) fileSize / partSize;
         // 向上取整
         return ((Double) Math.ceil(tempNum)).intValue();
     }
 
     /**
-     * 保存文件源信息
+     * 按文件大小计算分块大小
+     * 1.不小于配置的最小分块大小
+     * 2.配置了目标吞吐量时，分块大小约为单个分块期望上传耗时内可传输的字节数，不超过最大分块大小
+     * 3.分块数量不超过最大分块数量，该约束优先于最大分块大小
+     * 结果向上取整为最小分块大小的整数倍
+     *
+     * @param fileSize 文件大小
+     * @return 分块大小
+     */
+    public int computePartSize(long fileSize) {
+        return this.computePartSize(fileSize, properties.getPart().getTargetThroughput());
+    }
+
+    /**
+     * 按文件大小和单个并发的吞吐量计算分块大小
+     *
+     * @param fileSize   文件大小
+     * @param throughput 单个并发的吞吐量，单位为byte/秒，0表示不按吞吐量调整
+     * @return 分块大小
+     */
+    public int computePartSize(long fileSize, long throughput) {
+        MinioPlusProperties.Part part = properties.getPart();
+        long minSize = part.getSize();
+        long partSize = minSize;
+        if (throughput > 0) {
+            partSize = Math.max(partSize, throughput * part.getTargetPartSeconds());
+        }
+        partSize = Math.min(partSize, Math.max(minSize, part.getMaxSize()));
+        // 分块数量上限
+        long countLimited = (fileSize + part.getMaxCount() - 1) / part.getMaxCount();
+        partSize = Math.max(partSize, countLimited);
+        // 对齐为最小分块大小的整数倍
+        partSize = (partSize + minSize - 1) / minSize * minSize;
+        return (int) Math.min(partSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 取得元数据记录的分块大小
+     * 历史数据未记录分块大小时使用配置的分块大小
+     *
+     * @param metadataInfo 文件元数据信息
+     * @return 分块大小
+     */
+    private int getPartSize(FileMetadataInfo metadataInfo) {
+        return metadataInfo.getPartSize() != null ? metadataInfo.getPartSize() : properties.getPart().getSize();
+    }
+
+    /**
+     * 构建上传中的文件元数据
      *
      * @param createUploadUrlRespBO 上传链接参数
      * @param fileMd5               文件md5
+     * @param sampleMd5             抽样md5
      * @param fullFileName          文件名（含扩展名）
      * @param fileSize              文件长度
      * @param isPrivate             是否私有 0:否 1:是
-     * @return {@link FileMetadataInfoVo}
+     * @return {@link FileMetadataInfo}
      */
-    private FileMetadataInfo saveMetadataInfo(CreateUploadUrlRespBO createUploadUrlRespBO,
-                                              String fileMd5, String fullFileName, long fileSize, Integer isPrivate) {
+    private FileMetadataInfo buildMetadataInfo(CreateUploadUrlRespBO createUploadUrlRespBO,
+                                               String fileMd5, String sampleMd5, String fullFileName, long fileSize, Integer isPrivate) {
         FileMetadataInfo fileMetadataInfo = new FileMetadataInfo();
         // 保存文件元数据
         String suffix = FileUtil.getSuffix(fullFileName);
@@ -768,6 +3502,8 @@ public class StorageServiceImpl implements StorageService {
         fileMetadataInfo.setFileKey(createUploadUrlRespBO.getFileKey());
         // 文件md5
         fileMetadataInfo.setFileMd5(fileMd5);
+        // 抽样md5
+        fileMetadataInfo.setSampleMd5(sampleMd5);
         // 文件名
         fileMetadataInfo.setFileName(fullFileName);
         // MIME类型
@@ -788,11 +3524,12 @@ public class StorageServiceImpl implements StorageService {
         fileMetadataInfo.setIsPart(createUploadUrlRespBO.getPartCount() > 1 ? 1 : 0);
         // 分片数量
         fileMetadataInfo.setPartNumber(createUploadUrlRespBO.getPartCount());
+        // 分块大小
+        fileMetadataInfo.setPartSize(createUploadUrlRespBO.getPartSize());
         // 预览图 0:无 1:有
         fileMetadataInfo.setIsPreview(0);
         // 是否私有 0:否 1:是
         fileMetadataInfo.setIsPrivate(isPrivate);
-        metadataMapper.insert(fileMetadataInfo);
         return fileMetadataInfo;
     }
 
@@ -804,9 +3541,10 @@ public class StorageServiceImpl implements StorageService {
      * @param partList     块信息
      * @param partCount    块数量
      * @param isDone       是否秒传
+     * @param nextPartNumber 下一批分块链接的起始块号
      * @return {@link FileCheckResultVo}
      */
-    private FileCheckResultVo buildResult(FileMetadataInfo metadataInfo, List<FileCheckResultVo.Part> partList, Integer partCount, Boolean isDone) {
+    private FileCheckResultVo buildResult(FileMetadataInfo metadataInfo, List<FileCheckResultVo.Part> partList, Integer partCount, Boolean isDone, Integer nextPartNumber) {
         FileCheckResultVo fileCheckResultVo = new FileCheckResultVo();
         // 主键
         fileCheckResultVo.setId(metadataInfo.getId());
@@ -827,9 +3565,11 @@ public class StorageServiceImpl implements StorageService {
         // 分块数量
         fileCheckResultVo.setPartCount(partCount);
         // 分块大小
-        fileCheckResultVo.setPartSize(properties.getPart().getSize());
+        fileCheckResultVo.setPartSize(this.getPartSize(metadataInfo));
         // 分块信息
         fileCheckResultVo.setPartList(partList);
+        // 下一批分块链接的起始块号
+        fileCheckResultVo.setNextPartNumber(nextPartNumber);
         return fileCheckResultVo;
     }
 
@@ -844,11 +3584,6 @@ public class StorageServiceImpl implements StorageService {
 
         CompleteResultVo completeResultVo = new CompleteResultVo();
 
-        // 获取所有的分片信息
-        ListParts listParts = this.getListParts(metadataInfo);
-
-        List<Integer> missingNumbers = new ArrayList<>();
-
         // 分块数量
         Integer chunkNum = metadataInfo.getPartNumber();
 
@@ -856,15 +3591,32 @@ public class StorageServiceImpl implements StorageService {
             throw new MinioPlusException(MinioPlusErrorCode.FILE_PART_NUM_CHECK_FAILED);
         }
 
-        // 校验文件完整性
-        for (int i = 1; i <= chunkNum; i++) {
-            boolean findPart = false;
-            for (ListParts.Part part : listParts.getPartList()) {
-                if (part.getPartNumber() == i && CharSequenceUtil.equalsIgnoreCase(part.getEtag(), partMd5List.get(i - 1))) {
-                    findPart = true;
-                }
+        // 分块确认记录完整时不再查询分片
+        if (this.completeByPartAck(metadataInfo, partMd5List)) {
+            partAcks.remove(metadataInfo.getUploadTaskId());
+            completeResultVo.setIsComplete(true);
+            completeResultVo.setPartList(new ArrayList<>());
+            return completeResultVo;
+        }
+
+        // 获取所有的分片信息
+        ListParts listParts = this.getListParts(metadataInfo);
+
+        List<Integer> missingNumbers = new ArrayList<>();
+
+        // 按块号建立索引，校验文件完整性
+        ListParts.Part[] partIndex = new ListParts.Part[chunkNum + 1];
+        for (ListParts.Part part : listParts.getPartList()) {
+            if (part.getPartNumber() >= 1 && part.getPartNumber() <= chunkNum) {
+                partIndex[part.getPartNumber()] = part;
             }
-            if (!findPart) {
+        }
+        List<ListParts.Part> partList = new ArrayList<>(chunkNum);
+        for (int i = 1; i <= chunkNum; i++) {
+            ListParts.Part part = partIndex[i];
+            if (part != null && CharSequenceUtil.equalsIgnoreCase(part.getEtag(), partMd5List.get(i - 1))) {
+                partList.add(part);
+            } else {
                 missingNumbers.add(i);
             }
         }
@@ -885,6 +3637,8 @@ public class StorageServiceImpl implements StorageService {
                 // 任务id，任务id可能会失效
                 bo.setUploadId(metadataInfo.getUploadTaskId());
             }
+            // 分块大小
+            bo.setPartSize(this.getPartSize(metadataInfo));
             // 存储桶
             bo.setStorageBucket(metadataInfo.getStorageBucket());
             // 存储路径
@@ -896,15 +3650,19 @@ public class StorageServiceImpl implements StorageService {
             completeResultVo.setIsComplete(false);
             completeResultVo.setUploadTaskId(createUploadUrlRespBO.getUploadTaskId());
             completeResultVo.setPartList(createUploadUrlRespBO.getParts());
+            completeResultVo.setNextPartNumber(createUploadUrlRespBO.getNextPartNumber());
         } else {
             // 合并分块
             boolean writeResponse = minioS3Client.completeMultipartUpload(metadataInfo.getStorageBucket()
                     , listParts.getObjectName()
                     , metadataInfo.getUploadTaskId()
-                    , listParts.getPartList()
+                    , partList
             );
             completeResultVo.setIsComplete(writeResponse);
             completeResultVo.setPartList(new ArrayList<>());
+            partAcks.remove(metadataInfo.getUploadTaskId());
+            // 未确认分块的上传任务按分片的最后修改时间估算上传速度
+            uploadTuningService.finish(metadataInfo.getUploadTaskId(), partList);
         }
 
         return completeResultVo;
@@ -917,7 +3675,7 @@ public class StorageServiceImpl implements StorageService {
      * @return {@link ListParts}    分片任务信息
      */
     private ListParts getListParts(FileMetadataInfo metadataInfo) {
-        String objectName = CommonUtil.getObjectName(metadataInfo.getFileMd5());
+        String objectName = CommonUtil.getObjectName(metadataInfo.getStoragePath(), metadataInfo.getFileMd5());
         // 获取所有的分片信息
         return minioS3Client.listParts(metadataInfo.getStorageBucket(), objectName, metadataInfo.getPartNumber(), metadataInfo.getUploadTaskId());
     }
@@ -937,6 +3695,23 @@ public class StorageServiceImpl implements StorageService {
         return metadataMapper.selectOne(queryWrapper);
     }
 
+    /**
+     * 从上传会话中取得元数据
+     * 上传任务编号与缓存不一致时，上传任务可能已在其他节点重建，重新查询数据库
+     *
+     * @param fileKey      文件KEY
+     * @param uploadTaskId 上传任务编号
+     * @return 元数据，不存在时为空
+     */
+    private FileMetadataInfo getUploadingMetadataInfo(String fileKey, String uploadTaskId) {
+        FileMetadataInfo metadata = uploadSessionService.get(fileKey);
+        if (metadata != null && uploadTaskId != null && !uploadTaskId.equals(metadata.getUploadTaskId())) {
+            uploadSessionService.invalidate(fileKey);
+            metadata = uploadSessionService.get(fileKey);
+        }
+        return metadata;
+    }
+
     /**
      * 文件元数据
      *
@@ -1005,6 +3780,8 @@ public class StorageServiceImpl implements StorageService {
         // 根据MD5查询元数据 文件是否已上传过
         LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(FileMetadataInfo::getFileMd5, fileMd5);
+        // 已隔离的文件内容与md5不一致,不参与秒传
+        queryWrapper.ne(FileMetadataInfo::getVerifyState, 2);
         //是否上传完成
         if (isFinished != null) {
             queryWrapper.eq(FileMetadataInfo::getIsFinished, isFinished);
@@ -1029,25 +3806,62 @@ public class StorageServiceImpl implements StorageService {
         //  1.有上传记录，且状态是已完成，则秒传，新增一条文件元数据,指向曾经的文件
         for (FileMetadataInfo fileMetadataInfo : list) {
             if (fileMetadataInfo.getIsFinished() == 1) {
-                FileMetadataInfo metadata = new FileMetadataInfo();
-                // 秒传
-                metadata.setFileKey(IdUtil.fastSimpleUUID()); // 文件KEY
-                metadata.setFileMd5(fileMd5); // 文件md5
-                metadata.setFileName(fullFileName); // 文件名
-                metadata.setFileMimeType(fileMetadataInfo.getFileMimeType()); // MIME类型
-                metadata.setFileSuffix(fileMetadataInfo.getFileSuffix()); // 文件后缀
-                metadata.setFileSize(fileMetadataInfo.getFileSize()); // 文件长度
-                metadata.setStorageBucket(fileMetadataInfo.getStorageBucket()); // 存储桶
-                metadata.setStoragePath(fileMetadataInfo.getStoragePath()); // 存储桶路径
-                metadata.setIsFinished(fileMetadataInfo.getIsFinished()); // 状态 0:未完成 1:已完成
-                metadata.setIsPart(1); // 是否分片 0:不分片 1:分片
-                metadata.setPartNumber(fileMetadataInfo.getPartNumber()); // 分片数量
-                metadata.setIsPreview(fileMetadataInfo.getIsPreview()); // 预览图 0:无 1:有
-                metadata.setIsPrivate(isPrivate); // 是否私有 0:否 1:是
+                FileMetadataInfo metadata = this.buildFastUploadMetadata(fileMetadataInfo, fileMd5, fullFileName, isPrivate);
                 metadataMapper.insert(metadata);
                 return metadata;
             }
         }
         return null;
     }
+
+    /**
+     * 构建秒传的文件元数据，指向已完成的文件
+     *
+     * @param fileMetadataInfo 已完成的文件元数据
+     * @param fileMd5          文件md5
+     * @param fullFileName     文件全名
+     * @param isPrivate        是否私有
+     * @return {@link FileMetadataInfo}
+     */
+    private FileMetadataInfo buildFastUploadMetadata(FileMetadataInfo fileMetadataInfo, String fileMd5, String fullFileName, Integer isPrivate) {
+        FileMetadataInfo metadata = new FileMetadataInfo();
+        // 秒传
+        metadata.setFileKey(IdUtil.fastSimpleUUID()); // 文件KEY
+        metadata.setFileMd5(fileMd5); // 文件md5
+        metadata.setSampleMd5(fileMetadataInfo.getSampleMd5()); // 抽样md5
+        metadata.setFileName(fullFileName); // 文件名
+        metadata.setFileMimeType(fileMetadataInfo.getFileMimeType()); // MIME类型
+        metadata.setFileSuffix(fileMetadataInfo.getFileSuffix()); // 文件后缀
+        metadata.setFileSize(fileMetadataInfo.getFileSize()); // 文件长度
+        metadata.setStorageBucket(fileMetadataInfo.getStorageBucket()); // 存储桶
+        metadata.setStoragePath(fileMetadataInfo.getStoragePath()); // 存储桶路径
+        metadata.setPackId(fileMetadataInfo.getPackId()); // 所在容器
+        metadata.setPackOffset(fileMetadataInfo.getPackOffset()); // 容器中的开始位置
+        metadata.setContentEncoding(fileMetadataInfo.getContentEncoding()); // 内容编码
+        metadata.setVerifyState(fileMetadataInfo.getVerifyState()); // 校验状态,已校验的文件不再重复读取
+        metadata.setIsFinished(fileMetadataInfo.getIsFinished()); // 状态 0:未完成 1:已完成
+        metadata.setIsPart(1); // 是否分片 0:不分片 1:分片
+        metadata.setPartNumber(fileMetadataInfo.getPartNumber()); // 分片数量
+        metadata.setPartSize(fileMetadataInfo.getPartSize()); // 分块大小
+        metadata.setIsPreview(fileMetadataInfo.getIsPreview()); // 预览图 0:无 1:有
+        metadata.setIsPrivate(isPrivate); // 是否私有 0:否 1:是
+        return metadata;
+    }
+
+    /**
+     * 根据多个fileMd5一次查询元数据
+     *
+     * @param md5Set md5集合
+     * @return list
+     */
+    private List<FileMetadataInfo> getMetadataByFileMd5List(Collection<String> md5Set) {
+        List<FileMetadataInfo> list = new ArrayList<>();
+        for (List<String> md5List : CollUtil.split(md5Set, 1000)) {
+            LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.in(FileMetadataInfo::getFileMd5, md5List);
+            queryWrapper.ne(FileMetadataInfo::getVerifyState, 2);
+            list.addAll(metadataMapper.selectList(queryWrapper));
+        }
+        return list;
+    }
 }
@@ -0,0 +1,147 @@
+package com.tiansuo.file.manage.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.mapper.MetadataMapper;
+import com.tiansuo.file.manage.model.bo.UploadProgressBO;
+import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
+import com.tiansuo.file.manage.service.UploadSessionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传会话登记
+ * 缓存只保存在各节点内存中，其他节点变更的元数据在缓存过期后可见；
+ * 上传任务编号与请求不一致时调用方移除缓存后重新读取
+ *
+ * @author zhangb
+ * @since  2025/01/29
+ */
+@Slf4j
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private MetadataMapper metadataMapper;
+
+    /**
+     * 进行中的上传会话，key为文件KEY
+     */
+    private Cache<String, FileMetadataInfo> sessions;
+
+    /**
+     * 待写入数据库的上传进度，key为元数据主键
+     */
+    private final Map<Long, UploadProgressBO> pendingProgress = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        MinioPlusProperties.Session session = properties.getSession();
+        sessions = CacheBuilder.newBuilder()
+                .maximumSize(session.getMaxSize())
+                .expireAfterWrite(session.getTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.flush();
+    }
+
+    @Override
+    public FileMetadataInfo get(String fileKey) {
+        FileMetadataInfo metadata = sessions.getIfPresent(fileKey);
+        if (metadata != null) {
+            return metadata;
+        }
+        LambdaQueryWrapper<FileMetadataInfo> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(FileMetadataInfo::getFileKey, fileKey);
+        metadata = metadataMapper.selectOne(queryWrapper);
+        if (metadata != null && metadata.getIsPart() == 1 && metadata.getIsFinished() == 0) {
+            sessions.put(fileKey, metadata);
+        }
+        return metadata;
+    }
+
+    @Override
+    public void register(FileMetadataInfo metadata) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sessions.put(metadata.getFileKey(), metadata);
+                }
+            });
+            return;
+        }
+        sessions.put(metadata.getFileKey(), metadata);
+    }
+
+    @Override
+    public void invalidate(String fileKey) {
+        sessions.invalidate(fileKey);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    sessions.invalidate(fileKey);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void recordProgress(String fileKey, int ackedParts) {
+        FileMetadataInfo metadata = this.get(fileKey);
+        if (metadata == null || metadata.getIsFinished() == 1) {
+            return;
+        }
+        // 同一上传的多次确认只保留最新进度
+        pendingProgress.put(metadata.getId(), new UploadProgressBO(metadata.getId(), ackedParts, new Date()));
+    }
+
+    @Override
+    public int flush() {
+        if (pendingProgress.isEmpty()) {
+            return 0;
+        }
+        List<UploadProgressBO> progressList = new ArrayList<>(pendingProgress.size());
+        for (UploadProgressBO progress : pendingProgress.values()) {
+            // 写入期间更新的进度留到下次写入
+            if (pendingProgress.remove(progress.getId(), progress)) {
+                progressList.add(progress);
+            }
+        }
+        int count = 0;
+        for (List<UploadProgressBO> batch : CollUtil.split(progressList, properties.getSession().getFlushBatchSize())) {
+            try {
+                metadataMapper.updateProgressBatch(batch);
+                count += batch.size();
+            } catch (Exception e) {
+                // 上传进度只用于判断上传是否空闲，写入失败时放回，由下次写入重试
+                log.warn("上传进度写入失败:{}", e.getMessage());
+                batch.forEach(progress -> pendingProgress.putIfAbsent(progress.getId(), progress));
+            }
+        }
+        return count;
+    }
+
+}
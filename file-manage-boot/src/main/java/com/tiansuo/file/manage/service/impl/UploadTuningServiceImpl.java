@@ -0,0 +1,203 @@
+package com.tiansuo.file.manage.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.model.bo.NetworkStatsBO;
+import com.tiansuo.file.manage.model.bo.UploadObservationBO;
+import com.tiansuo.file.manage.model.bo.UploadTuningBO;
+import com.tiansuo.file.manage.model.vo.ListParts;
+import com.tiansuo.file.manage.service.UploadTuningService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 上传参数建议
+ * 统计只保存在内存中，各节点分别学习；没有观测数据的网络使用配置的建议并发数和分块大小
+ *
+ * @author zhangb
+ * @since  2025/01/26
+ */
+@Slf4j
+@Service
+public class UploadTuningServiceImpl implements UploadTuningService {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    /**
+     * 客户端网络的上传统计
+     */
+    private Cache<String, NetworkStatsBO> networkStats;
+
+    /**
+     * 观测中的上传任务，key为上传任务编号
+     */
+    private Cache<String, UploadObservationBO> observations;
+
+    @PostConstruct
+    public void init() {
+        MinioPlusProperties.Tuning tuning = properties.getTuning();
+        networkStats = CacheBuilder.newBuilder()
+                .maximumSize(tuning.getMaxNetworks())
+                .expireAfterAccess(tuning.getStatsExpiryHours(), TimeUnit.HOURS)
+                .build();
+        observations = CacheBuilder.newBuilder()
+                .maximumSize(tuning.getMaxNetworks())
+                .expireAfterAccess(properties.getUploadExpiry(), TimeUnit.MINUTES)
+                .build();
+    }
+
+    @Override
+    public UploadTuningBO recommend(String network) {
+        MinioPlusProperties.Tuning tuning = properties.getTuning();
+        UploadTuningBO tuningBO = new UploadTuningBO();
+        tuningBO.setNetwork(network);
+        tuningBO.setConcurrency(this.clamp(properties.getPart().getIis()));
+        NetworkStatsBO stats = network == null || !tuning.isEnable() ? null : networkStats.getIfPresent(network);
+        if (stats != null) {
+            synchronized (stats) {
+                if (stats.getSamples() > 0) {
+                    tuningBO.setConcurrency(stats.getConcurrency());
+                    tuningBO.setThroughput((long) (stats.getThroughput() / stats.getConcurrency()));
+                }
+            }
+        }
+        return tuningBO;
+    }
+
+    @Override
+    public void register(String uploadId, UploadTuningBO tuning, long fileSize, int partSize) {
+        if (!properties.getTuning().isEnable() || tuning == null || tuning.getNetwork() == null) {
+            return;
+        }
+        UploadObservationBO observation = new UploadObservationBO();
+        observation.setNetwork(tuning.getNetwork());
+        observation.setConcurrency(tuning.getConcurrency());
+        observation.setFileSize(fileSize);
+        observation.setPartSize(partSize);
+        observations.put(uploadId, observation);
+    }
+
+    @Override
+    public void observeAck(String uploadId, int partNumber) {
+        UploadObservationBO observation = observations.getIfPresent(uploadId);
+        if (observation == null) {
+            return;
+        }
+        synchronized (observation) {
+            long now = System.currentTimeMillis();
+            long start = (long) (partNumber - 1) * observation.getPartSize();
+            if (observation.getAckedCount() == 0) {
+                observation.setFirstAckTime(now);
+            } else {
+                observation.setAckedBytes(observation.getAckedBytes() + Math.min(observation.getPartSize(), observation.getFileSize() - start));
+            }
+            observation.setLastAckTime(now);
+            observation.setAckedCount(observation.getAckedCount() + 1);
+        }
+    }
+
+    @Override
+    public void finish(String uploadId, List<ListParts.Part> partList) {
+        UploadObservationBO observation = observations.getIfPresent(uploadId);
+        if (observation == null) {
+            return;
+        }
+        observations.invalidate(uploadId);
+
+        double sample;
+        synchronized (observation) {
+            long span = observation.getLastAckTime() - observation.getFirstAckTime();
+            if (observation.getAckedCount() >= 2 && span > 0) {
+                sample = observation.getAckedBytes() * 1000.0 / span;
+            } else {
+                sample = this.estimateThroughput(partList);
+            }
+        }
+        if (sample <= 0) {
+            return;
+        }
+
+        try {
+            NetworkStatsBO stats = networkStats.get(observation.getNetwork(), NetworkStatsBO::new);
+            this.update(stats, sample, observation.getConcurrency());
+        } catch (ExecutionException e) {
+            log.warn("更新上传统计失败:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 更新客户端网络的统计
+     * 吞吐量未下降时并发数加1，低于移动平均的一定比例时认为出现拥塞，并发数减半
+     *
+     * @param stats       客户端网络的上传统计
+     * @param sample      本次观测的总吞吐量
+     * @param concurrency 本次上传使用的并发数
+     */
+    private void update(NetworkStatsBO stats, double sample, int concurrency) {
+        MinioPlusProperties.Tuning tuning = properties.getTuning();
+        synchronized (stats) {
+            if (stats.getSamples() == 0) {
+                stats.setThroughput(sample);
+                stats.setConcurrency(this.clamp(concurrency + 1));
+            } else {
+                double previous = stats.getThroughput();
+                stats.setThroughput(tuning.getAlpha() * sample + (1 - tuning.getAlpha()) * previous);
+                if (sample >= previous) {
+                    stats.setConcurrency(this.clamp(concurrency + 1));
+                } else if (sample < previous * tuning.getBackoffRatio()) {
+                    stats.setConcurrency(this.clamp(concurrency / 2));
+                } else {
+                    stats.setConcurrency(this.clamp(concurrency));
+                }
+            }
+            stats.setSamples(stats.getSamples() + 1);
+        }
+    }
+
+    /**
+     * 按分片的最后修改时间估算总吞吐量
+     * 最早完成的分片作为起点，不计入字节数
+     *
+     * @param partList MinIO中的分片
+     * @return 总吞吐量，单位为byte/秒，无法估算时返回0
+     */
+    private double estimateThroughput(List<ListParts.Part> partList) {
+        if (partList == null || partList.size() < 2) {
+            return 0;
+        }
+        List<ListParts.Part> sorted = partList.stream()
+                .filter(part -> part.getLastModified() != null && part.getSize() != null)
+                .sorted(Comparator.comparing(ListParts.Part::getLastModified))
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (sorted.size() < 2) {
+            return 0;
+        }
+        long span = sorted.get(sorted.size() - 1).getLastModified().toInstant().toEpochMilli()
+                - sorted.get(0).getLastModified().toInstant().toEpochMilli();
+        if (span <= 0) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 1; i < sorted.size(); i++) {
+            bytes += sorted.get(i).getSize();
+        }
+        return bytes * 1000.0 / span;
+    }
+
+    private int clamp(int concurrency) {
+        MinioPlusProperties.Tuning tuning = properties.getTuning();
+        return Math.max(tuning.getMinConcurrency(), Math.min(tuning.getMaxConcurrency(), concurrency));
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.tiansuo.file.manage.task;
+
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.service.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 文件校验任务
+ * 定时按实际内容校验前端提交的md5，md5不一致的文件隔离后不再参与秒传
+ *
+ * @author zhangb
+ * @since 2025/01/30
+ */
+@Slf4j
+@Component
+public class FileVerifyTask {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Scheduled(initialDelayString = "${minioplus.verify.interval:60000}", fixedDelayString = "${minioplus.verify.interval:60000}")
+    public void verify() {
+        if (!properties.getVerify().isEnable()) {
+            return;
+        }
+        try {
+            Integer count = storageService.verifyFiles();
+            if (count > 0) {
+                log.info("校验文件{}个", count);
+            }
+        } catch (Exception e) {
+            log.error("校验文件失败:{}", e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.tiansuo.file.manage.task;
+
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.service.SmallFilePackService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 小文件容器整理任务
+ * 定时回收容器中已删除文件占用的空间
+ *
+ * @author zhangb
+ * @since 2025/01/27
+ */
+@Slf4j
+@Component
+public class PackCompactTask {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private SmallFilePackService smallFilePackService;
+
+    @Scheduled(initialDelayString = "${minioplus.pack.compact-interval:600000}", fixedDelayString = "${minioplus.pack.compact-interval:600000}")
+    public void compact() {
+        if (!properties.getPack().isEnable()) {
+            return;
+        }
+        try {
+            int count = smallFilePackService.compact();
+            if (count > 0) {
+                log.info("整理小文件容器{}个", count);
+            }
+        } catch (Exception e) {
+            log.error("整理小文件容器失败:{}", e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.tiansuo.file.manage.task;
+
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.service.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分片上传自动合并任务
+ * 定时检查未完成的分片上传任务，全部分块已上传的自动合并，处理前端上传最后一个分块后未调用合并接口的情况
+ *
+ * @author zhangb
+ * @since 2025/01/24
+ */
+@Slf4j
+@Component
+public class UploadAutoCompleteTask {
+
+    @Autowired
+    private MinioPlusProperties properties;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Scheduled(initialDelayString = "${minioplus.auto-complete.interval:60000}", fixedDelayString = "${minioplus.auto-complete.interval:60000}")
+    public void autoComplete() {
+        if (!properties.getAutoComplete().isEnable()) {
+            return;
+        }
+        try {
+            Integer count = storageService.autoComplete();
+            if (count > 0) {
+                log.info("自动合并分片上传任务{}个", count);
+            }
+        } catch (Exception e) {
+            log.error("自动合并分片上传任务失败:{}", e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.tiansuo.file.manage.task;
+
+import com.tiansuo.file.manage.service.UploadSessionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上传进度写入任务
+ * 定时将内存中暂存的上传进度批量写入数据库
+ *
+ * @author zhangb
+ * @since 2025/01/29
+ */
+@Slf4j
+@Component
+public class UploadSessionFlushTask {
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Scheduled(fixedDelayString = "${minioplus.session.flush-interval:1000}")
+    public void flush() {
+        try {
+            int count = uploadSessionService.flush();
+            if (count > 0) {
+                log.debug("写入上传进度{}条", count);
+            }
+        } catch (Exception e) {
+            log.error("写入上传进度失败:{}", e.getMessage(), e);
+        }
+    }
+
+}
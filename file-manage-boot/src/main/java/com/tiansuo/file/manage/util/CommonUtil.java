@@ -1,6 +1,14 @@
 package com.tiansuo.file.manage.util;
 
 import cn.hutool.core.date.LocalDateTimeUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * 对象存储工具类
@@ -18,6 +26,36 @@ public class CommonUtil {
         return CommonUtil.getPathByDate() + "/" + fileMd5;
     }
 
+    /**
+     * 取得对象名称
+     * @param storagePath 存储路径
+     * @param fileMd5 文件fileMd5
+     * @return 对象名称
+     */
+    public static String getObjectName(String storagePath, String fileMd5){
+        return storagePath + "/" + fileMd5;
+    }
+
+    /**
+     * 取得抽样摘要的抽样范围
+     * 文件按头、中、尾各取一段，文件长度不超过三段时取整个文件
+     * @param fileSize 文件长度
+     * @param sampleSize 每段抽样长度
+     * @return 抽样范围列表，每项为[开始位置,结束位置)
+     */
+    public static List<long[]> getSampleRanges(long fileSize, int sampleSize){
+        List<long[]> ranges = new ArrayList<>(3);
+        if (fileSize <= 3L * sampleSize) {
+            ranges.add(new long[]{0, fileSize});
+            return ranges;
+        }
+        long middle = (fileSize - sampleSize) / 2;
+        ranges.add(new long[]{0, sampleSize});
+        ranges.add(new long[]{middle, middle + sampleSize});
+        ranges.add(new long[]{fileSize - sampleSize, fileSize});
+        return ranges;
+    }
+
     /**
      * 根据当前时间取得路径
      * @return 路径
@@ -26,4 +64,147 @@ public class CommonUtil {
         return LocalDateTimeUtil.format(LocalDateTimeUtil.now(), "yyyy/MM");
     }
 
+    /**
+     * 取得客户端网络
+     * IPv4地址取前24位，IPv6地址取前64位，经过代理时取X-Forwarded-For中的第一个地址
+     * @param request 请求
+     * @return 客户端网络，无法识别时返回null
+     */
+    public static String getClientNetwork(HttpServletRequest request){
+        String ip = request.getHeader("X-Forwarded-For");
+        ip = CharSequenceUtil.isBlank(ip) ? request.getRemoteAddr() : ip.split(",")[0].trim();
+        // 只解析IP字面量，避免触发域名解析
+        if (CharSequenceUtil.isBlank(ip) || !ip.matches("[0-9a-fA-F:.]+")) {
+            return null;
+        }
+        byte[] address;
+        try {
+            address = InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+        int prefixBytes = address.length == 4 ? 3 : 8;
+        StringBuilder network = new StringBuilder();
+        for (int i = 0; i < prefixBytes; i++) {
+            network.append(address[i] & 0xff).append('.');
+        }
+        return network.append('/').append(prefixBytes * 8).toString();
+    }
+
+    /**
+     * 客户端是否接受指定的内容编码
+     * 按Accept-Encoding请求头判断，q=0表示不接受
+     * @param acceptEncoding Accept-Encoding请求头
+     * @param encoding 内容编码
+     * @return 是否接受
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String encoding){
+        if (CharSequenceUtil.isBlank(acceptEncoding) || CharSequenceUtil.isBlank(encoding)) {
+            return false;
+        }
+        for (String item : acceptEncoding.split(",")) {
+            String[] params = item.trim().split(";");
+            if (!encoding.equalsIgnoreCase(params[0].trim()) && !"*".equals(params[0].trim())) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range请求头
+     * 按开始位置排序，重叠或相邻的范围合并为一个
+     * @param range Range请求头
+     * @param size 内容长度
+     * @param maxCount 允许的最大范围数量
+     * @return 范围列表，每项为[开始位置,结束位置]；请求头为空、格式错误或范围过多时返回null，按完整内容响应；范围都超出内容长度时返回空列表
+     */
+    public static List<long[]> parseRanges(String range, long size, int maxCount){
+        if (CharSequenceUtil.isBlank(range) || !range.startsWith("bytes=")) {
+            return null;
+        }
+        String[] items = range.substring(6).split(",");
+        if (items.length > maxCount) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(items.length);
+        try {
+            for (String item : items) {
+                String spec = item.trim();
+                int index = spec.indexOf('-');
+                if (index < 0) {
+                    return null;
+                }
+                long start;
+                long end;
+                if (index == 0) {
+                    // 后缀范围，取最后n个字节
+                    long suffixLength = Long.parseLong(spec.substring(1));
+                    if (suffixLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffixLength);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, index));
+                    end = index == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(index + 1));
+                    if (end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                if (start < size) {
+                    ranges.add(new long[]{start, end});
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        for (long[] r : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && r[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                merged.add(r);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * If-None-Match请求头是否与ETag匹配
+     * 按弱比较判断，*匹配任意ETag
+     * @param ifNoneMatch If-None-Match请求头
+     * @param etag ETag，含双引号
+     * @return 是否匹配
+     */
+    public static boolean matchesEtag(String ifNoneMatch, String etag){
+        if (CharSequenceUtil.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String item : ifNoneMatch.split(",")) {
+            String tag = item.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
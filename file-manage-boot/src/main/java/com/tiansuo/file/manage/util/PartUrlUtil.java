@@ -0,0 +1,83 @@
+package com.tiansuo.file.manage.util;
+
+import com.tiansuo.file.manage.model.vo.CompactPartsVo;
+import com.tiansuo.file.manage.model.vo.FileCheckResultVo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块上传链接工具类
+ * @author zhangb
+ * @since  2025/01/23
+ */
+public class PartUrlUtil {
+
+    private static final String PART_NUMBER = "partNumber=";
+
+    private static final String SIGNATURE = "X-Amz-Signature=";
+
+    /**
+     * 将分块上传链接转换为紧凑格式
+     * 各分块链接只保留签名，其余查询参数共用；签名时间跨秒导致查询参数与首个分块不一致的分块保留在剩余列表中
+     * @param partList 分块信息，转换后只保留无法共用查询参数的分块
+     * @return 紧凑格式的分块上传链接，分块为空时返回null
+     */
+    public static CompactPartsVo compact(List<FileCheckResultVo.Part> partList) {
+        if (partList == null || partList.isEmpty()) {
+            return null;
+        }
+        CompactPartsVo compactPartsVo = new CompactPartsVo();
+        List<FileCheckResultVo.Part> remainList = new ArrayList<>();
+        for (FileCheckResultVo.Part part : partList) {
+            String url = part.getUrl();
+            int index = url.indexOf('?');
+            if (index < 0) {
+                remainList.add(part);
+                continue;
+            }
+            String baseUrl = url.substring(0, index);
+            StringBuilder query = new StringBuilder();
+            String signature = null;
+            for (String param : url.substring(index + 1).split("&")) {
+                if (param.startsWith(SIGNATURE)) {
+                    signature = param.substring(SIGNATURE.length());
+                } else if (!param.startsWith(PART_NUMBER)) {
+                    if (query.length() > 0) {
+                        query.append('&');
+                    }
+                    query.append(param);
+                }
+            }
+            if (compactPartsVo.getBaseUrl() == null && signature != null) {
+                compactPartsVo.setBaseUrl(baseUrl);
+                compactPartsVo.setQuery(query.toString());
+            }
+            if (signature == null || !baseUrl.equals(compactPartsVo.getBaseUrl()) || !query.toString().equals(compactPartsVo.getQuery())) {
+                remainList.add(part);
+                continue;
+            }
+            if (compactPartsVo.getPartSize() == null) {
+                compactPartsVo.setPartSize(getPartSize(part));
+            }
+            compactPartsVo.getPartNumbers().add(part.getPartNumber());
+            compactPartsVo.getSignatures().add(signature);
+        }
+        partList.clear();
+        partList.addAll(remainList);
+        return compactPartsVo.getBaseUrl() == null ? null : compactPartsVo;
+    }
+
+    /**
+     * 根据分块位置计算分块大小
+     * @param part 分块信息
+     * @return 分块大小
+     */
+    private static long getPartSize(FileCheckResultVo.Part part) {
+        if (part.getPartNumber() > 1) {
+            return part.getStartPosition() / (part.getPartNumber() - 1);
+        }
+        return part.getEndPosition() - part.getStartPosition();
+    }
+
+}
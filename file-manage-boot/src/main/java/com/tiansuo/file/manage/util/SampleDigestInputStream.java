@@ -0,0 +1,95 @@
+package com.tiansuo.file.manage.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * 抽样摘要输入流
+ * 读取过程中将落在抽样范围内的字节计入摘要，用于在一次读取中同时得到抽样md5
+ * @author zhangb
+ * @since  2025/01/09
+ */
+public class SampleDigestInputStream extends FilterInputStream {
+
+    /**
+     * 抽样范围列表，每项为[开始位置,结束位置)，按开始位置升序且互不重叠
+     */
+    private final List<long[]> ranges;
+
+    /**
+     * 抽样摘要
+     */
+    private final MessageDigest digest;
+
+    /**
+     * 当前读取位置
+     */
+    private long position;
+
+    public SampleDigestInputStream(InputStream in, List<long[]> ranges, MessageDigest digest) {
+        super(in);
+        this.ranges = ranges;
+        this.digest = digest;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            if (this.inRange(position)) {
+                digest.update((byte) b);
+            }
+            position++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            long end = position + n;
+            for (long[] range : ranges) {
+                long from = Math.max(range[0], position);
+                long to = Math.min(range[1], end);
+                if (from < to) {
+                    digest.update(b, off + (int) (from - position), (int) (to - from));
+                }
+            }
+            position = end;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的字节无法计入摘要，按读取处理
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = this.read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private boolean inRange(long pos) {
+        for (long[] range : ranges) {
+            if (pos >= range[0] && pos < range[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+-- 文件元数据表结构变更脚本
+-- 按变更顺序追加，升级时从上次执行的位置继续执行
+
+-- 分块大小按文件大小自适应，记录每个上传任务实际使用的分块大小
+ALTER TABLE file_metadata_info ADD COLUMN part_size INT NULL COMMENT '分块大小(byte)' AFTER part_number;
+
+-- 抽样预检查，按文件长度和抽样md5判断是否可能存在相同文件
+ALTER TABLE file_metadata_info ADD COLUMN sample_md5 VARCHAR(32) NULL COMMENT '抽样md5' AFTER file_md5;
+CREATE INDEX idx_file_size_sample_md5 ON file_metadata_info (file_size, sample_md5);
+
+-- 分块内容索引，md5相同的分块在服务端复制，无需重新上传
+CREATE TABLE file_part_index (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    part_md5 VARCHAR(32) NOT NULL COMMENT '分块md5',
+    part_size BIGINT NOT NULL COMMENT '分块大小(byte)',
+    storage_bucket VARCHAR(64) NOT NULL COMMENT '存储桶',
+    object_name VARCHAR(255) NOT NULL COMMENT '对象名称',
+    part_offset BIGINT NOT NULL COMMENT '分块在对象中的开始位置',
+    create_time DATETIME NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id),
+    KEY idx_part_md5 (part_md5),
+    KEY idx_storage_object (storage_bucket, object_name)
+) ENGINE = InnoDB COMMENT = '分块内容索引';
+
+-- 小文件合并存储，小文件写入容器对象，元数据记录所在容器和开始位置
+ALTER TABLE file_metadata_info ADD COLUMN pack_id BIGINT NULL COMMENT '所在容器主键，为空时文件单独存储' AFTER is_private;
+ALTER TABLE file_metadata_info ADD COLUMN pack_offset BIGINT NULL COMMENT '文件在容器中的开始位置' AFTER pack_id;
+CREATE INDEX idx_pack_id ON file_metadata_info (pack_id);
+CREATE TABLE file_pack_container (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    storage_bucket VARCHAR(64) NOT NULL COMMENT '存储桶',
+    total_size BIGINT NOT NULL COMMENT '容器长度(byte)',
+    live_size BIGINT NOT NULL COMMENT '有效数据长度(byte)',
+    create_time DATETIME NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id)
+) ENGINE = InnoDB COMMENT = '小文件容器';
+
+-- 上传进度由内存批量写入，自动合并按最后活动时间判断上传是否空闲
+ALTER TABLE file_metadata_info ADD COLUMN acked_parts INT NULL COMMENT '已确认分块数量' AFTER pack_offset;
+ALTER TABLE file_metadata_info ADD COLUMN active_time DATETIME NULL COMMENT '上传最后活动时间' AFTER acked_parts;
+
+-- 初始化快速路径，同一md5只有首次初始化的元数据作为上传任务所有者，由唯一索引保证
+ALTER TABLE file_metadata_info ADD COLUMN owner_md5 VARCHAR(32) NULL COMMENT '作为上传任务所有者的md5' AFTER sample_md5;
+UPDATE file_metadata_info f
+    JOIN (SELECT MIN(id) AS id FROM file_metadata_info WHERE is_part = 1 AND file_md5 <> file_key GROUP BY file_md5) o ON f.id = o.id
+SET f.owner_md5 = f.file_md5;
+CREATE UNIQUE INDEX uk_owner_md5 ON file_metadata_info (owner_md5);
+
+-- 压缩存储，记录对象的内容编码
+ALTER TABLE file_metadata_info ADD COLUMN content_encoding VARCHAR(16) NULL COMMENT '内容编码，为空时未压缩' AFTER pack_offset;
+
+-- 后台校验前端提交的md5，md5不一致的文件隔离后不再参与秒传
+ALTER TABLE file_metadata_info ADD COLUMN verify_state TINYINT NOT NULL DEFAULT 0 COMMENT '校验状态 0:未校验 1:已校验 2:md5不一致已隔离' AFTER content_encoding;
+CREATE INDEX idx_verify_state ON file_metadata_info (verify_state, id);
@@ -0,0 +1,243 @@
+package com.tiansuo.file.manage.service.impl;
+
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.exception.MinioPlusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 按业务KEY加锁单元测试
+ *
+ * @author zhangb
+ * @since  2025/02/10
+ */
+class KeyLockServiceImplTests {
+
+    private MinioPlusProperties properties;
+
+    private DataSource dataSource;
+
+    private KeyLockServiceImpl keyLockService;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MinioPlusProperties();
+        properties.getLock().setDistributed(false);
+        properties.getLock().setTimeout(5);
+        dataSource = mock(DataSource.class);
+        keyLockService = new KeyLockServiceImpl();
+        ReflectionTestUtils.setField(keyLockService, "properties", properties);
+        ReflectionTestUtils.setField(keyLockService, "dataSource", dataSource);
+        executor = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        if (TransactionSynchronizationManager.hasResource(dataSource)) {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+        }
+    }
+
+    @Test
+    void sameKeyRunsSerially() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[8];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = CompletableFuture.runAsync(() -> keyLockService.execute("init:md5", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return null;
+            }), executor);
+        }
+        CompletableFuture.allOf(tasks).get(10, TimeUnit.SECONDS);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void differentKeysRunConcurrently() throws Exception {
+        CountDownLatch bothEntered = new CountDownLatch(2);
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> keyLockService.execute("init:a", () -> arriveAndAwait(bothEntered)), executor);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> keyLockService.execute("init:b", () -> arriveAndAwait(bothEntered)), executor);
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(second.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void multipleKeysExcludeSingleKey() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> batch = CompletableFuture.runAsync(() -> keyLockService.execute(Arrays.asList("init:a", "init:b"), () -> {
+            entered.countDown();
+            await(release);
+            return null;
+        }), executor);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        AtomicInteger singleRuns = new AtomicInteger();
+        CompletableFuture<Void> single = CompletableFuture.runAsync(() -> keyLockService.execute("init:b", singleRuns::incrementAndGet), executor);
+        sleep(100);
+        // 批量加锁期间单个KEY等待
+        assertEquals(0, singleRuns.get());
+        release.countDown();
+        single.get(5, TimeUnit.SECONDS);
+        batch.get(5, TimeUnit.SECONDS);
+        assertEquals(1, singleRuns.get());
+    }
+
+    @Test
+    void multipleKeysInReverseOrderDoNotDeadlock() throws Exception {
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[16];
+        for (int i = 0; i < tasks.length; i++) {
+            // 传入顺序相反,按排序后的顺序加锁
+            List<String> keys = i % 2 == 0 ? Arrays.asList("complete:a", "complete:b", "complete:c") : Arrays.asList("complete:c", "complete:b", "complete:a");
+            tasks[i] = CompletableFuture.runAsync(() -> keyLockService.execute(keys, () -> {
+                sleep(5);
+                return null;
+            }), executor);
+        }
+        CompletableFuture.allOf(tasks).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void localLockTimesOut() throws Exception {
+        properties.getLock().setTimeout(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> keyLockService.execute("init:md5", () -> {
+            entered.countDown();
+            await(release);
+            return null;
+        }), executor);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertThrows(MinioPlusException.class, () -> keyLockService.execute("init:md5", () -> null));
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void namedLockUsesTransactionConnectionAndReleasesAfterCompletion() throws Exception {
+        properties.getLock().setDistributed(true);
+        Connection connection = this.mockLockConnection(1);
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.bindResource(dataSource, new ConnectionHolder(connection));
+
+        keyLockService.execute(Arrays.asList("init:b", "init:a"), () -> null);
+
+        // 命名锁在事务的连接上获取,不再从连接池取得第二个连接
+        verify(dataSource, never()).getConnection();
+        verify(connection, times(2)).prepareStatement("SELECT GET_LOCK(?, ?)");
+        verify(connection, never()).prepareStatement("SELECT RELEASE_LOCK(?)");
+        // 事务结束后释放
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        verify(connection, times(2)).prepareStatement("SELECT RELEASE_LOCK(?)");
+        verify(connection, never()).close();
+    }
+
+    @Test
+    void namedLockWithoutTransactionReleasesConnection() throws Exception {
+        properties.getLock().setDistributed(true);
+        Connection connection = this.mockLockConnection(1);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        assertEquals("done", keyLockService.execute(Collections.singletonList("init:a"), () -> "done"));
+
+        verify(dataSource, times(1)).getConnection();
+        verify(connection).prepareStatement("SELECT RELEASE_LOCK(?)");
+        verify(connection).close();
+    }
+
+    @Test
+    void namedLockTimeoutFailsAndReleasesLocalLock() throws Exception {
+        properties.getLock().setDistributed(true);
+        Connection connection = this.mockLockConnection(0);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        assertThrows(MinioPlusException.class, () -> keyLockService.execute("init:a", () -> null));
+        verify(connection).close();
+
+        // 进程内锁已释放
+        properties.getLock().setDistributed(false);
+        assertEquals("done", keyLockService.execute("init:a", () -> "done"));
+    }
+
+    /**
+     * 模拟执行命名锁语句的连接
+     *
+     * @param getLockResult GET_LOCK的返回值
+     * @return 连接
+     */
+    private Connection mockLockConnection(int getLockResult) throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(getLockResult);
+        return connection;
+    }
+
+    private static boolean arriveAndAwait(CountDownLatch latch) {
+        latch.countDown();
+        return await(latch);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
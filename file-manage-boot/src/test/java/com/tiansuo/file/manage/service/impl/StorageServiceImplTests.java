@@ -0,0 +1,725 @@
+package com.tiansuo.file.manage.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.tiansuo.file.manage.config.MinioPlusProperties;
+import com.tiansuo.file.manage.constant.CommonConstant;
+import com.tiansuo.file.manage.exception.MinioPlusException;
+import com.tiansuo.file.manage.mapper.MetadataMapper;
+import com.tiansuo.file.manage.model.bo.UploadTuningBO;
+import com.tiansuo.file.manage.model.dto.FileCheckDTO;
+import com.tiansuo.file.manage.model.dto.FileCompleteDTO;
+import com.tiansuo.file.manage.model.entity.FileMetadataInfo;
+import com.tiansuo.file.manage.model.vo.AppendResultVo;
+import com.tiansuo.file.manage.model.vo.CompleteResultVo;
+import com.tiansuo.file.manage.model.vo.FileCheckResultVo;
+import com.tiansuo.file.manage.model.vo.ListParts;
+import com.tiansuo.file.manage.service.KeyLockService;
+import com.tiansuo.file.manage.service.MinioS3Client;
+import com.tiansuo.file.manage.service.UploadSessionService;
+import com.tiansuo.file.manage.service.UploadTuningService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 存储服务单元测试
+ *
+ * @author zhangb
+ * @since  2025/02/10
+ */
+class StorageServiceImplTests {
+
+    private MinioPlusProperties properties;
+
+    private MetadataMapper metadataMapper;
+
+    private MinioS3Client minioS3Client;
+
+    private StorageServiceImpl storageService;
+
+    private ThreadPoolTaskExecutor rangeFetchExecutor;
+
+    private ThreadPoolTaskExecutor storageTaskExecutor;
+
+    private UploadTuningService uploadTuningService;
+
+    /**
+     * 每次加锁的KEY
+     */
+    private List<List<String>> lockedKeys;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // 条件构造器按实体的表信息解析字段
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), FileMetadataInfo.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new MinioPlusProperties();
+        metadataMapper = mock(MetadataMapper.class);
+        minioS3Client = mock(MinioS3Client.class);
+        storageService = new StorageServiceImpl();
+        ReflectionTestUtils.setField(storageService, "properties", properties);
+        ReflectionTestUtils.setField(storageService, "metadataMapper", metadataMapper);
+        ReflectionTestUtils.setField(storageService, "minioS3Client", minioS3Client);
+        rangeFetchExecutor = new ThreadPoolTaskExecutor();
+        rangeFetchExecutor.setCorePoolSize(2);
+        rangeFetchExecutor.initialize();
+        ReflectionTestUtils.setField(storageService, "rangeFetchExecutor", rangeFetchExecutor);
+        storageTaskExecutor = new ThreadPoolTaskExecutor();
+        storageTaskExecutor.setCorePoolSize(4);
+        storageTaskExecutor.initialize();
+        ReflectionTestUtils.setField(storageService, "storageTaskExecutor", storageTaskExecutor);
+        ReflectionTestUtils.setField(storageService, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(storageService, "uploadSessionService", mock(UploadSessionService.class));
+        uploadTuningService = mock(UploadTuningService.class);
+        when(uploadTuningService.recommend(any())).thenReturn(new UploadTuningBO());
+        ReflectionTestUtils.setField(storageService, "uploadTuningService", uploadTuningService);
+
+        // 记录加锁的KEY后直接执行
+        lockedKeys = new CopyOnWriteArrayList<>();
+        KeyLockService keyLockService = mock(KeyLockService.class);
+        when(keyLockService.execute(anyString(), any())).thenAnswer(invocation -> {
+            lockedKeys.add(Collections.singletonList(invocation.getArgument(0)));
+            return ((Supplier<?>) invocation.getArgument(1)).get();
+        });
+        when(keyLockService.execute(any(Collection.class), any())).thenAnswer(invocation -> {
+            lockedKeys.add(new ArrayList<>(invocation.<Collection<String>>getArgument(0)));
+            return ((Supplier<?>) invocation.getArgument(1)).get();
+        });
+        ReflectionTestUtils.setField(storageService, "keyLockService", keyLockService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rangeFetchExecutor.shutdown();
+        storageTaskExecutor.shutdown();
+    }
+
+    @Test
+    void computePartSizeUsesMinSizeForSmallFile() {
+        assertEquals(properties.getPart().getSize(), storageService.computePartSize(1000));
+    }
+
+    @Test
+    void computePartSizeKeepsPartCountWithinLimit() {
+        MinioPlusProperties.Part part = properties.getPart();
+        long fileSize = (long) part.getSize() * part.getMaxCount() * 3 + 1;
+        int partSize = storageService.computePartSize(fileSize);
+        assertEquals(0, partSize % part.getSize());
+        assertTrue((fileSize + partSize - 1) / partSize <= part.getMaxCount());
+        // 对齐后不超过满足数量上限的最小分块
+        assertEquals(part.getSize() * 4, partSize);
+    }
+
+    @Test
+    void computePartSizeFollowsThroughput() {
+        MinioPlusProperties.Part part = properties.getPart();
+        part.setSize(5 * 1024 * 1024);
+        part.setTargetPartSeconds(5);
+        // 每秒3MB,5秒15MB,对齐为5MB的整数倍
+        assertEquals(15 * 1024 * 1024, storageService.computePartSize(100L * 1024 * 1024, 3 * 1024 * 1024));
+        // 每秒3.5MB,向上对齐为20MB
+        assertEquals(20 * 1024 * 1024, storageService.computePartSize(100L * 1024 * 1024, 3584 * 1024));
+    }
+
+    @Test
+    void computePartSizeCapsThroughputAtMaxSize() {
+        MinioPlusProperties.Part part = properties.getPart();
+        part.setSize(5 * 1024 * 1024);
+        part.setMaxSize(50 * 1024 * 1024);
+        assertEquals(50 * 1024 * 1024, storageService.computePartSize(100L * 1024 * 1024, 1024L * 1024 * 1024));
+        // 分块数量上限优先于最大分块大小
+        part.setMaxCount(10);
+        assertEquals(55 * 1024 * 1024, storageService.computePartSize(520L * 1024 * 1024, 1024L * 1024 * 1024));
+    }
+
+    @Test
+    void computePartSizeIgnoresZeroThroughput() {
+        assertEquals(storageService.computePartSize(1000), storageService.computePartSize(1000, 0));
+    }
+
+    @Test
+    void downloadReturnsFullContentWithoutRange() throws Exception {
+        byte[] content = this.mockStoredFile(100);
+        MockHttpServletResponse response = this.download(new MockHttpServletRequest("GET", "/"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(100, response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("\"md5\"", response.getHeader("ETag"));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void downloadReturnsPartialContentForSingleRange() throws Exception {
+        byte[] content = this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/100", response.getHeader("Content-Range"));
+        assertEquals(10, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+    }
+
+    @Test
+    void downloadReturnsByterangesForMultipleRanges() throws Exception {
+        this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=0-4,90-");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-4/100"));
+        assertTrue(body.contains("Content-Range: bytes 90-99/100"));
+        // 预先计算的长度与实际写出的长度一致
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    void downloadReturnsNotSatisfiableForRangeBeyondSize() throws Exception {
+        this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=100-200");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void downloadReturnsNotModifiedWhenEtagMatches() throws Exception {
+        this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("If-None-Match", "\"md5\"");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(minioS3Client, never()).getObjectStream(anyString(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void downloadIgnoresRangeWhenIfRangeDoesNotMatch() throws Exception {
+        byte[] content = this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=10-19");
+        request.addHeader("If-Range", "\"other\"");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void downloadHeadRequestWritesNoBody() throws Exception {
+        this.mockStoredFile(100);
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/");
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = this.download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void parallelFetchWritesRangesInOrderWithinWindow() throws Exception {
+        byte[] content = this.mockStoredFile(100);
+        List<CompletableFuture<InputStream>> requests = this.mockAsyncRanges();
+        MinioPlusProperties.ParallelFetch parallelFetch = properties.getParallelFetch();
+        parallelFetch.setThreshold(10);
+        parallelFetch.setChunkSize(10);
+        parallelFetch.setConcurrency(3);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CompletableFuture<Void> download = CompletableFuture.runAsync(
+                () -> storageService.getDownloadObject("key", new MockHttpServletRequest("GET", "/"), response));
+
+        this.await(() -> requests.size() == 3);
+        // 后面的范围先读取完成，窗口已满，第一个范围写出前不再发起读取
+        requests.get(2).complete(this.rangeStream(content, 20, null));
+        requests.get(1).complete(this.rangeStream(content, 10, null));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(3, requests.size());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        // 第一个范围完成后依次写出，窗口向后移动
+        requests.get(0).complete(this.rangeStream(content, 0, null));
+        for (int i = 3; i < 10; i++) {
+            int index = i;
+            this.await(() -> requests.size() > index);
+            // 已发起未写出的范围不超过并发数
+            assertTrue(requests.size() <= response.getContentAsByteArray().length / 10 + 3);
+            requests.get(index).complete(this.rangeStream(content, index * 10, null));
+        }
+        download.get(5, TimeUnit.SECONDS);
+
+        assertEquals(10, requests.size());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void parallelFetchReleasesPendingRangesWhenWriteFails() throws Exception {
+        byte[] content = this.mockStoredFile(100);
+        List<Boolean> closed = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<InputStream>> requests = this.mockAsyncRanges();
+        MinioPlusProperties.ParallelFetch parallelFetch = properties.getParallelFetch();
+        parallelFetch.setThreshold(10);
+        parallelFetch.setChunkSize(10);
+        parallelFetch.setConcurrency(3);
+
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                };
+            }
+        };
+        CompletableFuture<Void> download = CompletableFuture.runAsync(
+                () -> storageService.getDownloadObject("key", new MockHttpServletRequest("GET", "/"), response));
+
+        this.await(() -> requests.size() == 3);
+        requests.get(0).complete(this.rangeStream(content, 0, closed));
+        try {
+            download.get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof MinioPlusException);
+        }
+        assertTrue(download.isCompletedExceptionally());
+
+        // 写出失败后返回的对象流也被关闭
+        requests.get(1).complete(this.rangeStream(content, 10, closed));
+        requests.get(2).complete(this.rangeStream(content, 20, closed));
+        this.await(() -> closed.size() == 3);
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void parallelFetchFailsDownloadWhenRangeReadFails() throws Exception {
+        this.mockStoredFile(100);
+        List<CompletableFuture<InputStream>> requests = this.mockAsyncRanges();
+        MinioPlusProperties.ParallelFetch parallelFetch = properties.getParallelFetch();
+        parallelFetch.setThreshold(10);
+        parallelFetch.setChunkSize(10);
+        parallelFetch.setConcurrency(3);
+
+        CompletableFuture<Void> download = CompletableFuture.runAsync(
+                () -> storageService.getDownloadObject("key", new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse()));
+        this.await(() -> requests.size() == 3);
+        requests.get(0).completeExceptionally(new IOException("connection reset"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> download.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof MinioPlusException);
+    }
+
+    @Test
+    void appendPartSizeIsRaisedToS3Minimum() {
+        List<Long> partLengths = this.mockAppendUpload();
+        // 默认分块大小小于S3协议的最小分片
+        assertTrue(properties.getPart().getSize() < CommonConstant.MIN_MULTIPART_SIZE);
+
+        AppendResultVo resultVo = storageService.appendOpen("test.log", 0);
+        storageService.appendPush(resultVo.getFileKey(), 0L, new ByteArrayInputStream(new byte[(int) CommonConstant.MIN_MULTIPART_SIZE + 100]));
+        storageService.appendCommit(resultVo.getFileKey());
+
+        // 除最后一个分片外都不小于最小分片
+        assertEquals(Arrays.asList(CommonConstant.MIN_MULTIPART_SIZE, 100L), partLengths);
+    }
+
+    @Test
+    void appendPartSizeKeepsLargerConfiguredSize() {
+        List<Long> partLengths = this.mockAppendUpload();
+        int partSize = (int) CommonConstant.MIN_MULTIPART_SIZE + 1024;
+        properties.getPart().setSize(partSize);
+
+        AppendResultVo resultVo = storageService.appendOpen("test.log", 0);
+        storageService.appendPush(resultVo.getFileKey(), 0L, new ByteArrayInputStream(new byte[partSize * 2]));
+
+        assertEquals(Arrays.asList((long) partSize, (long) partSize), partLengths);
+    }
+
+    @Test
+    void appendCommitKeepsSessionUntilMetadataIsSaved() {
+        this.mockAppendUpload();
+        AppendResultVo resultVo = storageService.appendOpen("test.log", 0);
+        storageService.appendPush(resultVo.getFileKey(), 0L, new ByteArrayInputStream(new byte[100]));
+        doThrow(new IllegalStateException("insert failed")).doReturn(1).when(metadataMapper).insert(any(FileMetadataInfo.class));
+
+        assertThrows(IllegalStateException.class, () -> storageService.appendCommit(resultVo.getFileKey()));
+        // 提交失败时临时对象保留,会话可以重试
+        verify(minioS3Client, never()).removeObject(anyString(), anyString());
+        // 分片已合并后不能继续追加
+        assertThrows(MinioPlusException.class,
+                () -> storageService.appendPush(resultVo.getFileKey(), 100L, new ByteArrayInputStream(new byte[1])));
+
+        assertEquals(100L, storageService.appendCommit(resultVo.getFileKey()).getFileSize());
+        // 重试时不再合并分片
+        verify(minioS3Client, times(1)).completeMultipartUpload(anyString(), anyString(), anyString(), any());
+        verify(minioS3Client).removeObject(anyString(), anyString());
+        // 提交成功后会话结束
+        assertThrows(MinioPlusException.class, () -> storageService.appendCommit(resultVo.getFileKey()));
+    }
+
+    @Test
+    void initWithUploadedMd5SkipsFastPathAndLocks() {
+        when(metadataMapper.selectList(any())).thenReturn(Collections.singletonList(this.finishedMetadata("md5")));
+
+        FileCheckResultVo resultVo = storageService.init("md5", null, null, "test.bin", 100, 0, null);
+
+        assertTrue(resultVo.getIsDone());
+        // 已有上传记录时不创建上传任务,在锁内秒传
+        verify(minioS3Client, never()).createMultipartUpload(anyString(), anyString(), any());
+        assertEquals(Collections.singletonList(Collections.singletonList("init:md5")), lockedKeys);
+        verify(metadataMapper, never()).insertIgnore(any());
+    }
+
+    @Test
+    void initFastPathCreatesUploadWithoutLock() {
+        when(metadataMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId");
+        when(metadataMapper.insertIgnore(any())).thenReturn(1);
+
+        FileCheckResultVo resultVo = storageService.init("md5", null, null, "test.bin", 100, 0, null);
+
+        assertFalse(resultVo.getIsDone());
+        assertTrue(lockedKeys.isEmpty());
+        verify(metadataMapper).insertIgnore(argThat(metadata -> "md5".equals(metadata.getOwnerMd5())));
+        verify(minioS3Client, never()).abortMultipartUpload(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void initFastPathLosingRaceAbortsUploadAndFallsBackToLock() {
+        // 快速路径查询时没有上传记录,插入时其他调用方已完成上传
+        when(metadataMapper.selectList(any())).thenReturn(Collections.emptyList(), Collections.singletonList(this.finishedMetadata("md5")));
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId");
+        when(metadataMapper.insertIgnore(any())).thenReturn(0);
+
+        FileCheckResultVo resultVo = storageService.init("md5", null, null, "test.bin", 100, 0, null);
+
+        assertTrue(resultVo.getIsDone());
+        assertEquals(Collections.singletonList(Collections.singletonList("init:md5")), lockedKeys);
+        verify(minioS3Client, timeout(5000)).abortMultipartUpload(anyString(), anyString(), eq("uploadId"));
+        verify(minioS3Client, times(1)).createMultipartUpload(anyString(), anyString(), any());
+    }
+
+    @Test
+    void initLockedPathLosingRaceAbortsUploadAndResumesOwner() {
+        FileMetadataInfo deleted = this.uploadingMetadata("deleted");
+        FileMetadataInfo winner = this.uploadingMetadata("winner");
+        winner.setUploadTaskId("winnerUploadId");
+        winner.setCreateTime(new Date());
+        // 快速路径查询到上传记录,加锁后记录已删除,插入时快速路径已插入新的所有者
+        when(metadataMapper.selectList(any())).thenReturn(Collections.singletonList(deleted), Collections.emptyList(), Collections.singletonList(winner));
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId");
+        when(minioS3Client.listParts(anyString(), anyString(), anyInt(), anyString())).thenReturn(ListParts.build());
+        when(metadataMapper.insertIgnore(any())).thenReturn(0);
+
+        FileCheckResultVo resultVo = storageService.init("md5", null, null, "test.bin", 100, 0, null);
+
+        // 加锁的路径同样以md5作为所有者插入,冲突时取消上传任务并在新的事务中断点续传
+        verify(metadataMapper).insertIgnore(argThat(metadata -> "md5".equals(metadata.getOwnerMd5())));
+        verify(minioS3Client, timeout(5000)).abortMultipartUpload(anyString(), anyString(), eq("uploadId"));
+        assertEquals(Arrays.asList(Collections.singletonList("init:md5"), Collections.singletonList("init:md5")), lockedKeys);
+        assertEquals("winner", resultVo.getFileKey());
+        assertEquals("winnerUploadId", resultVo.getPartList().get(0).getUploadId());
+    }
+
+    @Test
+    void batchInitLocksNewMd5sOnceAndSharesUploadTask() {
+        when(metadataMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId-1", "uploadId-2");
+        List<FileMetadataInfo> inserted = this.recordInserts();
+
+        List<FileCheckResultVo> results = storageService.batchInit(Arrays.asList(
+                this.checkFile("md5-a"), this.checkFile("md5-b"), this.checkFile("md5-a")), null);
+
+        assertEquals(3, results.size());
+        // 新建上传任务的md5一次加锁
+        assertEquals(1, lockedKeys.size());
+        assertEquals(Arrays.asList("init:md5-a", "init:md5-b"), lockedKeys.get(0));
+        // 相同md5只创建一个上传任务
+        verify(minioS3Client, times(2)).createMultipartUpload(anyString(), anyString(), any());
+        assertEquals(results.get(0).getPartList().get(0).getUploadId(), results.get(2).getPartList().get(0).getUploadId());
+        // 每个md5的第一条元数据作为上传任务所有者
+        assertEquals(3, inserted.size());
+        assertEquals(2, inserted.stream().filter(metadata -> metadata.getOwnerMd5() != null).count());
+        assertNull(inserted.stream().filter(metadata -> metadata.getFileKey().equals(results.get(2).getFileKey())).findFirst().get().getOwnerMd5());
+        verify(metadataMapper, times(2)).insertIgnore(argThat(metadata -> metadata.getOwnerMd5() != null));
+    }
+
+    @Test
+    void batchInitResumesMd5ClaimedBetweenRecheckAndInsert() {
+        FileMetadataInfo winner = this.uploadingMetadata("winner");
+        winner.setFileMd5("md5-a");
+        winner.setCreateTime(new Date());
+        // 批量初始化的两次查询都没有上传记录,之后的断点续传查询到快速路径插入的所有者
+        when(metadataMapper.selectList(any())).thenReturn(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(winner));
+        // 上传任务并发创建,按对象名称区分上传任务
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(1).endsWith("md5-a") ? "uploadId-a" : "uploadId-b");
+        when(minioS3Client.listParts(anyString(), anyString(), anyInt(), anyString())).thenReturn(ListParts.build());
+        List<FileMetadataInfo> inserted = this.recordInserts();
+        // 快速路径在再次查询与插入之间插入了md5-a的所有者
+        doReturn(0).when(metadataMapper).insertIgnore(argThat(metadata -> "md5-a".equals(metadata.getOwnerMd5())));
+
+        List<FileCheckResultVo> results = storageService.batchInit(Arrays.asList(this.checkFile("md5-a"), this.checkFile("md5-b")), null);
+
+        // 冲突的md5取消新建的上传任务,断点续传已有的上传任务,其余md5不受影响
+        assertEquals(2, results.size());
+        assertEquals("winner", results.get(0).getFileKey());
+        assertEquals("uploadId", results.get(0).getPartList().get(0).getUploadId());
+        assertEquals("uploadId-b", results.get(1).getPartList().get(0).getUploadId());
+        verify(minioS3Client, timeout(5000)).abortMultipartUpload(anyString(), anyString(), eq("uploadId-a"));
+        verify(minioS3Client, never()).abortMultipartUpload(anyString(), anyString(), eq("uploadId-b"));
+        assertEquals(1, inserted.size());
+        assertEquals("md5-b", inserted.get(0).getOwnerMd5());
+    }
+
+    @Test
+    void batchInitAbortsCreatedUploadsWhenInsertFails() {
+        when(metadataMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId-1", "uploadId-2");
+        when(metadataMapper.insertIgnore(any())).thenReturn(1).thenThrow(new IllegalStateException("connection reset"));
+
+        assertThrows(IllegalStateException.class,
+                () -> storageService.batchInit(Arrays.asList(this.checkFile("md5-a"), this.checkFile("md5-b")), null));
+
+        verify(minioS3Client, timeout(5000)).abortMultipartUpload(anyString(), anyString(), eq("uploadId-1"));
+        verify(minioS3Client, timeout(5000)).abortMultipartUpload(anyString(), anyString(), eq("uploadId-2"));
+        // 已取消的上传任务不保留上传参数
+        verify(uploadTuningService, never()).register(anyString(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void batchCompleteLocksSharedTaskAndSkipsFilesCompletedMeanwhile() {
+        FileMetadataInfo first = this.uploadingMetadata("key-1");
+        FileMetadataInfo second = this.uploadingMetadata("key-2");
+        FileMetadataInfo firstDone = this.uploadingMetadata("key-1");
+        firstDone.setIsFinished(1);
+        FileMetadataInfo secondDone = this.uploadingMetadata("key-2");
+        secondDone.setIsFinished(1);
+        // 加锁前未完成,加锁后重新查询时已被其他请求合并
+        when(metadataMapper.selectList(any())).thenReturn(Arrays.asList(first, second), Arrays.asList(firstDone, secondDone));
+
+        List<CompleteResultVo> results = storageService.batchComplete(Arrays.asList(this.completeFile("key-1"), this.completeFile("key-2")));
+
+        // 共用上传任务的文件一起加锁,与单个合并使用相同的KEY
+        assertEquals(1, lockedKeys.size());
+        assertEquals(Arrays.asList("complete:key-1", "complete:key-2"), lockedKeys.get(0));
+        verify(minioS3Client, never()).completeMultipartUpload(anyString(), anyString(), anyString(), any());
+        verify(minioS3Client, never()).listParts(anyString(), anyString(), anyInt(), anyString());
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(result -> Boolean.TRUE.equals(result.getIsComplete())));
+        assertEquals("key-2", results.get(1).getFileKey());
+    }
+
+    private FileMetadataInfo uploadingMetadata(String fileKey) {
+        FileMetadataInfo metadata = this.finishedMetadata("md5");
+        metadata.setFileKey(fileKey);
+        metadata.setIsFinished(0);
+        metadata.setUploadTaskId("uploadId");
+        metadata.setPartNumber(1);
+        return metadata;
+    }
+
+    private FileCompleteDTO completeFile(String fileKey) {
+        FileCompleteDTO file = new FileCompleteDTO();
+        file.setFileKey(fileKey);
+        file.setPartMd5List(Collections.singletonList("etag"));
+        return file;
+    }
+
+    private FileMetadataInfo finishedMetadata(String fileMd5) {
+        FileMetadataInfo metadata = new FileMetadataInfo();
+        metadata.setId(1L);
+        metadata.setFileKey("finished");
+        metadata.setFileMd5(fileMd5);
+        metadata.setFileSize(100L);
+        metadata.setStorageBucket("bucket");
+        metadata.setStoragePath("path");
+        metadata.setIsFinished(1);
+        metadata.setIsPart(1);
+        metadata.setVerifyState(0);
+        return metadata;
+    }
+
+    /**
+     * 模拟元数据插入，按顺序记录逐条插入和批量插入的元数据
+     *
+     * @return 插入的元数据
+     */
+    private List<FileMetadataInfo> recordInserts() {
+        List<FileMetadataInfo> inserted = new CopyOnWriteArrayList<>();
+        when(metadataMapper.insertIgnore(any())).thenAnswer(invocation -> {
+            inserted.add(invocation.getArgument(0));
+            return 1;
+        });
+        when(metadataMapper.insertBatch(any())).thenAnswer(invocation -> {
+            inserted.addAll(invocation.getArgument(0));
+            return inserted.size();
+        });
+        return inserted;
+    }
+
+    private FileCheckDTO checkFile(String fileMd5) {
+        FileCheckDTO file = new FileCheckDTO();
+        file.setFileMd5(fileMd5);
+        file.setFullFileName("test.bin");
+        file.setFileSize(100L);
+        return file;
+    }
+
+    /**
+     * 模拟追加上传的分片上传，按顺序记录分片长度
+     *
+     * @return 分片长度
+     */
+    private List<Long> mockAppendUpload() {
+        List<Long> partLengths = new CopyOnWriteArrayList<>();
+        when(minioS3Client.createMultipartUpload(anyString(), anyString(), any())).thenReturn("uploadId");
+        when(minioS3Client.uploadPartStream(anyString(), anyString(), eq("uploadId"), anyInt(), any(), anyLong())).thenAnswer(invocation -> {
+            partLengths.add(invocation.getArgument(5));
+            return "etag";
+        });
+        when(minioS3Client.completeMultipartUpload(anyString(), anyString(), eq("uploadId"), any())).thenReturn(true);
+        return partLengths;
+    }
+
+    /**
+     * 模拟异步范围读取，按调用顺序记录未完成的读取，由测试控制完成顺序
+     *
+     * @return 范围读取
+     */
+    private List<CompletableFuture<InputStream>> mockAsyncRanges() {
+        List<CompletableFuture<InputStream>> requests = new CopyOnWriteArrayList<>();
+        when(minioS3Client.getObjectStreamAsync(anyString(), anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            CompletableFuture<InputStream> future = new CompletableFuture<>();
+            requests.add(future);
+            return future;
+        });
+        return requests;
+    }
+
+    private InputStream rangeStream(byte[] content, int offset, List<Boolean> closed) {
+        return new ByteArrayInputStream(content, offset, 10) {
+            @Override
+            public void close() throws IOException {
+                if (closed != null) {
+                    closed.add(Boolean.TRUE);
+                }
+                super.close();
+            }
+        };
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    /**
+     * 模拟已存储的文件，按范围读取时返回对应内容
+     *
+     * @param size 文件长度
+     * @return 文件内容
+     */
+    private byte[] mockStoredFile(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        FileMetadataInfo metadata = new FileMetadataInfo();
+        metadata.setFileKey("key");
+        metadata.setFileMd5("md5");
+        metadata.setFileName("test.bin");
+        metadata.setFileSize((long) size);
+        metadata.setStorageBucket("bucket");
+        metadata.setStoragePath("path");
+        when(metadataMapper.selectOne(any())).thenReturn(metadata);
+        when(minioS3Client.getObjectStream(anyString(), anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int offset = (int) (long) invocation.getArgument(2);
+            int length = (int) (long) invocation.getArgument(3);
+            return new ByteArrayInputStream(content, offset, length);
+        });
+        return content;
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        storageService.getDownloadObject("key", request, response);
+        return response;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.tiansuo.file.manage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 工具类单元测试
+ *
+ * @author zhangb
+ * @since  2025/02/10
+ */
+class CommonUtilTests {
+
+    @Test
+    void parseRangesReturnsNullForAbsentOrInvalidHeader() {
+        assertNull(CommonUtil.parseRanges(null, 100, 16));
+        assertNull(CommonUtil.parseRanges("", 100, 16));
+        assertNull(CommonUtil.parseRanges("items=0-10", 100, 16));
+        assertNull(CommonUtil.parseRanges("bytes=abc", 100, 16));
+        assertNull(CommonUtil.parseRanges("bytes=a-b", 100, 16));
+        // 结束位置小于开始位置
+        assertNull(CommonUtil.parseRanges("bytes=20-10", 100, 16));
+    }
+
+    @Test
+    void parseRangesParsesSingleRange() {
+        List<long[]> ranges = CommonUtil.parseRanges("bytes=0-9", 100, 16);
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[]{0, 9}, ranges.get(0));
+    }
+
+    @Test
+    void parseRangesParsesOpenAndSuffixRange() {
+        assertArrayEquals(new long[]{90, 99}, CommonUtil.parseRanges("bytes=90-", 100, 16).get(0));
+        assertArrayEquals(new long[]{80, 99}, CommonUtil.parseRanges("bytes=-20", 100, 16).get(0));
+        // 后缀长度超过内容长度时取完整内容
+        assertArrayEquals(new long[]{0, 99}, CommonUtil.parseRanges("bytes=-200", 100, 16).get(0));
+    }
+
+    @Test
+    void parseRangesClampsEndToSize() {
+        assertArrayEquals(new long[]{50, 99}, CommonUtil.parseRanges("bytes=50-1000", 100, 16).get(0));
+    }
+
+    @Test
+    void parseRangesSortsAndMergesRanges() {
+        List<long[]> ranges = CommonUtil.parseRanges("bytes=50-59, 0-9, 5-19, 20-29", 100, 16);
+        assertEquals(2, ranges.size());
+        // 重叠和相邻的范围合并
+        assertArrayEquals(new long[]{0, 29}, ranges.get(0));
+        assertArrayEquals(new long[]{50, 59}, ranges.get(1));
+    }
+
+    @Test
+    void parseRangesReturnsEmptyWhenUnsatisfiable() {
+        assertTrue(CommonUtil.parseRanges("bytes=100-200", 100, 16).isEmpty());
+        assertTrue(CommonUtil.parseRanges("bytes=-0", 100, 16).isEmpty());
+    }
+
+    @Test
+    void parseRangesIgnoresTooManyRanges() {
+        assertNull(CommonUtil.parseRanges("bytes=0-1,3-4,6-7", 100, 2));
+    }
+
+    @Test
+    void matchesEtagUsesWeakComparison() {
+        String etag = "\"abc\"";
+        assertTrue(CommonUtil.matchesEtag("\"abc\"", etag));
+        assertTrue(CommonUtil.matchesEtag("W/\"abc\"", etag));
+        assertTrue(CommonUtil.matchesEtag("\"xyz\", \"abc\"", etag));
+        assertTrue(CommonUtil.matchesEtag("*", etag));
+        assertFalse(CommonUtil.matchesEtag("\"xyz\"", etag));
+        assertFalse(CommonUtil.matchesEtag(null, etag));
+    }
+
+    @Test
+    void acceptsEncodingHonorsQualityValue() {
+        assertTrue(CommonUtil.acceptsEncoding("gzip, deflate", "deflate"));
+        assertTrue(CommonUtil.acceptsEncoding("*", "deflate"));
+        assertFalse(CommonUtil.acceptsEncoding("gzip", "deflate"));
+        assertFalse(CommonUtil.acceptsEncoding("deflate;q=0", "deflate"));
+        assertFalse(CommonUtil.acceptsEncoding(null, "deflate"));
+    }
+
+}